@@ -0,0 +1,58 @@
+package org.example.digitalwallet.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.digitalwallet.model.Wallet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.time.Duration;
+
+// Both wallet caches hold Wallet values, kept in Redis as JSON with a small per-node copy in front.
+// Writes carry the wallet's row version, and neither level lets an older version replace a newer one
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     StringRedisTemplate redisTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${wallet.cache.redis-ttl-seconds:600}") long redisTtlSeconds,
+                                     @Value("${wallet.cache.near.max-entries:10000}") int nearMaxEntries,
+                                     @Value("${wallet.cache.near.ttl-ms:5000}") long nearTtlMillis,
+                                     @Value("${wallet.cache.early-refresh-ms:30000}") long earlyRefreshMillis) {
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofSeconds(redisTtlSeconds))
+                .disableCachingNullValues()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new JacksonJsonRedisSerializer<>(Wallet.class)));
+
+        RedisCacheManager redisCacheManager = new VersionedRedisCacheManager(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), configuration, redisTemplate);
+        redisCacheManager.afterPropertiesSet();
+
+        return new NearCacheManager(redisCacheManager, redisTemplate, meterRegistry, nearMaxEntries, nearTtlMillis,
+                earlyRefreshMillis);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                   CacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((NearCacheManager) cacheManager, new ChannelTopic(NearCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
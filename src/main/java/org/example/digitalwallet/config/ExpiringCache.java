@@ -0,0 +1,14 @@
+package org.example.digitalwallet.config;
+
+import org.springframework.cache.Cache;
+
+// A cache that reports how long an entry has left to live in the same round trip that reads it
+interface ExpiringCache extends Cache {
+
+    // Null on a miss
+    TimedValue getTimed(Object key);
+
+    // A negative time to live means the entry never expires
+    record TimedValue(Object value, long ttlMillis) {
+    }
+}
@@ -1,30 +1,37 @@
 package org.example.digitalwallet.config;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
-import org.example.digitalwallet.service.CustomUserDetailService;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.service.TokenRevocationService;
+import org.example.digitalwallet.service.TokenVersionService;
 import org.example.digitalwallet.util.JwtUtil;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         private final JwtUtil jwtUtil;
-    private final CustomUserDetailService userDetailsService;
+    private final TokenVersionService tokenVersionService;
+    private final TokenRevocationService tokenRevocationService;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, TokenVersionService tokenVersionService,
+                                   TokenRevocationService tokenRevocationService) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
+        this.tokenVersionService = tokenVersionService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -36,7 +43,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
+        final Claims claims;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -44,17 +51,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        username = jwtUtil.extractUsername(jwt);
+        // Verified once here; a null means the token is forged, malformed or expired
+        claims = jwtUtil.verify(jwt);
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // The caller comes from the signed claims alone; both revocation checks are in-memory for live tokens
+            AuthenticatedUser user = jwtUtil.toPrincipal(claims);
 
-            if (jwtUtil.isTokenValid(jwt, userDetails)) {
+            if (user != null
+                    && tokenVersionService.isCurrent(user.id(), jwtUtil.tokenVersion(claims))
+                    && !tokenRevocationService.isRevoked(claims.getId())) {
 
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
+                        user,
                         null,
-                        userDetails.getAuthorities()
+                        List.of(new SimpleGrantedAuthority("ROLE_" + user.role().name()))
                 );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
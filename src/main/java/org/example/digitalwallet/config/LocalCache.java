@@ -0,0 +1,114 @@
+package org.example.digitalwallet.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// In-process bounded map whose entries also expire a fixed time after they were written.
+// The expiry bounds how stale an entry can get if an invalidation message is lost.
+// Entries may carry a version; a write never replaces an entry holding a higher one.
+// Reads go straight to Caffeine without taking a lock; writes and removals are serialized, since they check
+// versions and tombstones before they touch an entry
+final class LocalCache {
+
+    static final long UNVERSIONED = Long.MIN_VALUE;
+
+    private final int maxEntries;
+    private final Cache<String, Entry> entries;
+    // Ticks on every removal. Each removed key keeps the tick it was removed at, so a value read from below
+    // before its key was invalidated isn't cached after it, while removals of other keys don't get in the way.
+    // Tombstones are bounded like entries; a key whose tombstone was dropped counts as removed at the floor
+    private final LinkedHashMap<String, Long> tombstones;
+    private long generation;
+    private long tombstoneFloor;
+
+    LocalCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    LocalCache(int maxEntries, long ttlMillis, LongSupplier nanoTime) {
+        this.maxEntries = maxEntries;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .ticker(nanoTime::getAsLong)
+                .build();
+        this.tombstones = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() <= LocalCache.this.maxEntries) {
+                    return false;
+                }
+                tombstoneFloor = Math.max(tombstoneFloor, eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    // Null on a miss or when the entry has expired
+    Object get(String key) {
+        Entry entry = entries.getIfPresent(key);
+        return entry == null ? null : entry.value;
+    }
+
+    synchronized void put(String key, Object value) {
+        put(key, value, UNVERSIONED);
+    }
+
+    // Keeps the entry already there if it holds a newer version
+    synchronized void put(String key, Object value, long version) {
+        Entry current = entries.getIfPresent(key);
+        if (current != null && current.version > version) {
+            return;
+        }
+        entries.put(key, new Entry(value, version));
+    }
+
+    synchronized void putIfUnchanged(String key, Object value, long seenGeneration) {
+        putIfUnchanged(key, value, UNVERSIONED, seenGeneration);
+    }
+
+    // Stores the value only if the key wasn't invalidated since generation() was read
+    synchronized void putIfUnchanged(String key, Object value, long version, long seenGeneration) {
+        if (tombstones.getOrDefault(key, tombstoneFloor) <= seenGeneration) {
+            put(key, value, version);
+        }
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized void remove(String key) {
+        tombstones.put(key, ++generation);
+        entries.invalidate(key);
+    }
+
+    // Drops the entry unless it is already at the given version or later
+    synchronized void removeIfOlder(String key, long version) {
+        Entry current = entries.getIfPresent(key);
+        if (current != null && current.version >= version) {
+            return;
+        }
+        remove(key);
+    }
+
+    synchronized void clear() {
+        tombstoneFloor = ++generation;
+        tombstones.clear();
+        entries.invalidateAll();
+    }
+
+    // Settles pending evictions first, so the count respects the bound
+    int size() {
+        entries.cleanUp();
+        return (int) entries.estimatedSize();
+    }
+
+    private record Entry(Object value, long version) {
+    }
+}
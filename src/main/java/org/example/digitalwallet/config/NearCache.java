@@ -0,0 +1,290 @@
+package org.example.digitalwallet.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.digitalwallet.model.Wallet;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+// Two-level cache: an in-process L1 in front of the shared Redis cache.
+// Evictions go to Redis first, then to the local copy, then out on the invalidation channel so every other node drops theirs.
+// Versioned values are written through the same way, except that each level keeps whichever copy has the higher version.
+// Loads through get(key, loader) are coalesced per key and refresh hot entries shortly before they expire in Redis.
+final class NearCache implements Cache {
+
+    static final String INVALIDATION_CHANNEL = "wallet:cache:invalidation";
+    static final char KEY_SEPARATOR = ':';
+
+    private final Cache remote;
+    private final LocalCache local;
+    private final StringRedisTemplate redisTemplate;
+    private final long earlyRefreshMillis;
+    private final DoubleSupplier random;
+    private final Map<String, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter coalescedLoads;
+    private final Counter earlyRefreshes;
+
+    NearCache(Cache remote, LocalCache local, StringRedisTemplate redisTemplate, MeterRegistry meterRegistry,
+              long earlyRefreshMillis) {
+        this(remote, local, redisTemplate, meterRegistry, earlyRefreshMillis, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    NearCache(Cache remote, LocalCache local, StringRedisTemplate redisTemplate, MeterRegistry meterRegistry,
+              long earlyRefreshMillis, DoubleSupplier random) {
+        this.remote = remote;
+        this.local = local;
+        this.redisTemplate = redisTemplate;
+        this.earlyRefreshMillis = earlyRefreshMillis;
+        this.random = random;
+
+        this.l1Hits = lookups(meterRegistry, "l1", "hit");
+        this.l1Misses = lookups(meterRegistry, "l1", "miss");
+        this.l2Hits = lookups(meterRegistry, "l2", "hit");
+        this.l2Misses = lookups(meterRegistry, "l2", "miss");
+        this.coalescedLoads = loads(meterRegistry, "coalesced");
+        this.earlyRefreshes = loads(meterRegistry, "early-refresh");
+
+        hitRatio(meterRegistry, "l1", l1Hits, l1Misses);
+        hitRatio(meterRegistry, "l2", l2Hits, l2Misses);
+        Gauge.builder("wallet.cache.l1.size", local, LocalCache::size)
+                .tag("cache", getName())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+
+        Object value = local.get(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        l1Misses.increment();
+
+        long generation = local.generation();
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            l2Misses.increment();
+            return wrapper;
+        }
+        l2Hits.increment();
+
+        local.putIfUnchanged(localKey, wrapper.get(), versionOf(wrapper.get()), generation);
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value for " + key + " is not of required type " + type.getName());
+        }
+        return (T) value;
+    }
+
+    // Only one load per key runs on this node at a time; other callers for that key wait for its result
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = String.valueOf(key);
+
+        Object value = local.get(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return (T) value;
+        }
+        l1Misses.increment();
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loads.putIfAbsent(localKey, load);
+        if (running != null) {
+            coalescedLoads.increment();
+            return (T) await(running);
+        }
+
+        try {
+            Object loaded = load(key, localKey, valueLoader);
+            load.complete(loaded);
+            return (T) loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(localKey, load);
+        }
+    }
+
+    private Object load(Object key, String localKey, Callable<?> valueLoader) {
+        long generation = local.generation();
+        ExpiringCache.TimedValue cached = lookupRemote(key);
+        if (cached != null) {
+            l2Hits.increment();
+            if (!refreshEarly(cached.ttlMillis())) {
+                local.putIfUnchanged(localKey, cached.value(), versionOf(cached.value()), generation);
+                return cached.value();
+            }
+            earlyRefreshes.increment();
+        } else {
+            l2Misses.increment();
+        }
+
+        Object loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            if (cached == null) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            // The copy being refreshed hasn't expired yet, so it can still be served
+            loaded = cached.value();
+        }
+
+        if (loaded != null) {
+            remote.put(key, loaded);
+            local.putIfUnchanged(localKey, loaded, versionOf(loaded), generation);
+        }
+        return loaded;
+    }
+
+    private ExpiringCache.TimedValue lookupRemote(Object key) {
+        if (remote instanceof ExpiringCache expiring) {
+            ExpiringCache.TimedValue cached = expiring.getTimed(key);
+            return cached != null && cached.value() != null ? cached : null;
+        }
+
+        ValueWrapper wrapper = remote.get(key);
+        return wrapper != null && wrapper.get() != null ? new ExpiringCache.TimedValue(wrapper.get(), -1) : null;
+    }
+
+    // XFetch: reload with probability e^(-ttl / window), so one caller among many reloads shortly before expiry
+    // and the entry never drops out. The window stands in for XFetch's load time times beta: with L1 in front,
+    // a node reads a hot key from L2 only once per L1 TTL, far less often than a load takes
+    private boolean refreshEarly(long ttlMillis) {
+        if (earlyRefreshMillis <= 0 || ttlMillis < 0) {
+            return false;
+        }
+        return ttlMillis <= -earlyRefreshMillis * Math.log(random.getAsDouble());
+    }
+
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long version = versionOf(value);
+        remote.put(key, value);
+
+        if (version == LocalCache.UNVERSIONED) {
+            if (value != null) {
+                local.put(String.valueOf(key), value);
+            }
+            return;
+        }
+
+        // Redis may have kept a newer copy, so the local one is only dropped if older and refilled by the next read
+        local.removeIfOlder(String.valueOf(key), version);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, getName() + KEY_SEPARATOR + key + KEY_SEPARATOR + version);
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.remove(String.valueOf(key));
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, getName() + KEY_SEPARATOR + key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.clear();
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, getName());
+    }
+
+    // Called for messages from the invalidation channel, including this node's own
+    void invalidateLocal(String key) {
+        if (key == null) {
+            local.clear();
+        } else {
+            local.remove(key);
+        }
+    }
+
+    // A write-through elsewhere: copies at that version or later are still current
+    void invalidateLocal(String key, long version) {
+        local.removeIfOlder(key, version);
+    }
+
+    static long versionOf(Object value) {
+        return value instanceof Wallet wallet && wallet.getVersion() != null
+                ? wallet.getVersion()
+                : LocalCache.UNVERSIONED;
+    }
+
+    private Counter lookups(MeterRegistry meterRegistry, String level, String result) {
+        return Counter.builder("wallet.cache.lookups")
+                .description("Wallet cache lookups by cache level and outcome")
+                .tag("cache", getName())
+                .tag("level", level)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter loads(MeterRegistry meterRegistry, String kind) {
+        return Counter.builder("wallet.cache.loads")
+                .description("Loads that waited on another caller's load of the same key, or refreshed an entry before it expired")
+                .tag("cache", getName())
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private void hitRatio(MeterRegistry meterRegistry, String level, Counter hits, Counter misses) {
+        Gauge.builder("wallet.cache.hit.ratio", () -> {
+                    double total = hits.count() + misses.count();
+                    return total == 0 ? 0 : hits.count() / total;
+                })
+                .description("Share of lookups at this level that were answered from it")
+                .tag("cache", getName())
+                .tag("level", level)
+                .register(meterRegistry);
+    }
+}
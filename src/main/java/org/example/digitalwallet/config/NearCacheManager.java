@@ -0,0 +1,75 @@
+package org.example.digitalwallet.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Wraps every cache of the Redis cache manager in a NearCache, and applies invalidations published by any node
+final class NearCacheManager implements CacheManager, MessageListener {
+
+    private final CacheManager remote;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long earlyRefreshMillis;
+
+    private final Map<String, NearCache> caches = new ConcurrentHashMap<>();
+
+    NearCacheManager(CacheManager remote, StringRedisTemplate redisTemplate, MeterRegistry meterRegistry,
+                     int maxEntries, long ttlMillis, long earlyRefreshMillis) {
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.earlyRefreshMillis = earlyRefreshMillis;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        NearCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n ->
+                new NearCache(remoteCache, new LocalCache(maxEntries, ttlMillis), redisTemplate, meterRegistry, earlyRefreshMillis));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    // Payload is "<cache>:<key>" for one entry, "<cache>:<key>:<version>" after a write-through,
+    // or just "<cache>" when the whole cache was cleared
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = payload.split(String.valueOf(NearCache.KEY_SEPARATOR), 3);
+
+        NearCache cache = caches.get(parts[0]);
+        if (cache == null) {
+            return;
+        }
+
+        if (parts.length == 3) {
+            cache.invalidateLocal(parts[1], Long.parseLong(parts[2]));
+        } else {
+            cache.invalidateLocal(parts.length == 2 ? parts[1] : null);
+        }
+    }
+}
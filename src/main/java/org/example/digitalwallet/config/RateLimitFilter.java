@@ -0,0 +1,67 @@
+package org.example.digitalwallet.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.example.digitalwallet.dto.ErrorResponse;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.service.RateLimitService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+// Runs right after JwtAuthenticationFilter: authenticated callers draw from their own bucket sized by membership tier,
+// everyone else (login and registration included) from a bucket per client address.
+// The address is getRemoteAddr(), which behind a load balancer is the balancer's, so every anonymous client would share
+// one bucket. Deployments behind a proxy must set server.forward-headers-strategy (native, or framework for
+// X-Forwarded-For) so the address is the client's; only do that when the proxy overwrites those headers,
+// otherwise clients can pick their own bucket
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimitService rateLimitService;
+    private final JsonMapper jsonMapper;
+
+    public RateLimitFilter(RateLimitService rateLimitService, JsonMapper jsonMapper) {
+        this.rateLimitService = rateLimitService;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        RateLimitService.Decision decision = authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? rateLimitService.tryAcquireForUser(user.id(), user.membershipStatus())
+                : rateLimitService.tryAcquireForAddress(request.getRemoteAddr());
+
+        if (decision.allowed()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (decision.retryAfterMillis() + 999) / 1000)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonMapper.writeValue(response.getOutputStream(), new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                "Too many requests. Please try again later."
+        ));
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.digitalwallet.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+// One scheduler for every background poller. A task that throws is logged here and still runs at its next
+// interval, so pollers don't catch and drop their own failures. Beans that schedule on it are destroyed first,
+// and a run already in progress gets a few seconds to finish before the pool goes away
+@Slf4j
+@Configuration
+public class SchedulingConfig {
+
+    @Bean
+    public TaskScheduler taskScheduler(@Value("${wallet.scheduler.pool-size:8}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("wallet-scheduler-");
+        scheduler.setDaemon(true);
+        scheduler.setErrorHandler(ex -> log.error("Scheduled task failed, it runs again at its next interval", ex));
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(5);
+        return scheduler;
+    }
+}
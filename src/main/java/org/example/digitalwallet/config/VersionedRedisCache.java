@@ -0,0 +1,76 @@
+package org.example.digitalwallet.config;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+// Redis cache whose puts of versioned values are compare-and-set: a value is stored unless Redis already holds a higher version.
+// The check and the write run as one script, so two nodes racing to write the same wallet can't leave the older state behind.
+final class VersionedRedisCache extends RedisCache implements ExpiringCache {
+
+    // Returns 1 when the value was stored, 0 when a newer one was kept. Entries without a readable version are replaced
+    private static final RedisScript<Long> PUT_IF_NOT_OLDER = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current then
+                local ok, cached = pcall(cjson.decode, current)
+                if ok and type(cached) == 'table' and type(cached['version']) == 'number'
+                        and cached['version'] > tonumber(ARGV[2]) then
+                    return 0
+                end
+            end
+
+            if tonumber(ARGV[3]) > 0 then
+                redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+            else
+                redis.call('SET', KEYS[1], ARGV[1])
+            end
+            return 1
+            """, Long.class);
+
+    // Replies {ttl, value} on a hit and just {ttl} on a miss, since a nil GET ends the reply
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> GET_WITH_TTL = new DefaultRedisScript<>("""
+            return {redis.call('PTTL', KEYS[1]), redis.call('GET', KEYS[1])}
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    VersionedRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration configuration,
+                        StringRedisTemplate redisTemplate) {
+        super(name, cacheWriter, configuration);
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long version = NearCache.versionOf(value);
+        if (version == LocalCache.UNVERSIONED) {
+            super.put(key, value);
+            return;
+        }
+
+        Duration ttl = getCacheConfiguration().getTtlFunction().getTimeToLive(key, value);
+        String payload = new String(serializeCacheValue(toStoreValue(value)), StandardCharsets.UTF_8);
+
+        redisTemplate.execute(PUT_IF_NOT_OLDER, List.of(createCacheKey(key)),
+                payload, String.valueOf(version), String.valueOf(ttl.toMillis()));
+    }
+
+    @Override
+    public TimedValue getTimed(Object key) {
+        List<?> reply = redisTemplate.execute(GET_WITH_TTL, List.of(createCacheKey(key)));
+        if (reply == null || reply.size() < 2) {
+            return null;
+        }
+
+        Object value = deserializeCacheValue(((String) reply.get(1)).getBytes(StandardCharsets.UTF_8));
+        return new TimedValue(fromStoreValue(value), ((Number) reply.get(0)).longValue());
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.digitalwallet.config;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+// Redis cache manager that hands out VersionedRedisCache instances
+final class VersionedRedisCacheManager extends RedisCacheManager {
+
+    private final StringRedisTemplate redisTemplate;
+
+    VersionedRedisCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultConfiguration,
+                               StringRedisTemplate redisTemplate) {
+        super(cacheWriter, defaultConfiguration);
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfiguration) {
+        return new VersionedRedisCache(name, getCacheWriter(), cacheConfiguration, redisTemplate);
+    }
+}
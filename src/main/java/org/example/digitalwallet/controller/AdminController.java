@@ -0,0 +1,35 @@
+package org.example.digitalwallet.controller;
+
+import org.example.digitalwallet.service.TokenRevocationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Restricted to ROLE_ADMIN in ApplicationConfig
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+    private final TokenRevocationService tokenRevocationService;
+
+    public AdminController(TokenRevocationService tokenRevocationService) {
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @PostMapping("/tokens/{tokenId}/revoke")
+    public ResponseEntity<String> revokeToken(@PathVariable String tokenId) {
+        tokenRevocationService.revoke(tokenId);
+
+        return ResponseEntity.status(HttpStatus.OK).body("Token revoked");
+    }
+
+    @PostMapping("/users/{userId}/tokens/revoke")
+    public ResponseEntity<String> revokeUserTokens(@PathVariable Long userId) {
+        tokenRevocationService.revokeAllFor(userId);
+
+        return ResponseEntity.status(HttpStatus.OK).body("All tokens of the user revoked");
+    }
+}
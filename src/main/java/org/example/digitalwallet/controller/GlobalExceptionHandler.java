@@ -1,7 +1,8 @@
 package org.example.digitalwallet.controller;
 
 import org.example.digitalwallet.dto.ErrorResponse;
-import org.example.digitalwallet.exception.RateLimitExceededException;
+import org.example.digitalwallet.exception.IdempotencyConflictException;
+import org.example.digitalwallet.exception.ServiceOverloadedException;
 import org.example.digitalwallet.exception.UserAlreadyExistsException;
 import org.example.digitalwallet.exception.UserNotAuthenticatedException;
 import org.springframework.http.HttpStatus;
@@ -25,6 +26,16 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        ErrorResponse error = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.CONFLICT.value(),
+                ex.getMessage()
+        );
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(UserNotAuthenticatedException.class)
     public ResponseEntity<ErrorResponse> handleUserNotAuthenticated(Exception ex) {
         ErrorResponse error = new ErrorResponse(
@@ -55,14 +66,14 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
-    @ExceptionHandler(RateLimitExceededException.class)
-    public ResponseEntity<ErrorResponse> handleRateLimitExceeded(RateLimitExceededException ex) {
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloaded(ServiceOverloadedException ex) {
         ErrorResponse error = new ErrorResponse(
                 LocalDateTime.now(),
-                HttpStatus.TOO_MANY_REQUESTS.value(),
-                "Too many requests. Please try again later."
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                ex.getMessage()
         );
-        return new ResponseEntity<>(error, HttpStatus.TOO_MANY_REQUESTS);
+        return new ResponseEntity<>(error, HttpStatus.SERVICE_UNAVAILABLE);
     }
 
 }
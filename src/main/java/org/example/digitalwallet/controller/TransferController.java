@@ -1,15 +1,28 @@
 package org.example.digitalwallet.controller;
 
 import jakarta.validation.Valid;
+import org.example.digitalwallet.dto.BatchTransferRequest;
+import org.example.digitalwallet.dto.BatchTransferResponse;
+import org.example.digitalwallet.dto.ExportFormat;
 import org.example.digitalwallet.dto.PagedResponse;
+import org.example.digitalwallet.dto.QueuedTransferResponse;
 import org.example.digitalwallet.dto.TransferRequest;
 import org.example.digitalwallet.dto.TransferResponse;
+import org.example.digitalwallet.service.IdempotencyService;
+import org.example.digitalwallet.service.TransferExportService;
 import org.example.digitalwallet.service.TransferService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/transfer")
@@ -17,18 +30,61 @@ public class TransferController {
 
 
     private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
+    private final TransferExportService transferExportService;
 
-    public TransferController(TransferService transferService) {
+    public TransferController(TransferService transferService, IdempotencyService idempotencyService,
+                              TransferExportService transferExportService) {
         this.transferService = transferService;
+        this.idempotencyService = idempotencyService;
+        this.transferExportService = transferExportService;
     }
 
     @PostMapping
-    public ResponseEntity<TransferResponse> saveTransfer(@Valid @RequestBody TransferRequest request) {
-        TransferResponse response = transferService.saveTransfer(request);
+    public ResponseEntity<TransferResponse> saveTransfer(
+            @Valid @RequestBody TransferRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        // A replayed retry is answered from the stored response without running the transfer again,
+        // and IdempotencyService refunds the rate limit token RateLimitFilter charged for it
+        TransferResponse response = idempotencyKey == null
+                ? transferService.saveTransfer(request)
+                : idempotencyService.execute("transfer", idempotencyKey, request, TransferResponse.class,
+                        () -> transferService.saveTransfer(request));
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // Accepts the transfer and applies it in the background; poll the returned handle for the outcome
+    @PostMapping("/async")
+    public ResponseEntity<QueuedTransferResponse> submitTransfer(
+            @Valid @RequestBody TransferRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        QueuedTransferResponse response = idempotencyKey == null
+                ? transferService.submitTransfer(request)
+                : idempotencyService.execute("transfer-async", idempotencyKey, request, QueuedTransferResponse.class,
+                        () -> transferService.submitTransfer(request));
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/transfer/" + response.handle()))
+                .body(response);
+    }
+
+    @GetMapping("/{handle}")
+    public ResponseEntity<QueuedTransferResponse> getQueuedTransfer(@PathVariable UUID handle) {
+        QueuedTransferResponse response = transferService.getQueuedTransfer(handle);
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchTransferResponse> saveTransferBatch(@Valid @RequestBody BatchTransferRequest request) {
+        BatchTransferResponse response = transferService.saveTransferBatch(request);
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
     @GetMapping
     public ResponseEntity<PagedResponse<TransferResponse>> getTransfers(
             @RequestParam(required = false) Long cursor,
@@ -42,4 +98,21 @@ public class TransferController {
         return ResponseEntity.ok(new PagedResponse<>(transfers, nextCursor));
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransfers(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam Long walletId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        ExportFormat exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = transferExportService.exportTransfers(walletId, from, to, exportFormat);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transfers." + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
+    }
+
 }
@@ -3,11 +3,14 @@ package org.example.digitalwallet.controller;
 import jakarta.validation.Valid;
 import org.example.digitalwallet.dto.LoginRequest;
 import org.example.digitalwallet.dto.UserRequest;
+import org.example.digitalwallet.service.TokenRevocationService;
 import org.example.digitalwallet.service.UserService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -17,9 +20,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class UserController {
 
     private final UserService userService;
+    private final TokenRevocationService tokenRevocationService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, TokenRevocationService tokenRevocationService) {
         this.userService = userService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @PostMapping("/register")
@@ -35,4 +40,11 @@ public class UserController {
 
         return ResponseEntity.status(HttpStatus.OK).body(token);
     }
+
+    @PostMapping("/logout")
+    public ResponseEntity<String> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        tokenRevocationService.logout(authorization);
+
+        return ResponseEntity.status(HttpStatus.OK).body("Logged out");
+    }
 }
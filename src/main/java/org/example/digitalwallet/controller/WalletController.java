@@ -1,22 +1,35 @@
 package org.example.digitalwallet.controller;
 
 import jakarta.validation.Valid;
+import org.example.digitalwallet.dto.CursorPagedResponse;
 import org.example.digitalwallet.dto.DepositRequest;
+import org.example.digitalwallet.dto.TransferResponse;
+import org.example.digitalwallet.dto.WalletBalanceResponse;
 import org.example.digitalwallet.dto.WalletRequest;
 import org.example.digitalwallet.dto.WalletResponse;
+import org.example.digitalwallet.service.IdempotencyService;
+import org.example.digitalwallet.service.TransferService;
 import org.example.digitalwallet.service.WalletService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/v1/wallet")
 public class WalletController {
 
     private final WalletService walletService;
+    private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
 
-    public WalletController(WalletService walletService) {
+    public WalletController(WalletService walletService, TransferService transferService,
+                            IdempotencyService idempotencyService) {
         this.walletService = walletService;
+        this.transferService = transferService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/create")
@@ -27,10 +40,23 @@ public class WalletController {
     }
 
     @PutMapping("/deposit")
-    public ResponseEntity<String> depositToWallet(@Valid @RequestBody DepositRequest request) {
+    public ResponseEntity<String> depositToWallet(
+            @Valid @RequestBody DepositRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.OK).body(deposit(request));
+        }
+
+        String response = idempotencyService.execute("deposit", idempotencyKey, request, String.class, () -> deposit(request));
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    private String deposit(DepositRequest request) {
         walletService.depositToWallet(request);
 
-        return ResponseEntity.status(HttpStatus.OK).body("Deposit of " + request.depositAmount() +  " was successful ");
+        return "Deposit of " + request.depositAmount() +  " was successful ";
     }
 
     @GetMapping("/{id}")
@@ -40,4 +66,41 @@ public class WalletController {
         return ResponseEntity.status(HttpStatus.OK).body(response);
     }
 
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<WalletBalanceResponse> getWalletBalance(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+
+        WalletBalanceResponse response = walletService.getBalanceAt(id, asOf);
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    @GetMapping("/{id}/transfers")
+    public ResponseEntity<CursorPagedResponse<TransferResponse>> getWalletTransfers(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        CursorPagedResponse<TransferResponse> response = transferService.getWalletTransferHistory(id, cursor, from, to, limit);
+
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    @PutMapping("/{id}/stripes")
+    public ResponseEntity<String> stripeWallet(@PathVariable Long id, @RequestParam int count) {
+        walletService.stripeWallet(id, count);
+
+        return ResponseEntity.status(HttpStatus.OK).body("Wallet " + id + " now spreads credits over " + count + " stripes");
+    }
+
+    @DeleteMapping("/{id}/stripes")
+    public ResponseEntity<String> unstripeWallet(@PathVariable Long id) {
+        walletService.unstripeWallet(id);
+
+        return ResponseEntity.status(HttpStatus.OK).body("Wallet " + id + " is no longer striped");
+    }
+
 }
@@ -0,0 +1,8 @@
+package org.example.digitalwallet.dto;
+
+public record BatchTransferItemResult(
+        int index,
+        boolean success,
+        TransferResponse transfer,
+        String error
+) {}
@@ -0,0 +1,13 @@
+package org.example.digitalwallet.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchTransferRequest(
+        @NotEmpty(message = "At least one transfer is required")
+        @Size(max = 500, message = "A batch can contain at most 500 transfers")
+        List<@Valid TransferRequest> transfers
+) {}
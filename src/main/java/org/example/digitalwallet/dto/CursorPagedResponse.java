@@ -0,0 +1,9 @@
+package org.example.digitalwallet.dto;
+
+import java.util.List;
+
+public record CursorPagedResponse<T>(
+        List<T> data,
+        String nextCursor
+) {
+}
@@ -0,0 +1,21 @@
+package org.example.digitalwallet.dto;
+
+import org.example.digitalwallet.model.QueuedTransfer;
+import org.example.digitalwallet.model.WalletCurrency;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record QueuedTransferResponse(
+        UUID handle,
+        QueuedTransfer.Status status,
+        Long transferId,
+        Long fromWallet,
+        Long toWallet,
+        WalletCurrency currency,
+        BigDecimal transferAmount,
+        String failureReason,
+        LocalDateTime submittedAt,
+        LocalDateTime completedAt
+) {}
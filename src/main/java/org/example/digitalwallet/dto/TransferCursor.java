@@ -0,0 +1,31 @@
+package org.example.digitalwallet.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// Position in a wallet's transfer history plus the date range it was started with.
+// Clients only see the encoded form and hand it back unchanged
+public record TransferCursor(LocalDateTime beforeDate, Long beforeId, LocalDateTime from, LocalDateTime to) {
+
+    public String encode() {
+        String raw = beforeDate + "|" + beforeId + "|" + (from == null ? "" : from) + "|" + (to == null ? "" : to);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransferCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+
+            return new TransferCursor(
+                    LocalDateTime.parse(parts[0]),
+                    Long.valueOf(parts[1]),
+                    parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]),
+                    parts[3].isEmpty() ? null : LocalDateTime.parse(parts[3]));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.digitalwallet.dto;
+
+import org.example.digitalwallet.model.WalletCurrency;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record WalletBalanceResponse(
+        Long walletId,
+        WalletCurrency currency,
+        BigDecimal balance,
+        LocalDateTime asOf
+) {}
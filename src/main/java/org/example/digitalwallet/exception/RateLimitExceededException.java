@@ -1,7 +0,0 @@
-package org.example.digitalwallet.exception;
-
-public class RateLimitExceededException extends RuntimeException {
-    public RateLimitExceededException(String message) {
-        super(message);
-    }
-}
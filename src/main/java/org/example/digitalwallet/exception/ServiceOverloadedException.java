@@ -0,0 +1,7 @@
+package org.example.digitalwallet.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.example.digitalwallet.exception;
+
+public class TransferNotFoundException extends RuntimeException {
+    public TransferNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.digitalwallet.model;
+
+import java.security.Principal;
+
+// The caller of a request as described by their token's claims; services read it instead of loading the user row
+public record AuthenticatedUser(Long id, String username, String email, Roles role, MembershipStatus membershipStatus)
+        implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
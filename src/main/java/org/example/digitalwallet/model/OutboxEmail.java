@@ -0,0 +1,13 @@
+package org.example.digitalwallet.model;
+
+import java.math.BigDecimal;
+
+// One queued notification; amount is null for wallet creation
+public record OutboxEmail(Long id, Kind kind, String recipient, String username, WalletCurrency currency,
+                          BigDecimal amount, BigDecimal balance, int attempts) {
+
+    public enum Kind {
+        WALLET_CREATED,
+        DEPOSIT
+    }
+}
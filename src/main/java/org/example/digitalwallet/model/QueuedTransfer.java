@@ -0,0 +1,28 @@
+package org.example.digitalwallet.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A transfer accepted for later; the handle is what the caller polls, the id never leaves the server
+public record QueuedTransfer(Long id, UUID handle, Long userId, String username, Long fromWallet, Long toWallet,
+                             WalletCurrency currency, BigDecimal amount, Status status, Long transferId,
+                             String failureReason, int attempts, LocalDateTime createdAt, LocalDateTime completedAt) {
+
+    public enum Status {
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+
+    // Dated when it is applied rather than when it was queued, like any other transfer
+    public Transfer toTransfer() {
+        return Transfer.builder()
+                .fromWallet(fromWallet)
+                .toWallet(toWallet)
+                .currency(currency)
+                .transferAmount(amount)
+                .transferDate(LocalDateTime.now())
+                .build();
+    }
+}
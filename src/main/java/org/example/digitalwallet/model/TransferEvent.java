@@ -0,0 +1,25 @@
+package org.example.digitalwallet.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+// One leg of a transfer, seen from walletId. transferId is null for transfers that leave no transfer row
+public record TransferEvent(Long eventId, Long walletId, Direction direction, Long counterpartyWallet, Long transferId,
+                            BigDecimal amount, Instant occurredAt) implements WalletChange {
+
+    public enum Direction {
+        OUT,
+        IN
+    }
+
+    public static List<TransferEvent> legsOf(Long transferId, Long fromWallet, Long toWallet, BigDecimal amount) {
+        return List.of(
+                new TransferEvent(null, fromWallet, Direction.OUT, toWallet, transferId, amount, null),
+                new TransferEvent(null, toWallet, Direction.IN, fromWallet, transferId, amount, null));
+    }
+
+    public static List<TransferEvent> legsOf(Transfer transfer) {
+        return legsOf(transfer.getId(), transfer.getFromWallet(), transfer.getToWallet(), transfer.getTransferAmount());
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.digitalwallet.model;
+
+public enum TransferOutcome {
+    COMPLETED,
+    WALLET_NOT_FOUND,
+    NOT_OWNER,
+    SOURCE_CURRENCY_MISMATCH,
+    RECIPIENT_CURRENCY_MISMATCH,
+    INSUFFICIENT_FUNDS,
+    STRIPING_CHANGED
+}
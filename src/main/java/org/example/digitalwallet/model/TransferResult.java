@@ -0,0 +1,4 @@
+package org.example.digitalwallet.model;
+
+public record TransferResult(TransferOutcome outcome, Long transferId) {
+}
@@ -25,4 +25,7 @@ public class Wallet {
     private BigDecimal balance;
 
     private LocalDateTime createdAt;
+
+    // Row version the balance was read or written at; null for wallets that haven't been stored yet
+    private Long version;
 }
@@ -0,0 +1,17 @@
+package org.example.digitalwallet.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// A committed balance change of one wallet, as read back from the wallet_event outbox.
+// eventId and occurredAt are null until the row has been written
+public sealed interface WalletChange permits WalletEvent, TransferEvent {
+
+    Long eventId();
+
+    Long walletId();
+
+    BigDecimal amount();
+
+    Instant occurredAt();
+}
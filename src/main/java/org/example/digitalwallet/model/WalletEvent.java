@@ -0,0 +1,19 @@
+package org.example.digitalwallet.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record WalletEvent(Long eventId, Long walletId, Kind kind, BigDecimal amount, Instant occurredAt)
+        implements WalletChange {
+
+    public enum Kind {
+        // The starting balance of a new wallet
+        OPENING,
+        DEPOSIT,
+        WITHDRAWAL
+    }
+
+    public static WalletEvent of(Long walletId, Kind kind, BigDecimal amount) {
+        return new WalletEvent(null, walletId, kind, amount, null);
+    }
+}
@@ -0,0 +1,4 @@
+package org.example.digitalwallet.model;
+
+public record WalletOwner(Long walletId, Long userId, String username, WalletCurrency currency) {
+}
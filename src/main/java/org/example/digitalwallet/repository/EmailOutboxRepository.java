@@ -0,0 +1,111 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.OutboxEmail;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@Repository
+public class EmailOutboxRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmailOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void enqueue(OutboxEmail.Kind kind, String recipient, String username, WalletCurrency currency,
+                        BigDecimal amount, BigDecimal balance, Instant dueAt) {
+        String sql = """
+                INSERT INTO email_outbox (kind, recipient, username, currency, amount, balance, created_at, next_attempt_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        jdbcTemplate.update(sql,
+                kind.name(),
+                recipient,
+                username,
+                currency.name(),
+                amount,
+                balance,
+                Timestamp.from(Instant.now()),
+                Timestamp.from(dueAt));
+    }
+
+    // Locks due rows that no other node holds; the caller leases them before its transaction ends
+    public List<OutboxEmail> lockDue(Instant now, int limit) {
+        String sql = """
+                SELECT * FROM email_outbox
+                WHERE status = 'PENDING' AND next_attempt_at <= ?
+                ORDER BY id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """;
+
+        return jdbcTemplate.query(sql, outboxEmailRowMapper, Timestamp.from(now), limit);
+    }
+
+    // Deposits for the same recipients that are still waiting out their coalescing window.
+    // Rows that were tried before are leased or backing off and are left alone.
+    public List<OutboxEmail> lockPendingDeposits(Collection<String> recipients, Instant now) {
+        if (recipients.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String sql = """
+                SELECT * FROM email_outbox
+                WHERE status = 'PENDING' AND kind = 'DEPOSIT' AND attempts = 0 AND next_attempt_at > ?
+                  AND recipient IN (%s)
+                ORDER BY id
+                FOR UPDATE SKIP LOCKED
+                """.formatted(String.join(", ", Collections.nCopies(recipients.size(), "?")));
+
+        List<Object> args = new ArrayList<>(recipients.size() + 1);
+        args.add(Timestamp.from(now));
+        args.addAll(recipients);
+
+        return jdbcTemplate.query(sql, outboxEmailRowMapper, args.toArray());
+    }
+
+    // Hides the rows from other senders until the lease runs out, so a crashed sender's rows come back on their own
+    public void lease(Collection<Long> ids, Instant leaseUntil) {
+        jdbcTemplate.batchUpdate(
+                "UPDATE email_outbox SET attempts = attempts + 1, next_attempt_at = ? WHERE id = ?",
+                ids.stream().map(id -> new Object[]{Timestamp.from(leaseUntil), id}).toList());
+    }
+
+    public void delete(Collection<Long> ids) {
+        jdbcTemplate.batchUpdate("DELETE FROM email_outbox WHERE id = ?",
+                ids.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    public void retryAt(Collection<Long> ids, Instant nextAttemptAt) {
+        jdbcTemplate.batchUpdate("UPDATE email_outbox SET next_attempt_at = ? WHERE id = ?",
+                ids.stream().map(id -> new Object[]{Timestamp.from(nextAttemptAt), id}).toList());
+    }
+
+    // Parks rows that ran out of attempts; they stay in the table for inspection
+    public void markDead(Collection<Long> ids) {
+        jdbcTemplate.batchUpdate("UPDATE email_outbox SET status = 'DEAD' WHERE id = ?",
+                ids.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    private final RowMapper<OutboxEmail> outboxEmailRowMapper = (rs, rowNum) -> new OutboxEmail(
+            rs.getLong("id"),
+            OutboxEmail.Kind.valueOf(rs.getString("kind")),
+            rs.getString("recipient"),
+            rs.getString("username"),
+            WalletCurrency.valueOf(rs.getString("currency")),
+            rs.getBigDecimal("amount"),
+            rs.getBigDecimal("balance"),
+            rs.getInt("attempts"));
+}
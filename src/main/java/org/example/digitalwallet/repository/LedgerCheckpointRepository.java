@@ -0,0 +1,36 @@
+package org.example.digitalwallet.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+public class LedgerCheckpointRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Map<Integer, Long> findAll() {
+        Map<Integer, Long> checkpoints = new HashMap<>();
+
+        jdbcTemplate.query("SELECT partition_id, flushed_seq FROM ledger_checkpoint",
+                rs -> { checkpoints.put(rs.getInt("partition_id"), rs.getLong("flushed_seq")); });
+
+        return checkpoints;
+    }
+
+    public void save(int partitionId, long flushedSeq) {
+        String sql = """
+                INSERT INTO ledger_checkpoint (partition_id, flushed_seq)
+                VALUES (?, ?)
+                ON CONFLICT (partition_id) DO UPDATE SET flushed_seq = EXCLUDED.flushed_seq
+                """;
+
+        jdbcTemplate.update(sql, partitionId, flushedSeq);
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.WalletChange;
+import org.example.digitalwallet.model.WalletEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only double-entry ledger. Every posting nets to zero: a transfer debits one wallet and credits the other,
+// and money entering or leaving the system is balanced against the external account, stored as a NULL wallet_id.
+// Amounts are signed from the wallet's side, so a wallet's balance is the sum of its entries.
+@Repository
+public class LedgerEntryRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerEntryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void appendAll(List<? extends WalletChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        String sql = """
+                INSERT INTO ledger_entry (wallet_id, entry_type, amount, counterparty_wallet, transfer_id)
+                VALUES (?, ?, ?, ?, ?)
+                """;
+
+        List<Object[]> rows = new ArrayList<>(changes.size() * 2);
+        for (WalletChange change : changes) {
+            switch (change) {
+                case WalletEvent event -> {
+                    BigDecimal amount = event.kind() == WalletEvent.Kind.WITHDRAWAL
+                            ? event.amount().negate()
+                            : event.amount();
+                    rows.add(new Object[]{event.walletId(), event.kind().name(), amount, null, null});
+                    rows.add(new Object[]{null, event.kind().name(), amount.negate(), event.walletId(), null});
+                }
+                // Each leg is one side of the posting; the other leg carries the opposite entry
+                case TransferEvent leg -> rows.add(new Object[]{
+                        leg.walletId(),
+                        "TRANSFER",
+                        leg.direction() == TransferEvent.Direction.OUT ? leg.amount().negate() : leg.amount(),
+                        leg.counterpartyWallet(),
+                        leg.transferId()});
+            }
+        }
+
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    // The balance as it stood at the given time: the nearest snapshot at or before it, found with a backward scan of
+    // the primary key, plus the entries between the two. A wallet is snapshotted once it gathers minEntries entries,
+    // so the replayed range stays short however long the wallet has existed
+    public BigDecimal findBalanceAt(Long walletId, Instant at) {
+        Timestamp atTimestamp = Timestamp.from(at);
+
+        List<Snapshot> snapshots = jdbcTemplate.query(
+                "SELECT as_of, balance FROM ledger_snapshot WHERE wallet_id = ? AND as_of <= ? ORDER BY as_of DESC LIMIT 1",
+                snapshotRowMapper, walletId, atTimestamp);
+
+        if (snapshots.isEmpty()) {
+            return jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(amount), 0) FROM ledger_entry WHERE wallet_id = ? AND created_at <= ?",
+                    BigDecimal.class, walletId, atTimestamp);
+        }
+
+        Snapshot snapshot = snapshots.getFirst();
+        BigDecimal tail = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM ledger_entry WHERE wallet_id = ? AND created_at > ? AND created_at <= ?",
+                BigDecimal.class, walletId, Timestamp.from(snapshot.asOf()), atTimestamp);
+        return snapshot.balance().add(tail);
+    }
+
+    // ========== Snapshots ==========
+
+    // Held for the length of a snapshot run, so only one node takes snapshots at a time; null when another node has it
+    public Instant lockSnapshotRun() {
+        String sql = "SELECT snapshotted_to FROM ledger_snapshot_run WHERE id = 1 FOR UPDATE SKIP LOCKED";
+
+        List<Timestamp> snapshottedTo = jdbcTemplate.queryForList(sql, Timestamp.class);
+        return snapshottedTo.isEmpty() ? null : snapshottedTo.getFirst().toInstant();
+    }
+
+    // The database's clock, the one that stamps created_at, so a snapshot's cut-off doesn't depend on the node's clock
+    public Instant currentTime() {
+        return jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class).toInstant();
+    }
+
+    public void saveSnapshotRun(Instant snapshottedTo) {
+        jdbcTemplate.update("UPDATE ledger_snapshot_run SET snapshotted_to = ? WHERE id = 1", Timestamp.from(snapshottedTo));
+    }
+
+    // Snapshots, as of asOf, every wallet that had entries since the previous run and has at least minEntries
+    // entries since its own latest snapshot. Quiet wallets keep their short tail instead of gaining a row per run
+    public int snapshot(Instant since, Instant asOf, int minEntries) {
+        String sql = """
+                INSERT INTO ledger_snapshot (wallet_id, as_of, balance)
+                SELECT e.wallet_id, ?, COALESCE(s.balance, 0) + SUM(e.amount)
+                FROM ledger_entry e
+                LEFT JOIN ledger_snapshot s ON s.wallet_id = e.wallet_id
+                    AND s.as_of = (SELECT MAX(x.as_of) FROM ledger_snapshot x WHERE x.wallet_id = e.wallet_id)
+                WHERE e.wallet_id IN (
+                        SELECT DISTINCT wallet_id FROM ledger_entry
+                        WHERE created_at > ? AND created_at <= ? AND wallet_id IS NOT NULL)
+                  AND (s.as_of IS NULL OR e.created_at > s.as_of)
+                  AND e.created_at <= ?
+                GROUP BY e.wallet_id, s.balance
+                HAVING COUNT(*) >= ?
+                """;
+
+        Timestamp asOfTimestamp = Timestamp.from(asOf);
+        return jdbcTemplate.update(sql, asOfTimestamp, Timestamp.from(since), asOfTimestamp, asOfTimestamp, minEntries);
+    }
+
+    private final RowMapper<Snapshot> snapshotRowMapper = (rs, rowNum) ->
+            new Snapshot(rs.getTimestamp("as_of").toInstant(), rs.getBigDecimal("balance"));
+
+    private record Snapshot(Instant asOf, BigDecimal balance) {
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.digitalwallet.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Repository
+public class TransferPartitionRepository {
+
+    public static final String ARCHIVE_SCHEMA = "transfer_archive";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'transfer_p'yyyy_MM");
+    private static final Pattern NAME_PATTERN = Pattern.compile("transfer_p(\\d{4})_(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return NAME_FORMAT.format(month);
+    }
+
+    // Months that currently have an attached partition
+    public List<YearMonth> findAttachedMonths() {
+        String sql = """
+                SELECT c.relname
+                FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'transfer'::regclass
+                """;
+
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(sql, String.class)) {
+            Matcher matcher = NAME_PATTERN.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        return months;
+    }
+
+    // Databases created before partitioning still have transfer as a plain table, which CREATE TABLE IF NOT EXISTS
+    // in schema.sql leaves alone. Swaps it for the partitioned table in one transaction: the old table is renamed,
+    // the new one takes over its id sequence, gets a partition for every month the old rows span, and receives
+    // the rows. Returns false when transfer is already partitioned.
+    // The exclusive lock is only taken when the table still needs migrating: on a partitioned table it would cover
+    // every partition and queue all transfer traffic behind the longest running reader on each startup.
+    // A node that starts alongside waits on the lock, then finds the partitioned table and does nothing
+    @Transactional
+    public boolean migrateToPartitioned() {
+        if (!isPlainTransferTable()) {
+            return false;
+        }
+
+        jdbcTemplate.execute("LOCK TABLE transfer IN ACCESS EXCLUSIVE MODE");
+        if (!isPlainTransferTable()) {
+            return false;
+        }
+
+        jdbcTemplate.execute("ALTER TABLE transfer RENAME TO transfer_unpartitioned");
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS transfer_pkey RENAME TO transfer_unpartitioned_pkey");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_transfer_from_wallet_date, idx_transfer_to_wallet_date");
+        String sequence = jdbcTemplate.queryForObject("SELECT pg_get_serial_sequence('transfer_unpartitioned', 'id')", String.class);
+
+        // Same definition as schema.sql, except that id keeps drawing from the old table's sequence
+        jdbcTemplate.execute("""
+                CREATE TABLE transfer(
+                    id INT NOT NULL DEFAULT nextval('%s'),
+                    from_wallet BIGINT REFERENCES wallet(id) NOT NULL,
+                    to_wallet   BIGINT REFERENCES wallet(id) NOT NULL,
+                    currency VARCHAR(3) NOT NULL,
+                    transfer_amount NUMERIC(18, 2) NOT NULL,
+                    transfer_date TIMESTAMP WITH TIME ZONE NOT NULL,
+                    PRIMARY KEY (id, transfer_date)
+                ) PARTITION BY RANGE (transfer_date)
+                """.formatted(sequence));
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " OWNED BY transfer.id");
+        jdbcTemplate.execute("CREATE INDEX idx_transfer_from_wallet_date ON transfer(from_wallet, transfer_date, id)");
+        jdbcTemplate.execute("CREATE INDEX idx_transfer_to_wallet_date ON transfer(to_wallet, transfer_date, id)");
+
+        // transfer_date was nullable before partitioning; such rows go to the oldest month rather than being lost
+        String months = """
+                SELECT DISTINCT to_char(COALESCE(transfer_date, TIMESTAMP WITH TIME ZONE 'epoch'), 'YYYY-MM')
+                FROM transfer_unpartitioned
+                """;
+        for (String month : jdbcTemplate.queryForList(months, String.class)) {
+            createPartition(YearMonth.parse(month));
+        }
+
+        jdbcTemplate.update("""
+                INSERT INTO transfer (id, from_wallet, to_wallet, currency, transfer_amount, transfer_date)
+                SELECT id, from_wallet, to_wallet, currency, transfer_amount,
+                       COALESCE(transfer_date, TIMESTAMP WITH TIME ZONE 'epoch')
+                FROM transfer_unpartitioned
+                """);
+        jdbcTemplate.execute("DROP TABLE transfer_unpartitioned");
+        return true;
+    }
+
+    public void createPartition(YearMonth month) {
+        // Identifiers and bounds come from YearMonth, never from user input
+        String sql = "CREATE TABLE IF NOT EXISTS %s PARTITION OF transfer FOR VALUES FROM ('%s') TO ('%s')"
+                .formatted(partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1));
+
+        jdbcTemplate.execute(sql);
+    }
+
+    // Detaching is a catalog change rather than a row-by-row DELETE, and CONCURRENTLY keeps inserts into
+    // the live months flowing. It can't run inside a transaction block, so callers must not open one
+    public void detachAndArchive(YearMonth month) {
+        String name = partitionName(month);
+
+        jdbcTemplate.execute("ALTER TABLE transfer DETACH PARTITION " + name + " CONCURRENTLY");
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+        jdbcTemplate.execute("ALTER TABLE " + name + " SET SCHEMA " + ARCHIVE_SCHEMA);
+    }
+
+    private boolean isPlainTransferTable() {
+        String kind = jdbcTemplate.queryForObject("SELECT relkind::text FROM pg_class WHERE oid = 'transfer'::regclass", String.class);
+        return "r".equals(kind);
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.QueuedTransfer;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class TransferQueueRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferQueueRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void enqueue(UUID handle, Long userId, String username, Transfer transfer) {
+        String sql = """
+                INSERT INTO transfer_queue (handle, user_id, username, from_wallet, to_wallet, currency, amount, created_at, next_attempt_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        jdbcTemplate.update(sql,
+                handle,
+                userId,
+                username,
+                transfer.getFromWallet(),
+                transfer.getToWallet(),
+                transfer.getCurrency().name(),
+                transfer.getTransferAmount(),
+                Timestamp.valueOf(transfer.getTransferDate()),
+                Timestamp.from(Instant.now()));
+    }
+
+    public QueuedTransfer findByHandle(UUID handle) {
+        List<QueuedTransfer> found = jdbcTemplate.query(
+                "SELECT * FROM transfer_queue WHERE handle = ?", queuedTransferRowMapper, handle);
+
+        return found.isEmpty() ? null : found.getFirst();
+    }
+
+    // Read without locks; each row is locked on its own when a worker applies it
+    public List<QueuedTransfer> findDue(Instant now, int limit) {
+        String sql = """
+                SELECT * FROM transfer_queue
+                WHERE status = 'PENDING' AND next_attempt_at <= ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, queuedTransferRowMapper, Timestamp.from(now), limit);
+    }
+
+    // Null when the row is already finished or another worker holds it
+    public QueuedTransfer lockPending(Long id) {
+        String sql = "SELECT * FROM transfer_queue WHERE id = ? AND status = 'PENDING' FOR UPDATE SKIP LOCKED";
+
+        List<QueuedTransfer> locked = jdbcTemplate.query(sql, queuedTransferRowMapper, id);
+        return locked.isEmpty() ? null : locked.getFirst();
+    }
+
+    public void complete(Long id, Long transferId) {
+        jdbcTemplate.update(
+                "UPDATE transfer_queue SET status = 'COMPLETED', transfer_id = ?, completed_at = ? WHERE id = ? AND status = 'PENDING'",
+                transferId, Timestamp.valueOf(LocalDateTime.now()), id);
+    }
+
+    public void fail(Long id, String reason) {
+        jdbcTemplate.update(
+                "UPDATE transfer_queue SET status = 'FAILED', failure_reason = ?, completed_at = ? WHERE id = ? AND status = 'PENDING'",
+                reason, Timestamp.valueOf(LocalDateTime.now()), id);
+    }
+
+    public void retryAt(Long id, Instant nextAttemptAt) {
+        jdbcTemplate.update(
+                "UPDATE transfer_queue SET attempts = attempts + 1, next_attempt_at = ? WHERE id = ? AND status = 'PENDING'",
+                Timestamp.from(nextAttemptAt), id);
+    }
+
+    // Finished rows only have to outlive the callers polling for them
+    public int deleteFinishedBefore(LocalDateTime before) {
+        return jdbcTemplate.update(
+                "DELETE FROM transfer_queue WHERE status <> 'PENDING' AND completed_at < ?", Timestamp.valueOf(before));
+    }
+
+    private final RowMapper<QueuedTransfer> queuedTransferRowMapper = (rs, rowNum) -> {
+        Timestamp completedAt = rs.getTimestamp("completed_at");
+        long transferId = rs.getLong("transfer_id");
+        boolean hasTransferId = !rs.wasNull();
+
+        return new QueuedTransfer(
+                rs.getLong("id"),
+                rs.getObject("handle", UUID.class),
+                rs.getLong("user_id"),
+                rs.getString("username"),
+                rs.getLong("from_wallet"),
+                rs.getLong("to_wallet"),
+                WalletCurrency.valueOf(rs.getString("currency")),
+                rs.getBigDecimal("amount"),
+                QueuedTransfer.Status.valueOf(rs.getString("status")),
+                hasTransferId ? transferId : null,
+                rs.getString("failure_reason"),
+                rs.getInt("attempts"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                completedAt != null ? completedAt.toLocalDateTime() : null);
+    };
+}
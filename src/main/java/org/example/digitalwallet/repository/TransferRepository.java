@@ -3,14 +3,26 @@ package org.example.digitalwallet.repository;
 import org.example.digitalwallet.model.Transfer;
 import org.example.digitalwallet.model.WalletCurrency;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class TransferRepository {
 
+    private static final int BATCH_SIZE = 100;
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
 
     public TransferRepository(JdbcTemplate jdbcTemplate) {
@@ -31,29 +43,128 @@ public class TransferRepository {
                 transfer.getTransferDate());
     }
 
-    public List<Transfer> findTransfers(Long cursor, int limit) {
+    // Ids handed out ahead of the insert, for writers that need the id before the row exists
+    public List<Long> reserveIds(int count) {
+        String sql = "SELECT nextval(pg_get_serial_sequence('transfer', 'id')) FROM generate_series(1, ?)";
+
+        return jdbcTemplate.queryForList(sql, Long.class, count);
+    }
+
+    public void saveAllWithIds(List<Transfer> transfers) {
+        String sql = """
+                INSERT INTO transfer (id, from_wallet , to_wallet , currency , transfer_amount, transfer_date)
+                VALUES(? , ? , ? , ? , ? , ?)
+                """;
+
+        ParameterizedPreparedStatementSetter<Transfer> setter = (ps, transfer) -> {
+            ps.setLong(1, transfer.getId());
+            ps.setLong(2, transfer.getFromWallet());
+            ps.setLong(3, transfer.getToWallet());
+            ps.setString(4, transfer.getCurrency().name());
+            ps.setBigDecimal(5, transfer.getTransferAmount());
+            ps.setTimestamp(6, Timestamp.valueOf(transfer.getTransferDate()));
+        };
+
+        jdbcTemplate.batchUpdate(sql, transfers, BATCH_SIZE, setter);
+    }
+
+    // Newest first across every wallet, only reaching back to `since` so the planner skips the older monthly partitions
+    public List<Transfer> findTransfers(Long cursor, LocalDateTime since, int limit) {
         String sql;
         if(cursor == null) {
             //First page
             sql = """
                     SELECT * FROM transfer
+                    WHERE transfer_date >= ?
                     ORDER BY id DESC
                     LIMIT ?
                     """;
 
-            return jdbcTemplate.query(sql ,transferRowMapper ,limit);
+            return jdbcTemplate.query(sql ,transferRowMapper ,Timestamp.valueOf(since) ,limit);
         }else {
             // Next page
             sql = """
                 SELECT * FROM transfer
-                WHERE id < ?
+                WHERE transfer_date >= ? AND id < ?
                 ORDER BY id DESC
                 LIMIT ?
             """;
-            return jdbcTemplate.query(sql, transferRowMapper, cursor, limit);
+            return jdbcTemplate.query(sql, transferRowMapper, Timestamp.valueOf(since), cursor, limit);
+        }
+    }
+
+    // Newest first, both directions. Each branch walks its own (wallet, transfer_date, id) index and stops after
+    // `limit` rows, so the merge never reads more than twice a page however long the wallet's history is.
+    // Paging on transfer_date rather than id lets every bound be a date, which is what prunes the monthly partitions
+    public List<Transfer> findWalletTransfers(Long walletId, LocalDateTime beforeDate, Long beforeId,
+                                              LocalDateTime from, LocalDateTime to, int limit) {
+        StringBuilder bounds = new StringBuilder();
+        List<Object> boundArgs = new ArrayList<>();
+        if (beforeDate != null) {
+            // The plain comparison is redundant with the row comparison but is the one the planner prunes on
+            bounds.append(" AND transfer_date <= ? AND (transfer_date, id) < (?, ?)");
+            boundArgs.add(Timestamp.valueOf(beforeDate));
+            boundArgs.add(Timestamp.valueOf(beforeDate));
+            boundArgs.add(beforeId);
         }
+        if (from != null) {
+            bounds.append(" AND transfer_date >= ?");
+            boundArgs.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            bounds.append(" AND transfer_date < ?");
+            boundArgs.add(Timestamp.valueOf(to));
+        }
+
+        // Self-transfers match both branches, so the incoming one skips them
+        String sql = """
+                SELECT * FROM (
+                    (SELECT * FROM transfer WHERE from_wallet = ?%1$s
+                     ORDER BY transfer_date DESC, id DESC LIMIT ?)
+                    UNION ALL
+                    (SELECT * FROM transfer WHERE to_wallet = ? AND from_wallet <> ?%1$s
+                     ORDER BY transfer_date DESC, id DESC LIMIT ?)
+                ) t
+                ORDER BY transfer_date DESC, id DESC
+                LIMIT ?
+                """.formatted(bounds);
+
+        List<Object> args = new ArrayList<>();
+        args.add(walletId);
+        args.addAll(boundArgs);
+        args.add(limit);
+        args.add(walletId);
+        args.add(walletId);
+        args.addAll(boundArgs);
+        args.add(limit);
+        args.add(limit);
+
+        return jdbcTemplate.query(sql, transferRowMapper, args.toArray());
     }
 
+    // Hands rows to the consumer as the driver fetches them, EXPORT_FETCH_SIZE at a time, instead of building a list.
+    // Postgres only uses a cursor inside a transaction, so callers must hold one open for the whole read.
+    // Both bounds are required, so an export only reads the monthly partitions its range covers
+    public void forEachTransfer(Long walletId, LocalDateTime from, LocalDateTime to, Consumer<Transfer> action) {
+        String sql = """
+                SELECT * FROM transfer
+                WHERE (from_wallet = ? OR to_wallet = ?) AND transfer_date >= ? AND transfer_date < ?
+                ORDER BY id
+                """;
+        List<Object> args = List.of(walletId, walletId, Timestamp.valueOf(from), Timestamp.valueOf(to));
+
+        PreparedStatementCreator statement = connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        };
+
+        jdbcTemplate.query(statement, (RowCallbackHandler) rs -> action.accept(transferRowMapper.mapRow(rs, rs.getRow())));
+    }
 
     private final RowMapper<Transfer> transferRowMapper = (rs, rowNum) -> Transfer.builder()
             .id(rs.getLong("id"))
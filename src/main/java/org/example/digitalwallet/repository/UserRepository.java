@@ -58,4 +58,7 @@ public class UserRepository {
         );
     }
 
+    public void updatePassword(String username, String password) {
+        jdbcTemplate.update("UPDATE users SET password = ? WHERE username = ?", password, username);
+    }
 }
@@ -0,0 +1,66 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.Wallet;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Writes wallets that a statement just changed back into both wallet caches once the surrounding transaction commits,
+// so a rolled-back write never reaches them. The caches keep whichever copy has the higher version,
+// which makes the order in which concurrent commits get here irrelevant.
+final class WalletCacheWriter {
+
+    private final CacheManager cacheManager;
+
+    WalletCacheWriter(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    // A user's entry is only replaced if it already holds this wallet; users with several wallets are cached by their first
+    void put(Wallet wallet) {
+        afterCommit(() -> {
+            cache(WalletRepository.WALLET_CACHE).put(wallet.getId(), wallet);
+
+            Cache byUser = cache(WalletRepository.WALLET_BY_USER_CACHE);
+            Wallet cached = byUser.get(wallet.getUserId(), Wallet.class);
+            if (cached != null && wallet.getId().equals(cached.getId())) {
+                byUser.put(wallet.getUserId(), wallet);
+            }
+        });
+    }
+
+    void evict(Long walletId, Long userId) {
+        afterCommit(() -> {
+            cache(WalletRepository.WALLET_CACHE).evict(walletId);
+            if (userId != null) {
+                cache(WalletRepository.WALLET_BY_USER_CACHE).evict(userId);
+            }
+        });
+    }
+
+    private Cache cache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            throw new IllegalStateException("No cache named " + name);
+        }
+        return cache;
+    }
+
+    // Failures after a commit are logged by the transaction manager rather than thrown at a caller whose write went through
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.WalletChange;
+import org.example.digitalwallet.model.WalletEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// The wallet_event outbox. Writers append in the transaction that changes the balance, after the wallet row is locked,
+// so one wallet's events commit in id order. The dispatcher reads them back shard by shard.
+// Striped wallets are the exception: they are credited on a stripe row without locking the wallet row,
+// so two of their events can commit out of id order and are not guaranteed to be delivered in order.
+@Repository
+public class WalletEventRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String TRANSFER_OUT = "TRANSFER_OUT";
+    private static final String TRANSFER_IN = "TRANSFER_IN";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletEventRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void appendAll(List<? extends WalletChange> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        String sql = """
+                INSERT INTO wallet_event (wallet_id, event_type, amount, counterparty_wallet, transfer_id)
+                VALUES (?, ?, ?, ?, ?)
+                """;
+
+        ParameterizedPreparedStatementSetter<WalletChange> setter = (ps, event) -> {
+            ps.setLong(1, event.walletId());
+            ps.setString(2, eventType(event));
+            ps.setBigDecimal(3, event.amount());
+            if (event instanceof TransferEvent transfer) {
+                ps.setLong(4, transfer.counterpartyWallet());
+                ps.setObject(5, transfer.transferId(), Types.BIGINT);
+            } else {
+                ps.setNull(4, Types.BIGINT);
+                ps.setNull(5, Types.BIGINT);
+            }
+        };
+
+        jdbcTemplate.batchUpdate(sql, List.<WalletChange>copyOf(events), BATCH_SIZE, setter);
+    }
+
+    // ========== Dispatching ==========
+
+    public void createShards(int shardCount) {
+        String sql = "INSERT INTO wallet_event_shard (shard) VALUES (?) ON CONFLICT (shard) DO NOTHING";
+
+        List<Object[]> args = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            args.add(new Object[]{shard});
+        }
+        jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    // Whoever holds a shard row is the only reader of its wallets' events until the transaction ends
+    public boolean tryLockShard(int shard) {
+        String sql = "SELECT shard FROM wallet_event_shard WHERE shard = ? FOR UPDATE SKIP LOCKED";
+
+        return !jdbcTemplate.queryForList(sql, Integer.class, shard).isEmpty();
+    }
+
+    public List<WalletChange> findPending(int shard, int shardCount, int limit) {
+        String sql = """
+                SELECT * FROM wallet_event
+                WHERE MOD(wallet_id, ?) = ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, walletChangeRowMapper, shardCount, shard, limit);
+    }
+
+    public void delete(Collection<Long> ids) {
+        jdbcTemplate.batchUpdate("DELETE FROM wallet_event WHERE id = ?",
+                ids.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    private static String eventType(WalletChange event) {
+        return switch (event) {
+            case WalletEvent wallet -> wallet.kind().name();
+            case TransferEvent transfer -> transfer.direction() == TransferEvent.Direction.OUT ? TRANSFER_OUT : TRANSFER_IN;
+        };
+    }
+
+    private final RowMapper<WalletChange> walletChangeRowMapper = (rs, rowNum) -> {
+        Long id = rs.getLong("id");
+        Long walletId = rs.getLong("wallet_id");
+        BigDecimal amount = rs.getBigDecimal("amount");
+        Instant occurredAt = rs.getTimestamp("created_at").toInstant();
+
+        String type = rs.getString("event_type");
+        if (TRANSFER_OUT.equals(type) || TRANSFER_IN.equals(type)) {
+            long transferId = rs.getLong("transfer_id");
+            Long recordedId = rs.wasNull() ? null : transferId;
+            return new TransferEvent(id, walletId,
+                    TRANSFER_OUT.equals(type) ? TransferEvent.Direction.OUT : TransferEvent.Direction.IN,
+                    rs.getLong("counterparty_wallet"), recordedId, amount, occurredAt);
+        }
+        return new WalletEvent(id, walletId, WalletEvent.Kind.valueOf(type), amount, occurredAt);
+    };
+}
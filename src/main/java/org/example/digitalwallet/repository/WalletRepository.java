@@ -1,53 +1,143 @@
 package org.example.digitalwallet.repository;
 
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
 import org.example.digitalwallet.model.Wallet;
+import org.example.digitalwallet.model.WalletChange;
 import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.model.WalletEvent;
+import org.example.digitalwallet.model.WalletOwner;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Repository
 public class WalletRepository {
 
-    private static final String WALLET_CACHE = "wallets";
-    private static final String WALLET_BY_USER_CACHE = "walletsByUser";
+    static final String WALLET_CACHE = "wallets";
+    static final String WALLET_BY_USER_CACHE = "walletsByUser";
 
 
+    // What single-row writes hand back about the row they changed
+    private static final String[] WRITTEN_COLUMNS =
+            {"id", "user_id", "currency", "created_at", "balance", "version", "stripe_count"};
+
+    // Striped wallets keep part of their balance in wallet_stripe rows, so reads add those back
+    private static final String SELECT_WALLET = """
+            SELECT id, user_id, currency, created_at, version,
+                   balance + CASE WHEN stripe_count > 0
+                       THEN (SELECT COALESCE(SUM(s.balance), 0) FROM wallet_stripe s WHERE s.wallet_id = wallet.id)
+                       ELSE 0
+                   END AS balance
+            FROM wallet
+            """;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final WalletEventRepository walletEventRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final WalletCacheWriter walletCache;
 
-    public WalletRepository(JdbcTemplate jdbcTemplate) {
+    public WalletRepository(JdbcTemplate jdbcTemplate, WalletEventRepository walletEventRepository,
+                            LedgerEntryRepository ledgerEntryRepository, CacheManager cacheManager) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.walletEventRepository = walletEventRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.walletCache = new WalletCacheWriter(cacheManager);
     }
 
-    @Cacheable(value = WALLET_CACHE, key = "#id", unless = "#result == null")
+    @Cacheable(value = WALLET_CACHE, key = "#id", sync = true)
     public Wallet findById(Long id) {
-        String sql = "SELECT id, user_id, currency, balance, created_at FROM wallet WHERE id = ?";
+        String sql = SELECT_WALLET + "WHERE id = ?";
 
         return getWallet(id, sql);
     }
 
+    // Uncached read of the current total, for callers that keep their own copy of the balance
+    public BigDecimal findBalance(Long id) {
+        Wallet wallet = getWallet(id, SELECT_WALLET + "WHERE id = ?");
+
+        return wallet == null ? null : wallet.getBalance();
+    }
+
+    // Uncached totals of several wallets, keyed by wallet id; missing wallets are left out
+    public Map<Long, BigDecimal> findBalances(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        String sql = SELECT_WALLET + "WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (Wallet wallet : jdbcTemplate.query(sql, walletRowMapper, ids.toArray())) {
+            balances.put(wallet.getId(), wallet.getBalance());
+        }
+        return balances;
+    }
+
+    public WalletOwner findOwner(Long id) {
+        String sql = """
+                SELECT w.id, w.user_id, u.username, w.currency
+                FROM wallet w JOIN users u ON u.id = w.user_id
+                WHERE w.id = ?
+                """;
+
+        List<WalletOwner> owners = jdbcTemplate.query(sql, (rs, rowNum) -> new WalletOwner(
+                rs.getLong("id"),
+                rs.getLong("user_id"),
+                rs.getString("username"),
+                WalletCurrency.valueOf(rs.getString("currency"))), id);
+
+        return owners.isEmpty() ? null : owners.getFirst();
+    }
+
     public Wallet findByIdForUpdate(Long id) {
-        String sql = "SELECT id, user_id, currency, balance, created_at FROM wallet WHERE id = ? FOR UPDATE";
+        String sql = "SELECT id, user_id, currency, balance, created_at, version FROM wallet WHERE id = ? FOR UPDATE";
 
         return getWallet(id, sql);
     }
 
+    public List<Wallet> findAllByIdsForUpdate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Rows are locked in ascending id order so concurrent batches can't deadlock each other.
+        // Only the main balance is read, so a striped wallet can't spend its stripes in a batch
+        String sql = "SELECT id, user_id, currency, balance, created_at, version FROM wallet WHERE id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?"))
+                + ") ORDER BY id FOR UPDATE";
+
+        return jdbcTemplate.query(sql, walletRowMapper, ids.toArray());
+    }
+
     private Wallet getWallet(Long id, String sql) {
-        List<Wallet> wallets = jdbcTemplate.query(sql , (rs , rowNum) -> Wallet.builder()
-                        .id(rs.getLong("id"))
-                        .userId(rs.getLong("user_id"))
-                        .currency(WalletCurrency.valueOf(rs.getString("currency")))
-                        .balance(rs.getBigDecimal("balance"))
-                        .createdAt(rs.getTimestamp("created_at") != null
-                                ? rs.getTimestamp("created_at").toLocalDateTime()
-                                : null)
-                        .build(),
-                        id);
+        List<Wallet> wallets = jdbcTemplate.query(sql, walletRowMapper, id);
 
         if (wallets.isEmpty()) {
             return null;
@@ -57,6 +147,25 @@ public class WalletRepository {
     }
 
 
+    private final RowMapper<Wallet> walletRowMapper = (rs, rowNum) -> Wallet.builder()
+            .id(rs.getLong("id"))
+            .userId(rs.getLong("user_id"))
+            .currency(WalletCurrency.valueOf(rs.getString("currency")))
+            .balance(rs.getBigDecimal("balance"))
+            .createdAt(rs.getTimestamp("created_at") != null
+                    ? rs.getTimestamp("created_at").toLocalDateTime()
+                    : null)
+            .version(rs.getLong("version"))
+            .build();
+
+    // A wallet row as an UPDATE left it. Its balance is the whole balance only when the wallet isn't striped
+    private final RowMapper<WrittenWallet> writtenWalletRowMapper = (rs, rowNum) ->
+            new WrittenWallet(walletRowMapper.mapRow(rs, rowNum), rs.getInt("stripe_count") > 0);
+
+    private record WrittenWallet(Wallet wallet, boolean striped) {
+    }
+
+
     @CacheEvict(value = WALLET_BY_USER_CACHE, key = "#wallet.userId")
     public void createWallet(Wallet wallet) {
         String sql = """
@@ -64,85 +173,336 @@ public class WalletRepository {
             VALUES (?, ?,?,?)
             """;
 
-        jdbcTemplate.update(sql,
-                wallet.getUserId(),
-                wallet.getCurrency().name(),
-                wallet.getBalance(),
-                wallet.getCreatedAt());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
+            ps.setLong(1, wallet.getUserId());
+            ps.setString(2, wallet.getCurrency().name());
+            ps.setBigDecimal(3, wallet.getBalance());
+            ps.setObject(4, wallet.getCreatedAt());
+            return ps;
+        }, keyHolder);
+
+        Long walletId = keyHolder.getKeyAs(Long.class);
+        record(List.of(WalletEvent.of(walletId, WalletEvent.Kind.OPENING, wallet.getBalance())));
     }
 
-    @Cacheable(value = WALLET_BY_USER_CACHE, key = "#user_id", unless = "#result == null")
+    @Cacheable(value = WALLET_BY_USER_CACHE, key = "#user_id", sync = true)
     public Wallet getWalletByUserId(Long user_id) {
-        String sql = "SELECT id, user_id, currency, balance, created_at FROM wallet WHERE user_id = ?";
+        String sql = SELECT_WALLET + "WHERE user_id = ? ORDER BY id LIMIT 1";
 
         return getWallet(user_id, sql);
     }
 
-    @Caching(evict = {
-        @CacheEvict(value = WALLET_CACHE, key = "#walletId"),
-        @CacheEvict(value = WALLET_BY_USER_CACHE, key = "#userId")
-    })
-    public void addFunds(BigDecimal deposit, Long walletId, Long userId) {
+    // The deposit, its event and its ledger entries in one round trip, keyed by the owner so no wallet lookup comes first.
+    // The returned wallet carries the balance this statement wrote, which also replaces the cached copies
+    public Wallet depositByUserId(Long userId, BigDecimal deposit) {
+        String sql = """
+                WITH target AS (
+                    SELECT id FROM wallet WHERE user_id = :userId ORDER BY id LIMIT 1
+                ),
+                deposited AS (
+                    UPDATE wallet
+                    SET balance = COALESCE(balance, 0) + :amount, version = version + 1
+                    WHERE id = (SELECT id FROM target)
+                    RETURNING id, user_id, currency, created_at, balance, version, stripe_count
+                ),
+                events AS (
+                    INSERT INTO wallet_event (wallet_id, event_type, amount)
+                    SELECT id, 'DEPOSIT', :amount FROM deposited
+                ),
+                entries AS (
+                    INSERT INTO ledger_entry (wallet_id, entry_type, amount, counterparty_wallet)
+                    SELECT id, 'DEPOSIT', :amount, NULL FROM deposited
+                    UNION ALL
+                    SELECT NULL, 'DEPOSIT', -:amount, id FROM deposited
+                )
+                SELECT id, user_id, currency, created_at, version, stripe_count,
+                       balance + CASE WHEN stripe_count > 0
+                           THEN (SELECT COALESCE(SUM(s.balance), 0) FROM wallet_stripe s WHERE s.wallet_id = deposited.id)
+                           ELSE 0
+                       END AS balance
+                FROM deposited
+                """;
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("amount", deposit);
+
+        List<WrittenWallet> written = namedJdbcTemplate.query(sql, params, writtenWalletRowMapper);
+        if (written.isEmpty()) {
+            return null;
+        }
+
+        cacheWritten(written.getFirst());
+        return written.getFirst().wallet();
+    }
+
+    public void addFunds(BigDecimal deposit, Long walletId) {
 
         String sql = """
                 UPDATE wallet
-                SET balance = COALESCE(balance, 0) + ?
+                SET balance = COALESCE(balance, 0) + ?, version = version + 1
                 WHERE id = ?
                 """;
 
-        jdbcTemplate.update(sql, deposit, walletId);
-
+        WrittenWallet written = updateReturningWallet(sql, deposit, walletId);
+        if (written != null) {
+            record(List.of(WalletEvent.of(walletId, WalletEvent.Kind.DEPOSIT, deposit)));
+            cacheWritten(written);
+        }
     }
 
-    @Caching(evict = {
-        @CacheEvict(value = WALLET_CACHE, key = "#walletId"),
-        @CacheEvict(value = WALLET_BY_USER_CACHE, key = "#userId")
-    })
-    public boolean deductFunds(BigDecimal amount, Long walletId, Long userId) {
+    public boolean deductFunds(BigDecimal amount, Long walletId) {
 
         String sql = """
                 UPDATE wallet
-                SET balance = balance - ?
+                SET balance = balance - ?, version = version + 1
                 WHERE id = ? AND balance >= ?
                 """;
 
-        int rowsEffected = jdbcTemplate.update(sql, amount, walletId, amount);
-        return rowsEffected > 0;
+        WrittenWallet written = updateReturningWallet(sql, amount, walletId, amount);
+        if (written == null) {
+            return false;
+        }
 
+        record(List.of(WalletEvent.of(walletId, WalletEvent.Kind.WITHDRAWAL, amount)));
+        cacheWritten(written);
+        return true;
     }
 
-    @Caching(evict = {
-        @CacheEvict(value = WALLET_CACHE, key = "#fromWalletId"),
-        @CacheEvict(value = WALLET_CACHE, key = "#toWalletId")
-    })
     public boolean executeTransfer(Long fromWalletId, Long toWalletId, BigDecimal amount) {
         // Lock in consistent order to prevent deadlocks
         Long firstId = Math.min(fromWalletId, toWalletId);
         Long secondId = Math.max(fromWalletId, toWalletId);
 
+        // Each leg hands back its row, so both wallets' cached copies are replaced with what was written
         String sql = """
                 WITH locked AS (
                     SELECT id FROM wallet WHERE id IN (?, ?) ORDER BY id FOR UPDATE
                 ),
                 deduct AS (
-                    UPDATE wallet SET balance = balance - ?
+                    UPDATE wallet SET balance = balance - ?, version = version + 1
                     WHERE id = ? AND balance >= ?
-                    RETURNING id
+                    RETURNING id, user_id, currency, created_at, balance, version, stripe_count
                 ),
                 credit AS (
-                    UPDATE wallet SET balance = balance + ?
+                    UPDATE wallet SET balance = balance + ?, version = version + 1
                     WHERE id = ? AND EXISTS (SELECT 1 FROM deduct)
-                    RETURNING id
+                    RETURNING id, user_id, currency, created_at, balance, version, stripe_count
                 )
-                SELECT EXISTS (SELECT 1 FROM credit) as success
+                SELECT 'DEBIT' AS leg, id, user_id, currency, created_at, balance, version, stripe_count FROM deduct
+                UNION ALL
+                SELECT 'CREDIT' AS leg, id, user_id, currency, created_at, balance, version, stripe_count FROM credit
                 """;
 
-        Boolean success = jdbcTemplate.queryForObject(sql, Boolean.class,
+        record Leg(boolean credit, WrittenWallet wallet) {
+        }
+
+        List<Leg> legs = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Leg("CREDIT".equals(rs.getString("leg")), writtenWalletRowMapper.mapRow(rs, rowNum)),
                 firstId, secondId,
                 amount, fromWalletId, amount,
                 amount, toWalletId);
 
-        return Boolean.TRUE.equals(success);
+        // A debit without a credit is rolled back by the caller, so it must not reach the cache either
+        if (legs.stream().noneMatch(Leg::credit)) {
+            return false;
+        }
+
+        legs.forEach(leg -> cacheWritten(leg.wallet()));
+        // No transfer row is written on this path, so the legs carry no transfer id
+        record(TransferEvent.legsOf(null, fromWalletId, toWalletId, amount));
+        return true;
+    }
+
+    // Ownership, currency and balance checks, the debit/credit, the transfer row, its events and its ledger entries in one round trip.
+    // The status column tells the caller which check failed when nothing was written.
+    // A striped recipient is credited on one of its stripes, so its wallet row is never locked here.
+    // Rows the statement moved come back with it and replace the cached copies; a stripe credit evicts the recipient instead.
+    public TransferResult executeAuthorizedTransfer(Transfer transfer, String callerUsername) {
+        String sql = """
+                WITH locked AS (
+                    SELECT id, user_id, currency, balance, stripe_count FROM wallet
+                    WHERE id IN (:fromWallet, :toWallet) AND (id = :fromWallet OR stripe_count = 0)
+                    ORDER BY id FOR UPDATE
+                ),
+                target AS (
+                    SELECT id, user_id, currency, stripe_count FROM wallet WHERE id = :toWallet
+                ),
+                source_stripes AS (
+                    SELECT COALESCE(SUM(balance), 0) AS balance
+                    FROM (SELECT balance FROM wallet_stripe WHERE wallet_id = :fromWallet FOR SHARE) stripes
+                ),
+                checked AS (
+                    SELECT CASE
+                        WHEN src.id IS NULL OR dst.id IS NULL THEN 'WALLET_NOT_FOUND'
+                        WHEN owner.username IS DISTINCT FROM :caller THEN 'NOT_OWNER'
+                        WHEN src.currency <> :currency THEN 'SOURCE_CURRENCY_MISMATCH'
+                        WHEN dst.currency <> :currency THEN 'RECIPIENT_CURRENCY_MISMATCH'
+                        WHEN src.balance + (SELECT balance FROM source_stripes) < :amount THEN 'INSUFFICIENT_FUNDS'
+                        ELSE 'COMPLETED'
+                    END AS status
+                    FROM (SELECT 1) anchor
+                    LEFT JOIN locked src ON src.id = :fromWallet
+                    LEFT JOIN target dst ON dst.id = :toWallet
+                    LEFT JOIN users owner ON owner.id = src.user_id
+                ),
+                moved AS (
+                    UPDATE wallet
+                    SET balance = balance
+                        - CASE WHEN id = :fromWallet THEN :amount ELSE 0 END
+                        + CASE WHEN id = :toWallet AND stripe_count = 0 THEN :amount ELSE 0 END,
+                        version = version + 1
+                    WHERE id IN (SELECT id FROM locked) AND (SELECT status FROM checked) = 'COMPLETED'
+                    RETURNING id, user_id, currency, created_at, balance, version, stripe_count
+                ),
+                striped_credit AS (
+                    UPDATE wallet_stripe SET balance = balance + :amount
+                    WHERE wallet_id = :toWallet
+                      AND stripe = :stripeSeed % GREATEST((SELECT stripe_count FROM target), 1)
+                      AND EXISTS (SELECT 1 FROM moved WHERE id = :fromWallet)
+                      AND NOT EXISTS (SELECT 1 FROM moved WHERE id = :toWallet AND stripe_count = 0)
+                    RETURNING wallet_id
+                ),
+                recorded AS (
+                    INSERT INTO transfer (from_wallet, to_wallet, currency, transfer_amount, transfer_date)
+                    SELECT :fromWallet, :toWallet, :currency, :amount, :transferDate
+                    WHERE EXISTS (SELECT 1 FROM moved WHERE id = :fromWallet)
+                    RETURNING id
+                ),
+                events AS (
+                    INSERT INTO wallet_event (wallet_id, event_type, amount, counterparty_wallet, transfer_id)
+                    SELECT :fromWallet, 'TRANSFER_OUT', :amount, :toWallet, id FROM recorded
+                    UNION ALL
+                    SELECT :toWallet, 'TRANSFER_IN', :amount, :fromWallet, id FROM recorded
+                ),
+                entries AS (
+                    INSERT INTO ledger_entry (wallet_id, entry_type, amount, counterparty_wallet, transfer_id)
+                    SELECT :fromWallet, 'TRANSFER', -:amount, :toWallet, id FROM recorded
+                    UNION ALL
+                    SELECT :toWallet, 'TRANSFER', :amount, :fromWallet, id FROM recorded
+                )
+                SELECT outcome.status, outcome.transfer_id, outcome.credited, outcome.recipient_user_id,
+                       m.id, m.user_id, m.currency, m.created_at, m.balance, m.version, m.stripe_count
+                FROM (
+                    SELECT (SELECT status FROM checked) AS status,
+                           (SELECT id FROM recorded) AS transfer_id,
+                           EXISTS (SELECT 1 FROM moved WHERE id = :toWallet AND stripe_count = 0)
+                               OR EXISTS (SELECT 1 FROM striped_credit) AS credited,
+                           (SELECT user_id FROM target) AS recipient_user_id
+                ) outcome
+                LEFT JOIN moved m ON TRUE
+                """;
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromWallet", transfer.getFromWallet())
+                .addValue("toWallet", transfer.getToWallet())
+                .addValue("caller", callerUsername)
+                .addValue("currency", transfer.getCurrency().name())
+                .addValue("amount", transfer.getTransferAmount())
+                .addValue("stripeSeed", ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE))
+                .addValue("transferDate", Timestamp.valueOf(transfer.getTransferDate()));
+
+        // One row per moved wallet, or a single row with no wallet columns when nothing moved
+        record Row(TransferOutcome outcome, Long transferId, boolean credited, Long recipientUserId, WrittenWallet moved) {
+        }
+
+        List<Row> rows = namedJdbcTemplate.query(sql, params, (rs, rowNum) -> {
+            long transferId = rs.getLong("transfer_id");
+            Long recordedId = rs.wasNull() ? null : transferId;
+            long recipientUserId = rs.getLong("recipient_user_id");
+            Long recipient = rs.wasNull() ? null : recipientUserId;
+            rs.getLong("id");
+            WrittenWallet moved = rs.wasNull() ? null : writtenWalletRowMapper.mapRow(rs, rowNum);
+
+            return new Row(TransferOutcome.valueOf(rs.getString("status")), recordedId, rs.getBoolean("credited"),
+                    recipient, moved);
+        });
+
+        Row first = rows.getFirst();
+        if (first.outcome() != TransferOutcome.COMPLETED) {
+            return new TransferResult(first.outcome(), first.transferId());
+        }
+
+        // The recipient was promoted or demoted between our snapshot and our write. The source was already debited,
+        // and the caller rolls that back, possibly only to a savepoint, so none of it may reach the cache
+        if (!first.credited()) {
+            return new TransferResult(TransferOutcome.STRIPING_CHANGED, first.transferId());
+        }
+
+        List<WrittenWallet> moved = rows.stream().map(Row::moved).filter(Objects::nonNull).toList();
+        moved.forEach(this::cacheWritten);
+        if (moved.stream().noneMatch(written -> written.wallet().getId().equals(transfer.getToWallet()))) {
+            walletCache.evict(transfer.getToWallet(), first.recipientUserId());
+        }
+        return new TransferResult(TransferOutcome.COMPLETED, first.transferId());
+    }
+
+    // Net balance change per wallet in one UPDATE. Caller holds the row locks and has checked balances,
+    // and writes the events and ledger entries itself, since only it knows which transfers and deposits make up a delta.
+    // The rows it changed replace the cached copies once the caller's transaction commits
+    public int applyBalanceDeltas(Map<Long, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder cases = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (Map.Entry<Long, BigDecimal> delta : deltas.entrySet()) {
+            cases.append(" WHEN ? THEN ?");
+            args.add(delta.getKey());
+            args.add(delta.getValue());
+        }
+        args.addAll(deltas.keySet());
+
+        String sql = "UPDATE wallet SET balance = balance + CASE id" + cases + " END, version = version + 1"
+                + " WHERE id IN (" + String.join(", ", Collections.nCopies(deltas.size(), "?")) + ")";
+
+        List<WrittenWallet> written = updateReturningWallets(sql, args.toArray());
+        written.forEach(this::cacheWritten);
+        return written.size();
+    }
+
+    // Runs an UPDATE of at most one wallet row and returns the row as it left it, or null when nothing matched
+    private WrittenWallet updateReturningWallet(String sql, Object... args) {
+        List<WrittenWallet> written = updateReturningWallets(sql, args);
+        return written.isEmpty() ? null : written.getFirst();
+    }
+
+    // Runs an UPDATE of wallet rows and returns every changed row as it left it
+    private List<WrittenWallet> updateReturningWallets(String sql, Object... args) {
+        return jdbcTemplate.execute(
+                (Connection connection) -> connection.prepareStatement(sql, WRITTEN_COLUMNS),
+                (PreparedStatement ps) -> {
+                    new ArgumentPreparedStatementSetter(args).setValues(ps);
+                    List<WrittenWallet> written = new ArrayList<>();
+                    if (ps.executeUpdate() == 0) {
+                        return written;
+                    }
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            written.add(writtenWalletRowMapper.mapRow(keys, written.size()));
+                        }
+                    }
+                    return written;
+                });
+    }
+
+    // Striped wallets hold part of their balance outside the row, so only their eviction is safe
+    private void cacheWritten(WrittenWallet written) {
+        Wallet wallet = written.wallet();
+        if (written.striped()) {
+            walletCache.evict(wallet.getId(), wallet.getUserId());
+        } else {
+            walletCache.put(wallet);
+        }
+    }
+
+    // The outbox event and the ledger entries for changes made by this repository, in the caller's transaction
+    private void record(List<? extends WalletChange> changes) {
+        walletEventRepository.appendAll(changes);
+        ledgerEntryRepository.appendAll(changes);
     }
 
 }
@@ -0,0 +1,55 @@
+package org.example.digitalwallet.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+@Repository
+public class WalletStripeRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletStripeRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // The wallet row keeps its balance; new credits start landing on the empty stripes
+    public boolean promote(Long walletId, int stripes) {
+        String sql = "UPDATE wallet SET stripe_count = ?, version = version + 1 WHERE id = ? AND stripe_count = 0";
+
+        if (jdbcTemplate.update(sql, stripes, walletId) == 0) {
+            return false;
+        }
+
+        List<Object[]> rows = IntStream.range(0, stripes)
+                .mapToObj(stripe -> new Object[]{walletId, stripe})
+                .toList();
+
+        jdbcTemplate.batchUpdate("INSERT INTO wallet_stripe (wallet_id, stripe, balance) VALUES (?, ?, 0)", rows);
+        return true;
+    }
+
+    // Folds every stripe back into the wallet row. Locks the wallet row first, then its stripes,
+    // the same order a debit takes them in
+    public boolean demote(Long walletId) {
+        List<Integer> stripeCount = jdbcTemplate.queryForList(
+                "SELECT stripe_count FROM wallet WHERE id = ? FOR UPDATE", Integer.class, walletId);
+
+        if (stripeCount.isEmpty() || stripeCount.getFirst() == 0) {
+            return false;
+        }
+
+        BigDecimal swept = jdbcTemplate.queryForList(
+                        "SELECT balance FROM wallet_stripe WHERE wallet_id = ? ORDER BY stripe FOR UPDATE",
+                        BigDecimal.class, walletId)
+                .stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        jdbcTemplate.update("DELETE FROM wallet_stripe WHERE wallet_id = ?", walletId);
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + ?, stripe_count = 0, version = version + 1 WHERE id = ?", swept, walletId);
+        return true;
+    }
+}
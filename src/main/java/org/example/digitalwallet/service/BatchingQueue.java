@@ -0,0 +1,94 @@
+package org.example.digitalwallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// A queue drained by one worker thread in batches. The worker waits for the first item, then keeps collecting
+// until the window closes or the batch is full, and hands the batch to the consumer.
+// Behind TransferGroupCommitter and DepositCombiner; the consumer settles each item itself
+@Slf4j
+final class BatchingQueue<T> {
+
+    private final String threadName;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Consumer<List<T>> consumer;
+
+    private final BlockingQueue<T> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    BatchingQueue(String threadName, long windowMillis, int maxBatchSize, Consumer<List<T>> consumer) {
+        this.threadName = threadName;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.consumer = consumer;
+    }
+
+    void start() {
+        running = true;
+        worker = Thread.ofPlatform().name(threadName).daemon().start(this::run);
+    }
+
+    // Returns the items the worker never picked up, for the caller to fail
+    List<T> stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        List<T> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        return leftover;
+    }
+
+    void add(T item) {
+        queue.add(item);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<T> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    consumer.accept(batch);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                // The worker is the only one draining the queue, so it carries on with the next batch
+                log.error("Batch on {} failed", threadName, ex);
+            }
+        }
+    }
+
+    private List<T> nextBatch() throws InterruptedException {
+        List<T> batch = new ArrayList<>(maxBatchSize);
+
+        T first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            T next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+}
@@ -2,10 +2,10 @@ package org.example.digitalwallet.service;
 import lombok.RequiredArgsConstructor;
 import org.example.digitalwallet.repository.UserRepository;
 import org.example.digitalwallet.model.User;
-import org.jetbrains.annotations.NotNull;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -15,13 +15,12 @@ import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailService implements UserDetailsService {
+public class CustomUserDetailService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
-    @NotNull
     @Override
-    public UserDetails loadUserByUsername(@NotNull String username) throws UsernameNotFoundException {
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
         User user = userRepository.getUserByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User isn't found in the database"));
@@ -33,4 +32,14 @@ public class CustomUserDetailService implements UserDetailsService {
                 .build();
 
     }
-}
\ No newline at end of file
+
+    // Called by the authentication provider after a successful login whose stored hash uses a lower bcrypt cost
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.digitalwallet.exception.WalletNotFoundException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.Wallet;
+import org.example.digitalwallet.model.WalletEvent;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.example.digitalwallet.repository.WalletEventRepository;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Adds up deposits that arrive within a short window and applies each wallet's sum with one UPDATE,
+// so a burst of top-ups into the same wallets costs one row write and one cache write per wallet instead of one per deposit.
+// Each deposit still gets its own event, ledger entries and email, all written in the batch's transaction,
+// and each caller hears back with the balance right after its deposit.
+@Service
+public class DepositCombiner {
+
+    private final WalletRepository walletRepository;
+    private final WalletEventRepository walletEventRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final BatchingQueue<PendingDeposit> queue;
+    private final DistributionSummary depositsPerWallet;
+
+    public DepositCombiner(WalletRepository walletRepository,
+                           WalletEventRepository walletEventRepository,
+                           LedgerEntryRepository ledgerEntryRepository,
+                           EmailService emailService,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${wallet.deposit.combine.enabled:false}") boolean enabled,
+                           @Value("${wallet.deposit.combine.window-ms:5}") long windowMillis,
+                           @Value("${wallet.deposit.combine.max-batch-size:256}") int maxBatchSize) {
+        this.walletRepository = walletRepository;
+        this.walletEventRepository = walletEventRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.queue = new BatchingQueue<>("deposit-combiner", windowMillis, maxBatchSize, this::commit);
+
+        this.depositsPerWallet = DistributionSummary.builder("wallet.deposit.combine.deposits_per_wallet")
+                .description("Deposits folded into each wallet's single balance update")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        for (PendingDeposit pending : queue.stop()) {
+            pending.result().completeExceptionally(new IllegalStateException("Deposit service is shutting down"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Blocks until the batch containing this deposit commits. Returns the wallet's balance right after this deposit.
+    // Call it outside a transaction: the batch commits in its own, and the caller would hold a connection while it waits
+    public BigDecimal deposit(Long walletId, AuthenticatedUser depositor, BigDecimal amount) {
+        PendingDeposit pending = new PendingDeposit(walletId, depositor, amount, new CompletableFuture<>());
+        queue.add(pending);
+
+        try {
+            return pending.result().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    void commit(List<PendingDeposit> batch) {
+        Map<PendingDeposit, BigDecimal> balances;
+
+        try {
+            Map<Long, BigDecimal> sums = batch.stream().collect(
+                    Collectors.toMap(PendingDeposit::walletId, PendingDeposit::amount, BigDecimal::add, TreeMap::new));
+
+            balances = transactionTemplate.execute(status -> apply(batch, sums));
+        } catch (RuntimeException ex) {
+            batch.forEach(pending -> pending.result().completeExceptionally(ex));
+            return;
+        }
+
+        balances.keySet().stream()
+                .collect(Collectors.groupingBy(PendingDeposit::walletId, Collectors.counting()))
+                .values()
+                .forEach(depositsPerWallet::record);
+
+        for (PendingDeposit pending : batch) {
+            BigDecimal balance = balances.get(pending);
+            if (balance == null) {
+                pending.result().completeExceptionally(new WalletNotFoundException("Wallet wasn't found!"));
+            } else {
+                pending.result().complete(balance);
+            }
+        }
+    }
+
+    // Returns each applied deposit's resulting balance; deposits into wallets that no longer exist are left out
+    private Map<PendingDeposit, BigDecimal> apply(List<PendingDeposit> batch, Map<Long, BigDecimal> sums) {
+        // Locked in id order first, like transfers lock theirs, so the combined UPDATE can't deadlock with them
+        Map<Long, Wallet> found = walletRepository.findAllByIdsForUpdate(sums.keySet()).stream()
+                .collect(Collectors.toMap(Wallet::getId, Function.identity()));
+        sums.keySet().retainAll(found.keySet());
+
+        walletRepository.applyBalanceDeltas(sums);
+
+        List<PendingDeposit> applied = batch.stream().filter(pending -> found.containsKey(pending.walletId())).toList();
+        List<WalletEvent> events = applied.stream()
+                .map(pending -> WalletEvent.of(pending.walletId(), WalletEvent.Kind.DEPOSIT, pending.amount()))
+                .toList();
+        walletEventRepository.appendAll(events);
+        ledgerEntryRepository.appendAll(events);
+
+        // Walk back from each wallet's new total, so every caller sees the balance as of its own deposit
+        Map<Long, BigDecimal> running = new HashMap<>(walletRepository.findBalances(sums.keySet()));
+        Map<PendingDeposit, BigDecimal> balances = new IdentityHashMap<>();
+        for (PendingDeposit pending : applied.reversed()) {
+            BigDecimal balance = running.get(pending.walletId());
+            balances.put(pending, balance);
+            running.put(pending.walletId(), balance.subtract(pending.amount()));
+        }
+
+        for (PendingDeposit pending : applied) {
+            AuthenticatedUser depositor = pending.depositor();
+            if (depositor.email() != null) {
+                emailService.sendEmailOnDeposit(depositor.email(), depositor.username(),
+                        found.get(pending.walletId()).getCurrency().name(), pending.amount().toString(),
+                        balances.get(pending).toString());
+            }
+        }
+
+        return balances;
+    }
+
+    record PendingDeposit(Long walletId, AuthenticatedUser depositor, BigDecimal amount,
+                          CompletableFuture<BigDecimal> result) {
+    }
+}
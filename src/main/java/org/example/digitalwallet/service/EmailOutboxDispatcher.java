@@ -0,0 +1,287 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.digitalwallet.model.OutboxEmail;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.EmailOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+
+// Drains email_outbox in batches. Claimed rows are leased rather than held under a lock while SMTP runs,
+// so several nodes can poll the table and a node that dies mid-send only delays its rows until the lease runs out.
+// A whole batch goes through one mail sender call, which sends it over a single SMTP connection.
+@Service
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender emailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dead;
+
+    private ScheduledFuture<?> polling;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 JavaMailSender emailSender,
+                                 PlatformTransactionManager transactionManager,
+                                 TaskScheduler taskScheduler,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${wallet.email.poll-interval-ms:2000}") long pollIntervalMillis,
+                                 @Value("${wallet.email.batch-size:100}") int batchSize,
+                                 @Value("${wallet.email.max-attempts:8}") int maxAttempts,
+                                 @Value("${wallet.email.lease-seconds:120}") long leaseSeconds,
+                                 @Value("${wallet.email.initial-backoff-seconds:10}") long initialBackoffSeconds,
+                                 @Value("${wallet.email.max-backoff-seconds:3600}") long maxBackoffSeconds) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailSender = emailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.pollInterval = Duration.ofMillis(pollIntervalMillis);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.initialBackoff = Duration.ofSeconds(initialBackoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+
+        this.sent = outcomes(meterRegistry, "sent");
+        this.retried = outcomes(meterRegistry, "retried");
+        this.dead = outcomes(meterRegistry, "dead");
+    }
+
+    @PostConstruct
+    void start() {
+        polling = taskScheduler.scheduleWithFixedDelay(this::poll, Instant.now().plus(pollInterval), pollInterval);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (polling != null) {
+            polling.cancel(false);
+        }
+    }
+
+    // A failed run is logged by the scheduler. Unclaimed rows stay due and leased rows come back after their lease,
+    // so the next run picks both up
+    void poll() {
+        // A full batch means more is probably waiting
+        while (dispatch() == batchSize) {
+            // keep draining
+        }
+    }
+
+    // Returns the number of due rows that were claimed
+    int dispatch() {
+        Instant now = Instant.now();
+        Claim claim = transactionTemplate.execute(status -> claim(now));
+        if (claim == null || claim.rows().isEmpty()) {
+            return 0;
+        }
+
+        List<Message> messages = compose(claim.rows());
+        Set<Object> failed = send(messages);
+
+        List<Long> delivered = new ArrayList<>();
+        List<Message> undelivered = new ArrayList<>();
+        for (Message message : messages) {
+            if (failed.contains(message.mail())) {
+                undelivered.add(message);
+            } else {
+                message.rows().forEach(row -> delivered.add(row.id()));
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            emailOutboxRepository.delete(delivered);
+            sent.increment(messages.size() - undelivered.size());
+        }
+        for (Message message : undelivered) {
+            reschedule(message, now);
+        }
+
+        return claim.due();
+    }
+
+    private Claim claim(Instant now) {
+        List<OutboxEmail> due = emailOutboxRepository.lockDue(now, batchSize);
+        if (due.isEmpty()) {
+            return new Claim(due, 0);
+        }
+
+        // Later deposits to the same people ride along instead of each waiting out its own window
+        Set<String> depositRecipients = due.stream()
+                .filter(row -> row.kind() == OutboxEmail.Kind.DEPOSIT)
+                .map(OutboxEmail::recipient)
+                .collect(Collectors.toSet());
+
+        List<OutboxEmail> rows = new ArrayList<>(due);
+        rows.addAll(emailOutboxRepository.lockPendingDeposits(depositRecipients, now));
+
+        emailOutboxRepository.lease(rows.stream().map(OutboxEmail::id).toList(), now.plus(lease));
+        return new Claim(rows, due.size());
+    }
+
+    // ========== Composing ==========
+
+    // One email per wallet creation, and one digest per recipient and currency for all of their deposits
+    static List<Message> compose(List<OutboxEmail> rows) {
+        List<Message> messages = new ArrayList<>();
+        Map<DigestKey, List<OutboxEmail>> deposits = new LinkedHashMap<>();
+
+        for (OutboxEmail row : rows) {
+            if (row.kind() == OutboxEmail.Kind.WALLET_CREATED) {
+                messages.add(new Message(walletCreated(row), List.of(row)));
+            } else {
+                deposits.computeIfAbsent(new DigestKey(row.recipient(), row.currency()), key -> new ArrayList<>()).add(row);
+            }
+        }
+
+        for (List<OutboxEmail> group : deposits.values()) {
+            group.sort(Comparator.comparing(OutboxEmail::id));
+            messages.add(new Message(group.size() == 1 ? deposit(group.getFirst()) : depositDigest(group), group));
+        }
+        return messages;
+    }
+
+    private static SimpleMailMessage walletCreated(OutboxEmail row) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(row.recipient());
+        message.setSubject("Digital Wallet Created");
+        message.setText("Hello " + row.username() + ",\n\n" +
+                "Your new " + row.currency() + " wallet has been successfully created.\n" +
+                "Initial Balance: " + row.balance());
+        return message;
+    }
+
+    private static SimpleMailMessage deposit(OutboxEmail row) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(row.recipient());
+        message.setSubject("Successful deposit");
+        message.setText("Hello " + row.username() + ",\n\n" +
+                "Thanks for trusting us and depositing " + row.amount() + " of " + row.currency() + "\n" +
+                "New balance is " + row.balance());
+        return message;
+    }
+
+    // Rows are in id order, so the last one carries the newest balance
+    private static SimpleMailMessage depositDigest(List<OutboxEmail> rows) {
+        OutboxEmail latest = rows.getLast();
+        BigDecimal total = rows.stream().map(OutboxEmail::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        StringBuilder text = new StringBuilder()
+                .append("Hello ").append(latest.username()).append(",\n\n")
+                .append("Thanks for trusting us. We received ").append(rows.size())
+                .append(" deposits totalling ").append(total).append(" of ").append(latest.currency()).append(":\n");
+        for (OutboxEmail row : rows) {
+            text.append("  ").append(row.amount()).append('\n');
+        }
+        text.append("New balance is ").append(latest.balance());
+
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(latest.recipient());
+        message.setSubject("Successful deposits");
+        message.setText(text.toString());
+        return message;
+    }
+
+    // ========== Sending ==========
+
+    // Returns the mails that didn't go out
+    private Set<Object> send(List<Message> messages) {
+        try {
+            emailSender.send(messages.stream().map(Message::mail).toArray(SimpleMailMessage[]::new));
+            return Set.of();
+        } catch (MailSendException ex) {
+            // Per-message failures are reported back; without them the batch failed as a whole
+            if (!ex.getFailedMessages().isEmpty()) {
+                return identitySetOf(ex.getFailedMessages().keySet());
+            }
+            return allOf(messages);
+        } catch (MailException ex) {
+            return allOf(messages);
+        }
+    }
+
+    // A digest is retried as a whole, paced by its most-tried row
+    private void reschedule(Message message, Instant now) {
+        List<Long> ids = message.rows().stream().map(OutboxEmail::id).toList();
+        // attempts was read before the lease counted this one
+        int attempts = message.rows().stream().mapToInt(OutboxEmail::attempts).max().orElse(0) + 1;
+
+        if (attempts >= maxAttempts) {
+            emailOutboxRepository.markDead(ids);
+            dead.increment(ids.size());
+        } else {
+            emailOutboxRepository.retryAt(ids, now.plus(backoff(attempts)));
+            retried.increment(ids.size());
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    // ========== Helpers ==========
+
+    // SimpleMailMessage compares by content, and two identical mails can still fail independently
+    private static Set<Object> allOf(List<Message> messages) {
+        return identitySetOf(messages.stream().map(Message::mail).toList());
+    }
+
+    private static Set<Object> identitySetOf(Collection<?> mails) {
+        Set<Object> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(mails);
+        return set;
+    }
+
+    private Counter outcomes(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("wallet.email.outbox")
+                .description("Emails sent, and outbox rows put back for retry or given up on")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    record Message(SimpleMailMessage mail, List<OutboxEmail> rows) {
+    }
+
+    private record Claim(List<OutboxEmail> rows, int due) {
+    }
+
+    private record DigestKey(String recipient, WalletCurrency currency) {
+    }
+}
@@ -1,41 +1,37 @@
 package org.example.digitalwallet.service;
 
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.scheduling.annotation.Async;
+import org.example.digitalwallet.model.OutboxEmail;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.EmailOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+// Queues notifications in email_outbox inside the caller's transaction, so an email exists exactly when its change committed.
+// EmailOutboxDispatcher does the sending.
 @Service
 public class EmailService {
 
-    private final JavaMailSender emailSender;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final Duration depositCoalesceWindow;
 
-    public EmailService(JavaMailSender emailSender) {
-        this.emailSender = emailSender;
+    public EmailService(EmailOutboxRepository emailOutboxRepository,
+                        @Value("${wallet.email.deposit-coalesce-seconds:30}") long depositCoalesceSeconds) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.depositCoalesceWindow = Duration.ofSeconds(depositCoalesceSeconds);
     }
 
-    @Async
     public void sendWalletCreationEmail(String to , String username, String currency , String balance) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("Digital Wallet Created");
-        message.setText("Hello " + username + ",\n\n" +
-                "Your new " + currency + " wallet has been successfully created.\n" +
-                "Initial Balance: " + balance);
-
-        emailSender.send(message);
+        emailOutboxRepository.enqueue(OutboxEmail.Kind.WALLET_CREATED, to, username, WalletCurrency.valueOf(currency),
+                null, new BigDecimal(balance), Instant.now());
     }
 
-    @Async
+    // Held back for the coalescing window, so further deposits in the meantime go out in the same digest
     public void sendEmailOnDeposit(String to , String username, String currency , String deposit , String balance) {
-        SimpleMailMessage message = new SimpleMailMessage();
-
-        message.setTo(to);
-        message.setSubject("Successful deposit");
-        message.setText("Hello " + username + ",\n\n" +
-                "Thanks for trusting us and depositing " + deposit + " of " + currency + "\n" +
-                "New balance is " + balance);
-
-        emailSender.send(message);
+        emailOutboxRepository.enqueue(OutboxEmail.Kind.DEPOSIT, to, username, WalletCurrency.valueOf(currency),
+                new BigDecimal(deposit), new BigDecimal(balance), Instant.now().plus(depositCoalesceWindow));
     }
 }
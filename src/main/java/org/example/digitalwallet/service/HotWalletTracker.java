@@ -0,0 +1,63 @@
+package org.example.digitalwallet.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Counts lock conflicts and lock waits per wallet in fixed windows. A wallet that reaches the threshold within one
+// window is hot until the hold time has passed without it reaching the threshold again.
+final class HotWalletTracker {
+
+    private static final int MAX_TRACKED = 10_000;
+
+    private final int threshold;
+    private final long windowNanos;
+    private final long holdNanos;
+    private final LongSupplier nanoTime;
+    private final Map<Long, Heat> heat = new ConcurrentHashMap<>();
+
+    HotWalletTracker(int threshold, long windowMillis, long holdMillis) {
+        this(threshold, windowMillis, holdMillis, System::nanoTime);
+    }
+
+    HotWalletTracker(int threshold, long windowMillis, long holdMillis, LongSupplier nanoTime) {
+        this.threshold = threshold;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.holdNanos = TimeUnit.MILLISECONDS.toNanos(holdMillis);
+        this.nanoTime = nanoTime;
+    }
+
+    void record(long walletId) {
+        long now = nanoTime.getAsLong();
+
+        heat.compute(walletId, (id, current) -> {
+            Heat next = current == null || now - current.windowStart() >= windowNanos
+                    ? new Heat(now, 1, current != null ? current.hotUntil() : now)
+                    : new Heat(current.windowStart(), current.count() + 1, current.hotUntil());
+            return next.count() >= threshold ? new Heat(next.windowStart(), next.count(), now + holdNanos) : next;
+        });
+
+        // Wallets that conflicted once and went quiet would otherwise stay in the map forever
+        if (heat.size() > MAX_TRACKED) {
+            prune(now);
+        }
+    }
+
+    boolean isHot(long walletId) {
+        Heat current = heat.get(walletId);
+        return current != null && current.hotUntil() - nanoTime.getAsLong() > 0;
+    }
+
+    int hotCount() {
+        long now = nanoTime.getAsLong();
+        return (int) heat.values().stream().filter(current -> current.hotUntil() - now > 0).count();
+    }
+
+    private void prune(long now) {
+        heat.values().removeIf(current -> current.hotUntil() - now <= 0 && now - current.windowStart() >= windowNanos);
+    }
+
+    private record Heat(long windowStart, int count, long hotUntil) {
+    }
+}
@@ -0,0 +1,172 @@
+package org.example.digitalwallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.digitalwallet.exception.IdempotencyConflictException;
+import org.example.digitalwallet.exception.UserNotAuthenticatedException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+
+// Remembers the first response for each Idempotency-Key so client retries are answered from Redis
+// instead of running the operation again, and without costing the caller a rate limit token.
+// The call that claims a key holds it with a pending marker carrying a token of its own. The marker is renewed
+// while the action runs, so it only lapses when its node stops, and the claimer only ever finishes or releases
+// a marker that is still its own
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String PENDING = "P:";
+    private static final String DONE = "D:";
+
+    // Returns 1 when the marker was still ours and got its time to live back
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    // Stores the response over our own marker, or over nothing if the marker lapsed; never over another claim
+    private static final RedisScript<Long> COMPLETE = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current == ARGV[1] or not current then
+                redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JsonMapper jsonMapper;
+    private final TaskScheduler taskScheduler;
+    private final RateLimitService rateLimitService;
+
+    private final Duration ttl;
+    // Renewed every third of its length while the action runs, so it only has to outlast a node that stopped
+    private final Duration pendingTtl;
+
+    public IdempotencyService(StringRedisTemplate redisTemplate,
+                              JsonMapper jsonMapper,
+                              TaskScheduler taskScheduler,
+                              RateLimitService rateLimitService,
+                              @Value("${wallet.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                              @Value("${wallet.idempotency.pending-ttl-seconds:120}") long pendingTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.jsonMapper = jsonMapper;
+        this.taskScheduler = taskScheduler;
+        this.rateLimitService = rateLimitService;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.pendingTtl = Duration.ofSeconds(pendingTtlSeconds);
+    }
+
+    // Runs the action once per (user, operation, key). A retry gets the stored result and its rate limit token back.
+    // A retry that arrives while the first call is still running is turned away with a conflict at once rather than
+    // holding a request thread until the original finishes. Failed calls are forgotten so they can be retried.
+    public <T> T execute(String operation, String idempotencyKey, Object request,
+                         Class<T> responseType, Supplier<T> action) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null) {
+            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
+        }
+
+        String key = KEY_PREFIX + operation + ":" + authentication.getName() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+        String marker = PENDING + fingerprint + ":" + UUID.randomUUID();
+
+        while (true) {
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(key, marker, pendingTtl);
+
+            if (Boolean.TRUE.equals(claimed)) {
+                return runAndStore(key, fingerprint, marker, action);
+            }
+
+            String stored = redisTemplate.opsForValue().get(key);
+
+            // The original failed or its marker expired between our two calls, so try to claim it again
+            if (stored == null) {
+                continue;
+            }
+
+            if (!stored.startsWith(PENDING + fingerprint + ":") && !stored.startsWith(DONE + fingerprint + ":")) {
+                throw new IdempotencyConflictException("Idempotency-Key was already used with a different request");
+            }
+
+            if (stored.startsWith(PENDING)) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+            }
+
+            // RateLimitFilter charged this request before it got here; a replay runs nothing, so it gets that back
+            if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+                rateLimitService.refundUser(user.id(), user.membershipStatus());
+            }
+
+            String body = stored.substring(DONE.length() + fingerprint.length() + 1);
+            return jsonMapper.readValue(body, responseType);
+        }
+    }
+
+    private <T> T runAndStore(String key, String fingerprint, String marker, Supplier<T> action) {
+        Duration renewEvery = pendingTtl.dividedBy(3);
+        ScheduledFuture<?> renewal = taskScheduler.scheduleAtFixedRate(
+                () -> redisTemplate.execute(RENEW, List.of(key), marker, String.valueOf(pendingTtl.toMillis())),
+                Instant.now().plus(renewEvery), renewEvery);
+
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException ex) {
+            renewal.cancel(false);
+            redisTemplate.execute(RELEASE, List.of(key), marker);
+            throw ex;
+        }
+        renewal.cancel(false);
+
+        String done = DONE + fingerprint + ":" + jsonMapper.writeValueAsString(response);
+        Long stored = redisTemplate.execute(COMPLETE, List.of(key), marker, done, String.valueOf(ttl.toMillis()));
+        if (stored == null || stored == 0) {
+            // Our marker lapsed and another call claimed the key; its outcome is the one retries will see
+            log.warn("Idempotency key {} was claimed by another request before this one finished", key);
+        }
+
+        return response;
+    }
+
+    // Same key with a different body is a client bug, not a retry
+    static String fingerprint(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
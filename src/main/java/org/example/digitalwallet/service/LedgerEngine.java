@@ -0,0 +1,303 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
+import org.example.digitalwallet.model.WalletChange;
+import org.example.digitalwallet.model.WalletEvent;
+import org.example.digitalwallet.model.WalletOwner;
+import org.example.digitalwallet.repository.LedgerCheckpointRepository;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.example.digitalwallet.repository.TransferRepository;
+import org.example.digitalwallet.repository.WalletEventRepository;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+// Settles transfers against in-memory balances instead of Postgres row locks.
+// Wallets are split over partitions by id, each with its own writer thread and journal file;
+// a command is acknowledged once its journal record is fsynced, and Postgres catches up in the background.
+// Postgres plus ledger_checkpoint is the snapshot: on restart every journal record past the
+// partition's checkpoint is re-applied on top of it. The partition count must not change while journals hold records.
+@Slf4j
+@Service
+public class LedgerEngine {
+
+    private static final String MEMORY_ENGINE = "memory";
+    private static final int ID_BLOCK_SIZE = 500;
+
+    private final WalletRepository walletRepository;
+    private final TransferRepository transferRepository;
+    private final LedgerCheckpointRepository checkpointRepository;
+    private final WalletEventRepository walletEventRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    private final boolean enabled;
+    private final int partitionCount;
+    private final Path journalDir;
+    private final int maxBatchSize;
+    private final Duration flushInterval;
+    private final long journalTruncateBytes;
+
+    private final Map<Long, WalletOwner> owners = new ConcurrentHashMap<>();
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    private final Counter flushFailures;
+
+    private LedgerPartition[] partitions;
+    private ScheduledFuture<?> flushing;
+
+    public LedgerEngine(WalletRepository walletRepository,
+                        TransferRepository transferRepository,
+                        LedgerCheckpointRepository checkpointRepository,
+                        WalletEventRepository walletEventRepository,
+                        LedgerEntryRepository ledgerEntryRepository,
+                        PlatformTransactionManager transactionManager,
+                        TaskScheduler taskScheduler,
+                        MeterRegistry meterRegistry,
+                        @Value("${wallet.transfer.engine:database}") String engine,
+                        @Value("${wallet.ledger.partitions:8}") int partitionCount,
+                        @Value("${wallet.ledger.journal-dir:ledger-journal}") String journalDir,
+                        @Value("${wallet.ledger.max-batch-size:256}") int maxBatchSize,
+                        @Value("${wallet.ledger.flush-interval-ms:200}") long flushIntervalMillis,
+                        @Value("${wallet.ledger.journal-truncate-bytes:67108864}") long journalTruncateBytes) {
+        this.walletRepository = walletRepository;
+        this.transferRepository = transferRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.walletEventRepository = walletEventRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.enabled = MEMORY_ENGINE.equalsIgnoreCase(engine);
+        this.partitionCount = partitionCount;
+        this.journalDir = Path.of(journalDir);
+        this.maxBatchSize = maxBatchSize;
+        this.flushInterval = Duration.ofMillis(flushIntervalMillis);
+        this.journalTruncateBytes = journalTruncateBytes;
+
+        this.flushFailures = Counter.builder("wallet.ledger.flush.failures")
+                .description("Background writes of journaled records to Postgres that failed and will be retried")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        partitions = new LedgerPartition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            LedgerJournal journal = new LedgerJournal(journalDir.resolve("partition-" + i + ".journal"));
+            partitions[i] = new LedgerPartition(i, journal, walletRepository::findBalance, this::partitionFor,
+                    maxBatchSize, journalTruncateBytes);
+        }
+
+        recover();
+
+        for (LedgerPartition partition : partitions) {
+            partition.start();
+        }
+
+        flushing = taskScheduler.scheduleWithFixedDelay(this::flush, Instant.now().plus(flushInterval), flushInterval);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        for (LedgerPartition partition : partitions) {
+            partition.stop();
+        }
+
+        flushing.cancel(false);
+        // Waits out a scheduled flush still in progress. Whatever is still unflushed stays in the journals
+        // and is replayed on the next start
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Same checks and outcomes as WalletRepository.executeAuthorizedTransfer, blocking until the record is durable
+    public TransferResult executeAuthorizedTransfer(Transfer transfer, String callerUsername) {
+        WalletOwner source = owner(transfer.getFromWallet());
+        WalletOwner recipient = owner(transfer.getToWallet());
+
+        if (source == null || recipient == null) {
+            return new TransferResult(TransferOutcome.WALLET_NOT_FOUND, null);
+        }
+        if (!source.username().equals(callerUsername)) {
+            return new TransferResult(TransferOutcome.NOT_OWNER, null);
+        }
+        if (source.currency() != transfer.getCurrency()) {
+            return new TransferResult(TransferOutcome.SOURCE_CURRENCY_MISMATCH, null);
+        }
+        if (recipient.currency() != transfer.getCurrency()) {
+            return new TransferResult(TransferOutcome.RECIPIENT_CURRENCY_MISMATCH, null);
+        }
+
+        transfer.setId(nextTransferId());
+
+        return await(partitionFor(transfer.getFromWallet()).transfer(transfer));
+    }
+
+    // Returns the balance after the deposit
+    public BigDecimal deposit(Long walletId, BigDecimal amount) {
+        return await(partitionFor(walletId).deposit(walletId, amount));
+    }
+
+    // The engine's view of the balance, which can be ahead of Postgres; null when the engine doesn't hold the wallet
+    public BigDecimal residentBalance(Long walletId) {
+        return enabled ? partitionFor(walletId).residentBalance(walletId) : null;
+    }
+
+    LedgerPartition partitionFor(Long walletId) {
+        return partitions[Math.floorMod(walletId, partitionCount)];
+    }
+
+    // ========== Recovery ==========
+
+    private void recover() {
+        Map<Integer, Long> checkpoints = checkpointRepository.findAll();
+
+        for (LedgerPartition partition : partitions) {
+            long checkpoint = checkpoints.getOrDefault(partition.id(), 0L);
+            partition.resumeAfter(checkpoint);
+        }
+
+        // Both legs of every record are re-applied, so each partition's credits from the others are restored too
+        for (LedgerPartition partition : partitions) {
+            long checkpoint = checkpoints.getOrDefault(partition.id(), 0L);
+            for (LedgerRecord record : partition.takeJournaled()) {
+                if (record.seq() > checkpoint) {
+                    partition.restore(record);
+                }
+            }
+        }
+    }
+
+    // ========== Flushing ==========
+
+    synchronized void flush() {
+        for (LedgerPartition partition : partitions) {
+            try {
+                flush(partition);
+            } catch (RuntimeException ex) {
+                // The records stay queued and go out with the next run
+                flushFailures.increment();
+                log.error("Flushing ledger partition {} failed, retrying next run", partition.id(), ex);
+            }
+        }
+    }
+
+    private void flush(LedgerPartition partition) {
+        List<LedgerRecord> records = partition.flushable();
+        if (records.isEmpty()) {
+            return;
+        }
+
+        Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+        List<Transfer> transfers = new ArrayList<>();
+        List<WalletChange> events = new ArrayList<>();
+
+        for (LedgerRecord record : records) {
+            deltas.merge(record.toWallet(), record.amount(), BigDecimal::add);
+
+            if (record.kind() == LedgerRecord.Kind.DEPOSIT) {
+                events.add(WalletEvent.of(record.toWallet(), WalletEvent.Kind.DEPOSIT, record.amount()));
+            }
+
+            if (record.kind() == LedgerRecord.Kind.TRANSFER) {
+                deltas.merge(record.fromWallet(), record.amount().negate(), BigDecimal::add);
+                transfers.add(Transfer.builder()
+                        .id(record.transferId())
+                        .fromWallet(record.fromWallet())
+                        .toWallet(record.toWallet())
+                        .currency(record.currency())
+                        .transferAmount(record.amount())
+                        .transferDate(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.timestamp()), ZoneOffset.UTC))
+                        .build());
+                events.addAll(TransferEvent.legsOf(record.transferId(), record.fromWallet(), record.toWallet(), record.amount()));
+            }
+        }
+        deltas.values().removeIf(delta -> delta.signum() == 0);
+
+        long flushedSeq = records.getLast().seq();
+
+        // Balances, transfer rows, events, ledger entries and the checkpoint move together, so a crash can't replay what Postgres already has
+        transactionTemplate.executeWithoutResult(status -> {
+            walletRepository.applyBalanceDeltas(deltas);
+            if (!transfers.isEmpty()) {
+                transferRepository.saveAllWithIds(transfers);
+            }
+            walletEventRepository.appendAll(events);
+            ledgerEntryRepository.appendAll(events);
+            checkpointRepository.save(partition.id(), flushedSeq);
+        });
+
+        partition.markFlushed(records.size());
+    }
+
+    // ========== Helpers ==========
+
+    private WalletOwner owner(Long walletId) {
+        WalletOwner owner = owners.get(walletId);
+        if (owner == null) {
+            owner = walletRepository.findOwner(walletId);
+            if (owner != null) {
+                owners.put(walletId, owner);
+            }
+        }
+        return owner;
+    }
+
+    private synchronized long nextTransferId() {
+        if (reservedIds.isEmpty()) {
+            reservedIds.addAll(transferRepository.reserveIds(ID_BLOCK_SIZE));
+        }
+        return reservedIds.poll();
+    }
+
+    private static <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.model.WalletCurrency;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only file of LedgerRecords, each framed as [length][payload][crc32].
+// Only the owning partition's writer thread appends, so there is no locking here
+final class LedgerJournal implements Closeable {
+
+    private final FileChannel channel;
+    private List<LedgerRecord> recovered;
+
+    LedgerJournal(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.recovered = new ArrayList<>();
+
+        // A crash mid-append leaves a torn tail; keep everything before it and cut the rest off
+        long validLength = read(recovered);
+        channel.truncate(validLength);
+        channel.position(validLength);
+    }
+
+    // Records found on disk when the journal was opened; handed out once so they don't stay in memory
+    List<LedgerRecord> takeRecovered() {
+        List<LedgerRecord> records = recovered;
+        recovered = List.of();
+        return records;
+    }
+
+    void append(LedgerRecord record) throws IOException {
+        byte[] payload = encode(record);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payload.length + Long.BYTES);
+        frame.putInt(payload.length).put(payload).putLong(crc.getValue()).flip();
+
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long read(List<LedgerRecord> records) throws IOException {
+        channel.position(0);
+        InputStream stream = Channels.newInputStream(channel);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        long validLength = 0;
+
+        while (true) {
+            try {
+                int length = in.readInt();
+                if (length <= 0 || length > 4096) {
+                    return validLength;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                long expectedCrc = in.readLong();
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != expectedCrc) {
+                    return validLength;
+                }
+
+                records.add(decode(payload));
+                validLength += Integer.BYTES + length + Long.BYTES;
+            } catch (EOFException ex) {
+                return validLength;
+            }
+        }
+    }
+
+    private static byte[] encode(LedgerRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeLong(record.seq());
+        out.writeByte(record.kind().ordinal());
+        out.writeLong(record.transferId());
+        out.writeLong(record.fromWallet());
+        out.writeLong(record.toWallet());
+        out.writeUTF(record.amount().toPlainString());
+        out.writeUTF(record.currency() == null ? "" : record.currency().name());
+        out.writeLong(record.timestamp());
+
+        return bytes.toByteArray();
+    }
+
+    private static LedgerRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        long seq = in.readLong();
+        LedgerRecord.Kind kind = LedgerRecord.Kind.values()[in.readByte()];
+        long transferId = in.readLong();
+        long fromWallet = in.readLong();
+        long toWallet = in.readLong();
+        BigDecimal amount = new BigDecimal(in.readUTF());
+        String currency = in.readUTF();
+        long timestamp = in.readLong();
+
+        return new LedgerRecord(seq, kind, transferId, fromWallet, toWallet, amount,
+                currency.isEmpty() ? null : WalletCurrency.valueOf(currency), timestamp);
+    }
+}
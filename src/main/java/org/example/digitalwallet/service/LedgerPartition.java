@@ -0,0 +1,348 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Owns the balances of every wallet that hashes to it. Only the writer thread reads or changes them,
+// so commands are applied without locks; other threads talk to it through the inbox.
+final class LedgerPartition {
+
+    private final int id;
+    private final LedgerJournal journal;
+    private final Function<Long, BigDecimal> balanceLoader;
+    private final Function<Long, LedgerPartition> router;
+    private final int maxBatchSize;
+    private final long journalTruncateBytes;
+
+    private final Map<Long, BigDecimal> balances = new ConcurrentHashMap<>();
+    private final BlockingQueue<Command> inbox = new LinkedBlockingQueue<>();
+    // Journaled records not yet written to Postgres, in journal order
+    private final ConcurrentLinkedQueue<Pending> unflushed = new ConcurrentLinkedQueue<>();
+
+    private long lastSeq;
+    private volatile boolean running;
+    private volatile boolean failed;
+    private Thread writer;
+
+    LedgerPartition(int id, LedgerJournal journal, Function<Long, BigDecimal> balanceLoader,
+                    Function<Long, LedgerPartition> router, int maxBatchSize, long journalTruncateBytes) {
+        this.id = id;
+        this.journal = journal;
+        this.balanceLoader = balanceLoader;
+        this.router = router;
+        this.maxBatchSize = maxBatchSize;
+        this.journalTruncateBytes = journalTruncateBytes;
+    }
+
+    int id() {
+        return id;
+    }
+
+    // ========== Recovery, before the writer starts ==========
+
+    List<LedgerRecord> takeJournaled() {
+        return journal.takeRecovered();
+    }
+
+    void resumeAfter(long seq) {
+        lastSeq = Math.max(lastSeq, seq);
+    }
+
+    // Re-applies a journaled record on top of the balances Postgres already has
+    void restore(LedgerRecord record) {
+        if (record.kind() == LedgerRecord.Kind.TRANSFER) {
+            adjust(record.fromWallet(), record.amount().negate());
+        }
+        router.apply(record.toWallet()).adjust(record.toWallet(), record.amount());
+
+        Pending pending = new Pending(record);
+        pending.applied = true;
+        unflushed.add(pending);
+        lastSeq = Math.max(lastSeq, record.seq());
+    }
+
+    // ========== Lifecycle ==========
+
+    void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("ledger-partition-" + id).daemon().start(this::run);
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        rejectQueued(new IllegalStateException("Ledger is shutting down"));
+
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+            // Everything acknowledged was already forced to disk
+        }
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    // ========== Commands ==========
+
+    CompletableFuture<TransferResult> transfer(Transfer transfer) {
+        TransferCommand command = new TransferCommand(transfer, new CompletableFuture<>());
+        submit(command);
+        return command.result();
+    }
+
+    CompletableFuture<BigDecimal> deposit(long walletId, BigDecimal amount) {
+        DepositCommand command = new DepositCommand(walletId, amount, new CompletableFuture<>());
+        submit(command);
+        return command.result();
+    }
+
+    // Null when the wallet hasn't been touched yet, or when this partition stopped after a journal failure
+    BigDecimal residentBalance(long walletId) {
+        return failed ? null : balances.get(walletId);
+    }
+
+    // ========== Flushing ==========
+
+    // The longest run of records, from the oldest, whose every leg is already applied in memory
+    List<LedgerRecord> flushable() {
+        List<LedgerRecord> records = new ArrayList<>();
+        for (Pending pending : unflushed) {
+            if (!pending.applied) {
+                break;
+            }
+            records.add(pending.record);
+        }
+        return records;
+    }
+
+    void markFlushed(int count) {
+        for (int i = 0; i < count; i++) {
+            unflushed.poll();
+        }
+    }
+
+    // ========== Writer ==========
+
+    private void submit(Command command) {
+        if (failed || !running) {
+            throw new IllegalStateException("Ledger partition " + id + " is unavailable");
+        }
+        inbox.add(command);
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        List<Runnable> afterSync = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                Command first = inbox.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                inbox.drainTo(batch, maxBatchSize - 1);
+
+                boolean journaled = false;
+                for (Command command : batch) {
+                    try {
+                        journaled |= apply(command, afterSync);
+                    } catch (RuntimeException ex) {
+                        // Loading a balance failed before anything was journaled for this command
+                        command.fail(ex);
+                    }
+                }
+
+                // One fsync for the whole batch; nobody hears back before their record is on disk
+                if (journaled) {
+                    journal.force();
+                }
+                afterSync.forEach(Runnable::run);
+
+                if (unflushed.isEmpty() && journal.size() > journalTruncateBytes) {
+                    journal.truncate();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ex) {
+                // Memory is now ahead of the journal, so stop serving; a restart rebuilds from disk
+                failed = true;
+                IllegalStateException failure = new IllegalStateException("Ledger partition " + id + " failed to write its journal", ex);
+                batch.forEach(command -> command.fail(failure));
+                rejectQueued(failure);
+                return;
+            } finally {
+                batch.clear();
+                afterSync.clear();
+            }
+        }
+    }
+
+    // Returns true when the command added a record to the journal
+    private boolean apply(Command command, List<Runnable> afterSync) throws IOException {
+        return switch (command) {
+            case TransferCommand transfer -> applyTransfer(transfer, afterSync);
+            case DepositCommand deposit -> applyDeposit(deposit, afterSync);
+            case CreditCommand credit -> {
+                adjust(credit.pending().record.toWallet(), credit.pending().record.amount());
+                credit.pending().applied = true;
+                yield false;
+            }
+        };
+    }
+
+    private boolean applyTransfer(TransferCommand command, List<Runnable> afterSync) throws IOException {
+        Transfer transfer = command.transfer();
+        BigDecimal balance = load(transfer.getFromWallet());
+
+        if (balance == null) {
+            command.result().complete(new TransferResult(TransferOutcome.WALLET_NOT_FOUND, null));
+            return false;
+        }
+        if (balance.compareTo(transfer.getTransferAmount()) < 0) {
+            command.result().complete(new TransferResult(TransferOutcome.INSUFFICIENT_FUNDS, null));
+            return false;
+        }
+
+        LedgerPartition destination = router.apply(transfer.getToWallet());
+        if (destination == this && load(transfer.getToWallet()) == null) {
+            command.result().complete(new TransferResult(TransferOutcome.WALLET_NOT_FOUND, null));
+            return false;
+        }
+
+        LedgerRecord record = new LedgerRecord(++lastSeq, LedgerRecord.Kind.TRANSFER, transfer.getId(),
+                transfer.getFromWallet(), transfer.getToWallet(), transfer.getTransferAmount(), transfer.getCurrency(),
+                transfer.getTransferDate().toInstant(ZoneOffset.UTC).toEpochMilli());
+        journal.append(record);
+
+        adjust(transfer.getFromWallet(), transfer.getTransferAmount().negate());
+        Pending pending = new Pending(record);
+        unflushed.add(pending);
+
+        if (destination == this) {
+            adjust(transfer.getToWallet(), transfer.getTransferAmount());
+            pending.applied = true;
+        } else {
+            // The record is durable here with both legs, so the credit can travel after the fsync without its own journal entry.
+            // The record is held back from Postgres until the credit lands, which keeps a flushed balance from being counted twice.
+            afterSync.add(() -> destination.credit(pending));
+        }
+
+        afterSync.add(() -> command.result().complete(new TransferResult(TransferOutcome.COMPLETED, transfer.getId())));
+        return true;
+    }
+
+    private boolean applyDeposit(DepositCommand command, List<Runnable> afterSync) throws IOException {
+        BigDecimal balance = load(command.walletId());
+
+        if (balance == null) {
+            command.result().completeExceptionally(new IllegalStateException("Wallet " + command.walletId() + " is not in the ledger"));
+            return false;
+        }
+
+        LedgerRecord record = new LedgerRecord(++lastSeq, LedgerRecord.Kind.DEPOSIT, 0, 0, command.walletId(),
+                command.amount(), null, System.currentTimeMillis());
+        journal.append(record);
+
+        BigDecimal newBalance = adjust(command.walletId(), command.amount());
+        Pending pending = new Pending(record);
+        pending.applied = true;
+        unflushed.add(pending);
+
+        afterSync.add(() -> command.result().complete(newBalance));
+        return true;
+    }
+
+    private void credit(Pending pending) {
+        // A failed destination drops the credit; the record stays unflushed in the source journal and is replayed on restart
+        if (!failed) {
+            inbox.add(new CreditCommand(this, pending));
+        }
+    }
+
+    private BigDecimal load(long walletId) {
+        BigDecimal balance = balances.get(walletId);
+        if (balance == null) {
+            balance = balanceLoader.apply(walletId);
+            if (balance != null) {
+                balances.put(walletId, balance);
+            }
+        }
+        return balance;
+    }
+
+    private BigDecimal adjust(long walletId, BigDecimal delta) {
+        BigDecimal balance = load(walletId);
+        if (balance == null) {
+            throw new IllegalStateException("Wallet " + walletId + " is not in the ledger");
+        }
+        BigDecimal updated = balance.add(delta);
+        balances.put(walletId, updated);
+        return updated;
+    }
+
+    private void rejectQueued(RuntimeException failure) {
+        Command command;
+        while ((command = inbox.poll()) != null) {
+            command.fail(failure);
+        }
+    }
+
+    private static final class Pending {
+        private final LedgerRecord record;
+        private volatile boolean applied;
+
+        private Pending(LedgerRecord record) {
+            this.record = record;
+        }
+    }
+
+    private sealed interface Command permits TransferCommand, DepositCommand, CreditCommand {
+        void fail(RuntimeException failure);
+    }
+
+    private record TransferCommand(Transfer transfer, CompletableFuture<TransferResult> result) implements Command {
+        @Override
+        public void fail(RuntimeException failure) {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private record DepositCommand(long walletId, BigDecimal amount, CompletableFuture<BigDecimal> result) implements Command {
+        @Override
+        public void fail(RuntimeException failure) {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private record CreditCommand(LedgerPartition partition, Pending pending) implements Command {
+        @Override
+        public void fail(RuntimeException failure) {
+            // The source journal already holds this leg, so keep trying until the balance can be loaded
+            if (!partition.failed && partition.running) {
+                partition.inbox.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.model.WalletCurrency;
+
+import java.math.BigDecimal;
+
+// One journaled command. A transfer record carries both legs, even when the credit belongs to another partition
+record LedgerRecord(long seq, Kind kind, long transferId, long fromWallet, long toWallet,
+                    BigDecimal amount, WalletCurrency currency, long timestamp) {
+
+    enum Kind {
+        TRANSFER,
+        DEPOSIT
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+
+// Periodically folds each busy wallet's recent ledger entries into a balance snapshot, so a balance is read as
+// the latest snapshot plus a short tail. A snapshot only covers entries older than the settle delay:
+// a transaction that has not committed within that delay could otherwise add an entry behind a snapshot already taken.
+@Service
+public class LedgerSnapshotService {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration settleDelay;
+    private final int minEntries;
+
+    private final Counter snapshots;
+
+    private ScheduledFuture<?> snapshotting;
+
+    public LedgerSnapshotService(LedgerEntryRepository ledgerEntryRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 TaskScheduler taskScheduler,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${wallet.ledger.snapshot.enabled:true}") boolean enabled,
+                                 @Value("${wallet.ledger.snapshot.interval-ms:300000}") long intervalMillis,
+                                 @Value("${wallet.ledger.snapshot.settle-seconds:60}") long settleSeconds,
+                                 @Value("${wallet.ledger.snapshot.min-entries:20}") int minEntries) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.enabled = enabled;
+        this.interval = Duration.ofMillis(intervalMillis);
+        this.settleDelay = Duration.ofSeconds(settleSeconds);
+        this.minEntries = minEntries;
+
+        this.snapshots = Counter.builder("wallet.ledger.snapshots")
+                .description("Wallet balance snapshots taken from the ledger")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        // A failed run is logged by the scheduler; the next run covers its entries too
+        snapshotting = taskScheduler.scheduleWithFixedDelay(this::snapshot, Instant.now().plus(interval), interval);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (snapshotting != null) {
+            snapshotting.cancel(false);
+        }
+    }
+
+    // Returns the number of snapshots taken; 0 when another node is already running
+    int snapshot() {
+        Integer taken = transactionTemplate.execute(status -> {
+            Instant since = ledgerEntryRepository.lockSnapshotRun();
+            if (since == null) {
+                return 0;
+            }
+
+            // Measured on the clock that stamps the entries, so a node whose clock runs ahead can't cut in front of them
+            Instant asOf = ledgerEntryRepository.currentTime().minus(settleDelay);
+            if (!asOf.isAfter(since)) {
+                return 0;
+            }
+
+            int count = ledgerEntryRepository.snapshot(since, asOf, minEntries);
+            ledgerEntryRepository.saveSnapshotRun(asOf);
+            return count;
+        });
+
+        int count = taken == null ? 0 : taken;
+        snapshots.increment(count);
+        return count;
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.digitalwallet.exception.ServiceOverloadedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Runs bcrypt work on its own small pool. Request threads still wait for the result, but at most
+// threads + queue of them at a time; anything beyond that is turned away at once instead of piling up
+// behind the hashes and starving transfers and wallet reads.
+@Service
+public class PasswordHashingService {
+
+    public enum Operation {
+        ENCODE,
+        LOGIN
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final Map<Operation, Timer> timers = new EnumMap<>(Operation.class);
+    private final Counter rejections;
+
+    public PasswordHashingService(MeterRegistry meterRegistry,
+                                  @Value("${wallet.auth.hashing.threads:4}") int threads,
+                                  @Value("${wallet.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${wallet.auth.hashing.timeout-ms:5000}") long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("wallet.auth.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Credential checks waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("wallet.auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.rejections = Counter.builder("wallet.auth.hashing.rejected")
+                .description("Credential checks turned away because the hashing queue was full")
+                .register(meterRegistry);
+        for (Operation operation : Operation.values()) {
+            timers.put(operation, Timer.builder("wallet.auth.hashing.duration")
+                    .description("Time spent hashing or checking a password, excluding time queued")
+                    .tag("operation", operation.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    // Runs the task on the hashing pool and waits for it; the task's own exceptions are rethrown unchanged
+    public <T> T run(Operation operation, Supplier<T> task) {
+        Timer timer = timers.get(operation);
+
+        Future<T> result;
+        try {
+            result = executor.submit(() -> timer.record(task));
+        } catch (RejectedExecutionException ex) {
+            rejections.increment();
+            throw new ServiceOverloadedException("Too many sign-ins in progress, try again shortly");
+        }
+
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            result.cancel(true);
+            throw new ServiceOverloadedException("Too many sign-ins in progress, try again shortly");
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+}
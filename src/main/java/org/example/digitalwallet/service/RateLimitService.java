@@ -0,0 +1,165 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Token buckets shared by every node: each bucket is a Redis hash that a Lua script refills and debits atomically,
+// on Redis' own clock. A client that was just refused is remembered locally until its bucket can have refilled,
+// so a client hammering past its limit is turned away without a round trip.
+@Service
+public class RateLimitService {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+    private static final int MAX_LOCALLY_BLOCKED = 10_000;
+
+    // Returns {allowed, retry after in ms}; idle buckets expire once they would be full again
+    private static final RedisScript<List> TOKEN_BUCKET = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local refill_per_ms = tonumber(ARGV[2]) / 1000
+            local cost = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(bucket[1]) or capacity
+            local ts = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * refill_per_ms)
+
+            local allowed = 0
+            local retry_after = 0
+            if tokens >= cost then
+                tokens = tokens - cost
+                allowed = 1
+            else
+                retry_after = math.ceil((cost - tokens) / refill_per_ms)
+            end
+
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], math.ceil((capacity - tokens) / refill_per_ms) + 1000)
+            return {allowed, retry_after}
+            """, List.class);
+
+    // Puts tokens back, never past capacity. A bucket that already expired is full, so there is nothing to refund
+    private static final RedisScript<Long> REFUND = new DefaultRedisScript<>("""
+            local tokens = tonumber(redis.call('HGET', KEYS[1], 'tokens'))
+            if not tokens then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(math.min(tonumber(ARGV[1]), tokens + tonumber(ARGV[2]))))
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<MembershipStatus, Quota> userQuotas = new EnumMap<>(MembershipStatus.class);
+    private final Quota anonymousQuota;
+
+    // Bucket key -> epoch millis before which the bucket can't hold a token again
+    private final Map<String, Long> blockedUntil = new ConcurrentHashMap<>();
+
+    public RateLimitService(StringRedisTemplate redisTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${wallet.rate-limit.free.capacity:20}") long freeCapacity,
+                            @Value("${wallet.rate-limit.free.per-second:1}") double freePerSecond,
+                            @Value("${wallet.rate-limit.premium.capacity:60}") long premiumCapacity,
+                            @Value("${wallet.rate-limit.premium.per-second:5}") double premiumPerSecond,
+                            @Value("${wallet.rate-limit.ultra.capacity:200}") long ultraCapacity,
+                            @Value("${wallet.rate-limit.ultra.per-second:20}") double ultraPerSecond,
+                            @Value("${wallet.rate-limit.ip.capacity:30}") long ipCapacity,
+                            @Value("${wallet.rate-limit.ip.per-second:1}") double ipPerSecond) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        userQuotas.put(MembershipStatus.FREE, new Quota(freeCapacity, freePerSecond));
+        userQuotas.put(MembershipStatus.PREMIUM, new Quota(premiumCapacity, premiumPerSecond));
+        userQuotas.put(MembershipStatus.ULTRA, new Quota(ultraCapacity, ultraPerSecond));
+        this.anonymousQuota = new Quota(ipCapacity, ipPerSecond);
+    }
+
+    public Decision tryAcquireForUser(Long userId, MembershipStatus tier) {
+        return tryAcquire("user:" + userId, userQuotas.getOrDefault(tier, userQuotas.get(MembershipStatus.FREE)));
+    }
+
+    // Gives back the token a request was charged when it turned out to cost nothing, such as an idempotent replay
+    public void refundUser(Long userId, MembershipStatus tier) {
+        Quota quota = userQuotas.getOrDefault(tier, userQuotas.get(MembershipStatus.FREE));
+        String key = KEY_PREFIX + "user:" + userId;
+
+        try {
+            redisTemplate.execute(REFUND, List.of(key), Long.toString(quota.capacity()), "1");
+        } catch (RuntimeException ex) {
+            // The caller just pays for the replay, as it would have without the refund
+            meterRegistry.counter("wallet.rate-limit.unavailable").increment();
+            return;
+        }
+        blockedUntil.remove(key);
+    }
+
+    public Decision tryAcquireForAddress(String address) {
+        return tryAcquire("ip:" + address, anonymousQuota);
+    }
+
+    Decision tryAcquire(String bucket, Quota quota) {
+        String key = KEY_PREFIX + bucket;
+        String scope = bucket.substring(0, bucket.indexOf(':'));
+        long now = System.currentTimeMillis();
+
+        Long until = blockedUntil.get(key);
+        if (until != null) {
+            if (now < until) {
+                rejected(scope, "local");
+                return new Decision(false, until - now);
+            }
+            blockedUntil.remove(key, until);
+        }
+
+        List<?> result;
+        try {
+            result = redisTemplate.execute(TOKEN_BUCKET, List.of(key),
+                    Long.toString(quota.capacity()), Double.toString(quota.refillPerSecond()), "1");
+        } catch (RuntimeException ex) {
+            // Limits protect the service, they shouldn't take it down with Redis
+            meterRegistry.counter("wallet.rate-limit.unavailable").increment();
+            return new Decision(true, 0);
+        }
+
+        boolean allowed = ((Number) result.get(0)).longValue() == 1;
+        long retryAfterMillis = ((Number) result.get(1)).longValue();
+
+        if (!allowed) {
+            rememberBlocked(key, now + retryAfterMillis);
+            rejected(scope, "redis");
+        }
+        return new Decision(allowed, retryAfterMillis);
+    }
+
+    private void rememberBlocked(String key, long until) {
+        if (blockedUntil.size() >= MAX_LOCALLY_BLOCKED) {
+            long now = System.currentTimeMillis();
+            blockedUntil.values().removeIf(expiry -> expiry <= now);
+            if (blockedUntil.size() >= MAX_LOCALLY_BLOCKED) {
+                return;
+            }
+        }
+        blockedUntil.put(key, until);
+    }
+
+    private void rejected(String scope, String decidedBy) {
+        meterRegistry.counter("wallet.rate-limit.rejected", "scope", scope, "decided-by", decidedBy).increment();
+    }
+
+    public record Quota(long capacity, double refillPerSecond) {
+    }
+
+    public record Decision(boolean allowed, long retryAfterMillis) {
+    }
+}
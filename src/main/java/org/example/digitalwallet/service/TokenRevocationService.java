@@ -0,0 +1,155 @@
+package org.example.digitalwallet.service;
+
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.digitalwallet.exception.UserNotAuthenticatedException;
+import org.example.digitalwallet.util.BloomFilter;
+import org.example.digitalwallet.util.JwtUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+// Revoked token ids live in a Redis sorted set scored by revocation time. Each node mirrors them in a Bloom filter,
+// so a token that was never revoked is cleared without leaving the process; only a filter hit asks Redis.
+// Nodes pull new ids every sync interval and rebuild the filter from scratch once ids outlive every token.
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    static final String REVOKED_KEY = "auth:revoked-tokens";
+    // Revocation times come from each node's clock, so every sync re-reads a little way back
+    private static final long CLOCK_SKEW_MILLIS = 5_000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final JwtUtil jwtUtil;
+    private final TokenVersionService tokenVersionService;
+    private final TaskScheduler taskScheduler;
+    private final long expectedRevocations;
+    private final double falsePositiveRate;
+    private final Duration syncInterval;
+    private final long rebuildIntervalMillis;
+
+    private volatile BloomFilter filter;
+    private long syncedUpTo;
+    private long lastRebuild;
+    private ScheduledFuture<?> syncing;
+
+    public TokenRevocationService(StringRedisTemplate redisTemplate,
+                                  JwtUtil jwtUtil,
+                                  TokenVersionService tokenVersionService,
+                                  TaskScheduler taskScheduler,
+                                  @Value("${wallet.auth.revocation.expected-revocations:100000}") long expectedRevocations,
+                                  @Value("${wallet.auth.revocation.false-positive-rate:0.001}") double falsePositiveRate,
+                                  @Value("${wallet.auth.revocation.sync-interval-ms:1000}") long syncIntervalMillis,
+                                  @Value("${wallet.auth.revocation.rebuild-interval-ms:3600000}") long rebuildIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.jwtUtil = jwtUtil;
+        this.tokenVersionService = tokenVersionService;
+        this.taskScheduler = taskScheduler;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.syncInterval = Duration.ofMillis(syncIntervalMillis);
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+        this.filter = new BloomFilter(expectedRevocations, falsePositiveRate);
+    }
+
+    @PostConstruct
+    void start() {
+        syncing = taskScheduler.scheduleWithFixedDelay(this::sync, syncInterval);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (syncing != null) {
+            syncing.cancel(false);
+        }
+    }
+
+    // Revokes the token in the Authorization header
+    public void logout(String authorizationHeader) {
+        Claims claims = authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                ? jwtUtil.verify(authorizationHeader.substring(7))
+                : null;
+
+        if (claims == null) {
+            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
+        }
+        if (claims.getId() != null) {
+            revoke(claims.getId());
+        }
+    }
+
+    public void revoke(String tokenId) {
+        redisTemplate.opsForZSet().add(REVOKED_KEY, tokenId, System.currentTimeMillis());
+        filter.put(tokenId);
+    }
+
+    // Ends every session the user has, including tokens whose ids nobody knows
+    public void revokeAllFor(Long userId) {
+        tokenVersionService.bump(userId);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        // A filter hit is either a revoked token or a false positive; Redis tells them apart.
+        // If it can't be reached the token is treated as revoked.
+        try {
+            return redisTemplate.opsForZSet().score(REVOKED_KEY, tokenId) != null;
+        } catch (RuntimeException ex) {
+            return true;
+        }
+    }
+
+    void sync() {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - lastRebuild >= rebuildIntervalMillis) {
+                rebuild(now);
+            } else {
+                load(filter, syncedUpTo - CLOCK_SKEW_MILLIS);
+            }
+        } catch (RuntimeException ex) {
+            // Redis is unreachable: keep the current filter and catch up on the next run
+            log.warn("Could not sync revoked tokens from Redis: {}", ex.getMessage());
+        }
+    }
+
+    // Ids older than the token lifetime only guard tokens that have expired anyway, so they are dropped for good
+    private void rebuild(long now) {
+        redisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, Double.NEGATIVE_INFINITY,
+                now - JwtUtil.TOKEN_LIFETIME_MILLIS - CLOCK_SKEW_MILLIS);
+
+        BloomFilter rebuilt = new BloomFilter(expectedRevocations, falsePositiveRate);
+        load(rebuilt, Double.NEGATIVE_INFINITY);
+        filter = rebuilt;
+        // The next run reads back past the start of this one, so an id revoked locally while it ran
+        // reaches the new filter too, not just the old one
+        syncedUpTo = now;
+        lastRebuild = now;
+    }
+
+    private void load(BloomFilter target, double fromScore) {
+        Set<ZSetOperations.TypedTuple<String>> revoked =
+                redisTemplate.opsForZSet().rangeByScoreWithScores(REVOKED_KEY, fromScore, Double.POSITIVE_INFINITY);
+        if (revoked == null) {
+            return;
+        }
+
+        for (ZSetOperations.TypedTuple<String> entry : revoked) {
+            target.put(entry.getValue());
+            if (entry.getScore() != null) {
+                syncedUpTo = Math.max(syncedUpTo, entry.getScore().longValue());
+            }
+        }
+    }
+}
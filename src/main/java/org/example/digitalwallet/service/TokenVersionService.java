@@ -0,0 +1,104 @@
+package org.example.digitalwallet.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+// Tokens carry the version their user had when they were issued; bumping it retires every older token at once.
+// Only bumped users have an entry, so each node keeps the whole map in memory and refreshes it from Redis
+// in the background, and the per-request check never leaves the process.
+@Slf4j
+@Service
+public class TokenVersionService {
+
+    static final String VERSIONS_KEY = "auth:token-versions";
+
+    private final StringRedisTemplate redisTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Duration refreshInterval;
+
+    private volatile Map<Long, Long> versions = Map.of();
+    private ScheduledFuture<?> refreshing;
+
+    public TokenVersionService(StringRedisTemplate redisTemplate,
+                               TaskScheduler taskScheduler,
+                               @Value("${wallet.auth.token-version-refresh-ms:5000}") long refreshIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.taskScheduler = taskScheduler;
+        this.refreshInterval = Duration.ofMillis(refreshIntervalMillis);
+    }
+
+    @PostConstruct
+    void start() {
+        refreshing = taskScheduler.scheduleWithFixedDelay(this::refresh, refreshInterval);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refreshing != null) {
+            refreshing.cancel(false);
+        }
+    }
+
+    public long currentVersion(Long userId) {
+        return versions.getOrDefault(userId, 0L);
+    }
+
+    // The version to sign a new token with. Read from Redis rather than this node's snapshot, which can be a refresh
+    // interval behind a bump made on another node; a token signed with that would be rejected everywhere else
+    public long versionForNewToken(Long userId) {
+        Object stored;
+        try {
+            stored = redisTemplate.opsForHash().get(VERSIONS_KEY, userId.toString());
+        } catch (RuntimeException ex) {
+            log.warn("Could not read token version for user {} from Redis: {}", userId, ex.getMessage());
+            return currentVersion(userId);
+        }
+
+        if (stored != null) {
+            merge(Map.of(userId, Long.valueOf(stored.toString())));
+        }
+        return currentVersion(userId);
+    }
+
+    public boolean isCurrent(Long userId, long tokenVersion) {
+        return tokenVersion >= currentVersion(userId);
+    }
+
+    // Invalidates every token issued to the user so far; other nodes follow within one refresh interval
+    public long bump(Long userId) {
+        long version = redisTemplate.opsForHash().increment(VERSIONS_KEY, userId.toString(), 1);
+        merge(Map.of(userId, version));
+        return version;
+    }
+
+    void refresh() {
+        try {
+            Map<Object, Object> stored = redisTemplate.opsForHash().entries(VERSIONS_KEY);
+
+            Map<Long, Long> loaded = new HashMap<>(stored.size());
+            stored.forEach((userId, version) ->
+                    loaded.put(Long.valueOf(userId.toString()), Long.valueOf(version.toString())));
+            merge(loaded);
+        } catch (RuntimeException ex) {
+            // Redis is unreachable: keep checking against the last snapshot and try again next round
+            log.warn("Could not refresh token versions from Redis: {}", ex.getMessage());
+        }
+    }
+
+    // Versions only grow, so a snapshot read before a local bump can't roll that bump back
+    private synchronized void merge(Map<Long, Long> loaded) {
+        Map<Long, Long> updated = new HashMap<>(versions);
+        loaded.forEach((userId, version) -> updated.merge(userId, version, Math::max));
+        versions = updated;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.dto.ExportFormat;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.repository.TransferRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+// Writes transfers to the response as they come off the JDBC cursor, so memory use doesn't grow with the export
+@Service
+public class TransferExportService {
+
+    private static final String CSV_HEADER = "id,from_wallet,to_wallet,currency,transfer_amount,transfer_date\n";
+
+    private final TransferRepository transferRepository;
+    private final WalletService walletService;
+    private final TransactionTemplate transactionTemplate;
+
+    public TransferExportService(TransferRepository transferRepository,
+                                 WalletService walletService,
+                                 PlatformTransactionManager transactionManager) {
+        this.transferRepository = transferRepository;
+        this.walletService = walletService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // Exports one wallet the caller owns. The ownership check runs now, on the request thread;
+    // the returned body runs later on an async thread
+    public StreamingResponseBody exportTransfers(Long walletId, LocalDateTime from, LocalDateTime to, ExportFormat format) {
+        walletService.getWalletById(walletId);
+
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+            if (format == ExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+            }
+
+            transactionTemplate.executeWithoutResult(status ->
+                    transferRepository.forEachTransfer(walletId, from, to, transfer -> write(writer, format, transfer)));
+
+            writer.flush();
+        };
+    }
+
+    private static void write(Writer writer, ExportFormat format, Transfer transfer) {
+        try {
+            writer.write(format == ExportFormat.CSV ? csvLine(transfer) : ndjsonLine(transfer));
+        } catch (IOException ex) {
+            // Usually the client went away; stop reading rows
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String csvLine(Transfer transfer) {
+        return transfer.getId() + ","
+                + transfer.getFromWallet() + ","
+                + transfer.getToWallet() + ","
+                + transfer.getCurrency().name() + ","
+                + transfer.getTransferAmount().toPlainString() + ","
+                + transfer.getTransferDate() + "\n";
+    }
+
+    // Same field names as TransferResponse
+    private static String ndjsonLine(Transfer transfer) {
+        return "{\"id\":" + transfer.getId()
+                + ",\"fromWallet\":" + transfer.getFromWallet()
+                + ",\"toWallet\":" + transfer.getToWallet()
+                + ",\"currency\":\"" + transfer.getCurrency().name() + "\""
+                + ",\"transferAmount\":" + transfer.getTransferAmount().toPlainString()
+                + ",\"transferDate\":\"" + transfer.getTransferDate() + "\"}\n";
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.digitalwallet.exception.ServiceOverloadedException;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Collects transfers that arrive within a short window and settles them in one database transaction,
+// so concurrent callers share a single commit instead of paying one each
+@Service
+public class TransferGroupCommitter {
+
+    private final WalletRepository walletRepository;
+    private final WalletService walletService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long timeoutMillis;
+
+    private final BatchingQueue<PendingTransfer> queue;
+    private final DistributionSummary batchFill;
+    private final Timer queueLatency;
+
+    public TransferGroupCommitter(WalletRepository walletRepository,
+                                  WalletService walletService,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${wallet.transfer.group-commit.enabled:false}") boolean enabled,
+                                  @Value("${wallet.transfer.group-commit.window-ms:5}") long windowMillis,
+                                  @Value("${wallet.transfer.group-commit.max-batch-size:64}") int maxBatchSize,
+                                  @Value("${wallet.transfer.group-commit.timeout-ms:10000}") long timeoutMillis) {
+        this.walletRepository = walletRepository;
+        this.walletService = walletService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.queue = new BatchingQueue<>("transfer-group-commit", windowMillis, maxBatchSize, this::commit);
+
+        this.batchFill = DistributionSummary.builder("wallet.transfer.group_commit.batch.fill")
+                .description("Share of the maximum batch size used by each group commit")
+                .register(meterRegistry);
+        this.queueLatency = Timer.builder("wallet.transfer.group_commit.queue.latency")
+                .description("Time a transfer waits before its group commit starts")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        for (PendingTransfer pending : queue.stop()) {
+            pending.result().completeExceptionally(new IllegalStateException("Transfer service is shutting down"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Blocks until the group containing this transfer commits, or the timeout passes. Returns the new transfer id or
+    // rethrows the same exceptions WalletService.executeAuthorizedTransfer would. A transfer that times out before its
+    // group reaches it is dropped; one that times out while its group is committing may still have been applied
+    public Long submit(Transfer transfer, String callerUsername) {
+        PendingTransfer pending = new PendingTransfer(transfer, callerUsername, System.nanoTime(), new CompletableFuture<>());
+        queue.add(pending);
+
+        try {
+            return pending.result().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof TimeoutException) {
+                throw new ServiceOverloadedException("Transfer didn't settle in time, check the transfer history before retrying");
+            }
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private void commit(List<PendingTransfer> batch) {
+        long startedAt = System.nanoTime();
+        batch.forEach(pending -> queueLatency.record(startedAt - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+        batchFill.record((double) batch.size() / maxBatchSize);
+
+        Map<PendingTransfer, Long> completed = new LinkedHashMap<>();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (PendingTransfer pending : batch) {
+                    // Its caller timed out and has already been answered
+                    if (pending.result().isDone()) {
+                        continue;
+                    }
+
+                    // A failed transfer only rolls back to its own savepoint, the rest of the group still commits
+                    Object savepoint = status.createSavepoint();
+                    try {
+                        Long transferId = walletService.completedTransferId(
+                                walletRepository.executeAuthorizedTransfer(pending.transfer(), pending.callerUsername()));
+                        status.releaseSavepoint(savepoint);
+                        completed.put(pending, transferId);
+                    } catch (RuntimeException ex) {
+                        status.rollbackToSavepoint(savepoint);
+                        pending.result().completeExceptionally(ex);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            // Covers failures before the first transfer ran too, such as no free connection; futures already
+            // failed by their own transfer keep that failure
+            batch.forEach(pending -> pending.result().completeExceptionally(ex));
+            return;
+        }
+
+        completed.forEach((pending, transferId) -> pending.result().complete(transferId));
+    }
+
+    private record PendingTransfer(Transfer transfer, String callerUsername, long enqueuedAt,
+                                   CompletableFuture<Long> result) {
+    }
+}
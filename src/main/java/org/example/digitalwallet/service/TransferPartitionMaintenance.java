@@ -0,0 +1,105 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.digitalwallet.repository.TransferPartitionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+// Keeps the monthly transfer partitions ahead of the calendar and moves expired months to the archive schema.
+// Runs once at startup, so the current month exists before the first insert, and then every few hours.
+// Startup also converts a transfer table left over from before partitioning
+@Slf4j
+@Service
+public class TransferPartitionMaintenance {
+
+    private final TransferPartitionRepository partitionRepository;
+    private final TaskScheduler taskScheduler;
+    private final Counter failures;
+
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final long intervalHours;
+
+    private ScheduledFuture<?> maintaining;
+
+    public TransferPartitionMaintenance(TransferPartitionRepository partitionRepository,
+                                        TaskScheduler taskScheduler,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${wallet.transfer.partitions.enabled:true}") boolean enabled,
+                                        @Value("${wallet.transfer.partitions.months-ahead:3}") int monthsAhead,
+                                        @Value("${wallet.transfer.partitions.retention-months:24}") int retentionMonths,
+                                        @Value("${wallet.transfer.partitions.interval-hours:6}") long intervalHours) {
+        this.partitionRepository = partitionRepository;
+        this.taskScheduler = taskScheduler;
+        this.failures = Counter.builder("wallet.transfer.partitions.failures")
+                .description("Scheduled partition maintenance runs that failed")
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.intervalHours = intervalHours;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        if (partitionRepository.migrateToPartitioned()) {
+            log.info("Moved the existing transfer table onto monthly partitions");
+        }
+        maintain(YearMonth.now());
+
+        Duration interval = Duration.ofHours(intervalHours);
+        maintaining = taskScheduler.scheduleWithFixedDelay(this::maintainQuietly, Instant.now().plus(interval), interval);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (maintaining != null) {
+            maintaining.cancel(false);
+        }
+    }
+
+    void maintain(YearMonth current) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            partitionRepository.createPartition(current.plusMonths(i));
+        }
+
+        // A retention of 0 keeps every month attached
+        if (retentionMonths <= 0) {
+            return;
+        }
+
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        List<YearMonth> attached = partitionRepository.findAttachedMonths();
+
+        for (YearMonth month : attached) {
+            if (month.isBefore(oldestKept)) {
+                partitionRepository.detachAndArchive(month);
+            }
+        }
+    }
+
+    void maintainQuietly() {
+        try {
+            maintain(YearMonth.now());
+        } catch (RuntimeException ex) {
+            // Caught here rather than left to the scheduler so failures are counted; months-ahead leaves slack until the next run
+            failures.increment();
+            log.error("Transfer partition maintenance failed, retrying in {} hours", intervalHours, ex);
+        }
+    }
+}
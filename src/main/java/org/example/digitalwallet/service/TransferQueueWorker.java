@@ -0,0 +1,213 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.digitalwallet.exception.WalletNotFoundException;
+import org.example.digitalwallet.model.QueuedTransfer;
+import org.example.digitalwallet.model.TransferResult;
+import org.example.digitalwallet.repository.TransferQueueRepository;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Applies transfers accepted through the async endpoint. Every due row gets a virtual thread, and a semaphore
+// caps how many of them hold a connection at once, which is the rate the queue drains at; keep it below the pool size.
+// Lock conflicts are rescheduled with a backoff instead of sleeping, so nothing waits on a busy wallet.
+@Slf4j
+@Service
+public class TransferQueueWorker {
+
+    private final TransferQueueRepository transferQueueRepository;
+    private final WalletRepository walletRepository;
+    private final WalletService walletService;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final Semaphore permits;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration retention;
+
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter retried;
+    private final Timer lag;
+
+    private ScheduledFuture<?> polling;
+    private ScheduledFuture<?> purging;
+    private ExecutorService workers;
+
+    public TransferQueueWorker(TransferQueueRepository transferQueueRepository,
+                               WalletRepository walletRepository,
+                               WalletService walletService,
+                               PlatformTransactionManager transactionManager,
+                               TaskScheduler taskScheduler,
+                               MeterRegistry meterRegistry,
+                               @Value("${wallet.transfer.async.poll-interval-ms:200}") long pollIntervalMillis,
+                               @Value("${wallet.transfer.async.batch-size:200}") int batchSize,
+                               @Value("${wallet.transfer.async.concurrency:8}") int concurrency,
+                               @Value("${wallet.transfer.async.max-attempts:10}") int maxAttempts,
+                               @Value("${wallet.transfer.async.initial-backoff-ms:100}") long initialBackoffMillis,
+                               @Value("${wallet.transfer.async.max-backoff-ms:5000}") long maxBackoffMillis,
+                               @Value("${wallet.transfer.async.retention-hours:168}") long retentionHours) {
+        this.transferQueueRepository = transferQueueRepository;
+        this.walletRepository = walletRepository;
+        this.walletService = walletService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.pollInterval = Duration.ofMillis(pollIntervalMillis);
+        this.batchSize = batchSize;
+        this.permits = new Semaphore(concurrency);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Duration.ofMillis(initialBackoffMillis);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMillis);
+        this.retention = Duration.ofHours(retentionHours);
+
+        this.completed = outcomes(meterRegistry, "completed");
+        this.failed = outcomes(meterRegistry, "failed");
+        this.retried = outcomes(meterRegistry, "retried");
+        this.lag = Timer.builder("wallet.transfer.async.lag")
+                .description("Time from accepting an async transfer to its final outcome")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("transfer-worker-", 0).factory());
+        polling = taskScheduler.scheduleWithFixedDelay(this::poll, Instant.now().plus(pollInterval), pollInterval);
+        purging = taskScheduler.scheduleWithFixedDelay(this::purge, Instant.now().plus(Duration.ofHours(1)), Duration.ofHours(1));
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (polling != null) {
+            polling.cancel(false);
+            purging.cancel(false);
+        }
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // A failed run is logged by the scheduler; its rows stay pending and the next run picks them up
+    void poll() {
+        try {
+            // A full batch means more is probably waiting
+            while (drain() == batchSize) {
+                // keep draining
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns the number of due rows that were read; waits for all of them, so no row is picked up twice by this node
+    int drain() throws InterruptedException {
+        List<QueuedTransfer> due = transferQueueRepository.findDue(Instant.now(), batchSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        List<Callable<Void>> tasks = due.stream()
+                .<Callable<Void>>map(queued -> () -> {
+                    process(queued);
+                    return null;
+                })
+                .toList();
+        workers.invokeAll(tasks);
+
+        return due.size();
+    }
+
+    void process(QueuedTransfer queued) throws InterruptedException {
+        permits.acquire();
+        try {
+            QueuedTransfer.Status outcome = transactionTemplate.execute(status -> apply(queued.id()));
+            if (outcome == QueuedTransfer.Status.COMPLETED) {
+                completed.increment();
+            } else if (outcome == QueuedTransfer.Status.FAILED) {
+                failed.increment();
+            }
+            if (outcome != null) {
+                lag.record(Duration.between(queued.createdAt(), LocalDateTime.now()));
+            }
+        } catch (RuntimeException ex) {
+            // Rolled back with nothing applied
+            retryLater(queued);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // The transfer and the row's outcome commit together. Returns null when the row wasn't ours to apply
+    private QueuedTransfer.Status apply(Long id) {
+        QueuedTransfer queued = transferQueueRepository.lockPending(id);
+        if (queued == null) {
+            return null;
+        }
+
+        TransferResult result = walletRepository.executeAuthorizedTransfer(queued.toTransfer(), queued.username());
+        try {
+            transferQueueRepository.complete(id, walletService.completedTransferId(result));
+            return QueuedTransfer.Status.COMPLETED;
+        } catch (WalletNotFoundException | SecurityException | IllegalArgumentException ex) {
+            // Rejected transfers write nothing, so recording the reason is all this transaction does
+            transferQueueRepository.fail(id, ex.getMessage());
+            return QueuedTransfer.Status.FAILED;
+        }
+    }
+
+    private void retryLater(QueuedTransfer queued) {
+        int attempts = queued.attempts() + 1;
+        try {
+            if (attempts >= maxAttempts) {
+                transferQueueRepository.fail(queued.id(), "Transfer could not be completed, please try again");
+                failed.increment();
+                lag.record(Duration.between(queued.createdAt(), LocalDateTime.now()));
+            } else {
+                transferQueueRepository.retryAt(queued.id(), Instant.now().plus(backoff(attempts)));
+                retried.increment();
+            }
+        } catch (RuntimeException ex) {
+            // The row is still due, so the next run tries it again
+            log.warn("Could not reschedule queued transfer {}", queued.id(), ex);
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    // Nothing depends on old rows going away on time, so a failed run just waits for the next one
+    void purge() {
+        transferQueueRepository.deleteFinishedBefore(LocalDateTime.now().minus(retention));
+    }
+
+    private Counter outcomes(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("wallet.transfer.async")
+                .description("Async transfers by how their attempt ended")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
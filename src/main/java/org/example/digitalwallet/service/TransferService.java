@@ -1,16 +1,27 @@
 package org.example.digitalwallet.service;
 
-import io.github.resilience4j.ratelimiter.RequestNotPermitted;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import lombok.AllArgsConstructor;
+import org.example.digitalwallet.dto.BatchTransferItemResult;
+import org.example.digitalwallet.dto.BatchTransferRequest;
+import org.example.digitalwallet.dto.BatchTransferResponse;
+import org.example.digitalwallet.dto.CursorPagedResponse;
+import org.example.digitalwallet.dto.QueuedTransferResponse;
+import org.example.digitalwallet.dto.TransferCursor;
 import org.example.digitalwallet.dto.TransferRequest;
 import org.example.digitalwallet.dto.TransferResponse;
-import org.example.digitalwallet.exception.RateLimitExceededException;
+import org.example.digitalwallet.exception.TransferNotFoundException;
 import org.example.digitalwallet.exception.UserNotAuthenticatedException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.QueuedTransfer;
 import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.example.digitalwallet.repository.TransferQueueRepository;
 import org.example.digitalwallet.repository.TransferRepository;
+import org.example.digitalwallet.repository.WalletEventRepository;
 import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.security.core.Authentication;
@@ -19,16 +30,30 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
 
 @AllArgsConstructor
 @Service
 public class TransferService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    // How far back the all-wallets history reaches; older transfers are read per wallet, with a date range
+    private static final int HISTORY_DAYS = 90;
+
     private final TransferRepository transferRepository;
     private final WalletService walletService;
+    private final TransferGroupCommitter transferGroupCommitter;
+    private final LedgerEngine ledgerEngine;
+    private final WalletEventRepository walletEventRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransferQueueRepository transferQueueRepository;
+    private final WalletMailboxes walletMailboxes;
 
-    @RateLimiter(name = "saveTransferRateLimiter" , fallbackMethod="fallbackSaveTransfer")
     @Retryable(
             retryFor = {
                 DeadlockLoserDataAccessException.class,
@@ -37,7 +62,6 @@ public class TransferService {
             maxAttempts = 5,
             backoff = @Backoff(delay = 100, maxDelay = 1000, multiplier = 2, random = true)
     )
-    @Transactional
     public TransferResponse saveTransfer(TransferRequest transferRequest) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -45,37 +69,175 @@ public class TransferService {
             throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
         }
 
-        Long fromWalletId = transferRequest.fromWallet();
-        Long toWalletId = transferRequest.toWallet();
-
-        boolean success = walletService.executeTransfer(
-                fromWalletId, toWalletId, transferRequest.transferAmount(),
-                transferRequest.currency(), authentication.getName());
+        Transfer transfer = Transfer.builder()
+                .fromWallet(transferRequest.fromWallet())
+                .toWallet(transferRequest.toWallet())
+                .currency(transferRequest.currency())
+                .transferAmount(transferRequest.transferAmount())
+                .transferDate(LocalDateTime.now())
+                .build();
 
-        if (!success) {
-            throw new IllegalArgumentException("Insufficient funds: wallet balance is less than transfer amount");
+        Long transferId;
+        if (ledgerEngine.isEnabled()) {
+            transferId = walletService.completedTransferId(ledgerEngine.executeAuthorizedTransfer(transfer, authentication.getName()));
+        } else if (walletMailboxes.isEnabled()) {
+            transferId = walletMailboxes.execute(transfer, authentication.getName());
+        } else if (transferGroupCommitter.isEnabled()) {
+            transferId = transferGroupCommitter.submit(transfer, authentication.getName());
+        } else {
+            transferId = walletService.executeAuthorizedTransfer(transfer, authentication.getName());
         }
 
+        transfer.setId(transferId);
+
+        return transferResponseMapper(transfer);
+    }
+
+    // Queues the transfer for TransferQueueWorker and returns at once, so no request thread waits on a wallet lock
+    public QueuedTransferResponse submitTransfer(TransferRequest transferRequest) {
+        AuthenticatedUser caller = currentUser();
+
+        walletService.validateTransfer(transferRequest, caller);
+
         Transfer transfer = Transfer.builder()
-                .fromWallet(fromWalletId)
-                .toWallet(toWalletId)
+                .fromWallet(transferRequest.fromWallet())
+                .toWallet(transferRequest.toWallet())
                 .currency(transferRequest.currency())
                 .transferAmount(transferRequest.transferAmount())
                 .transferDate(LocalDateTime.now())
                 .build();
 
-        transferRepository.save(transfer);
+        UUID handle = UUID.randomUUID();
+        transferQueueRepository.enqueue(handle, caller.id(), caller.username(), transfer);
 
-        return transferResponseMapper(transfer);
+        return new QueuedTransferResponse(handle, QueuedTransfer.Status.PENDING, null,
+                transfer.getFromWallet(), transfer.getToWallet(), transfer.getCurrency(), transfer.getTransferAmount(),
+                null, transfer.getTransferDate(), null);
+    }
+
+    public QueuedTransferResponse getQueuedTransfer(UUID handle) {
+        AuthenticatedUser caller = currentUser();
+
+        QueuedTransfer queued = transferQueueRepository.findByHandle(handle);
+
+        if (queued == null) {
+            throw new TransferNotFoundException("Transfer wasn't found!");
+        }
+
+        if (!queued.userId().equals(caller.id())) {
+            throw new SecurityException("You don't have access to this transfer");
+        }
+
+        return new QueuedTransferResponse(queued.handle(), queued.status(), queued.transferId(),
+                queued.fromWallet(), queued.toWallet(), queued.currency(), queued.amount(),
+                queued.failureReason(), queued.createdAt(), queued.completedAt());
     }
 
+    @Retryable(
+            retryFor = PessimisticLockingFailureException.class,
+            maxAttempts = 5,
+            backoff = @Backoff(delay = 100, maxDelay = 1000, multiplier = 2, random = true)
+    )
+    @Transactional
+    public BatchTransferResponse saveTransferBatch(BatchTransferRequest request) {
+        AuthenticatedUser caller = currentUser();
+
+        List<TransferRequest> transfers = request.transfers();
+        List<String> failures = walletService.executeTransferBatch(transfers, caller);
+
+        // Ids up front, so the transfer rows, their events and the response all name the same transfer
+        int appliedCount = (int) failures.stream().filter(Objects::isNull).count();
+        Iterator<Long> ids = appliedCount == 0
+                ? Collections.emptyIterator()
+                : transferRepository.reserveIds(appliedCount).iterator();
+
+        LocalDateTime transferDate = LocalDateTime.now();
+        List<Transfer> applied = new ArrayList<>();
+        List<BatchTransferItemResult> results = new ArrayList<>(transfers.size());
+
+        for (int i = 0; i < transfers.size(); i++) {
+            String failure = failures.get(i);
+
+            if (failure != null) {
+                results.add(new BatchTransferItemResult(i, false, null, failure));
+                continue;
+            }
+
+            TransferRequest item = transfers.get(i);
+            Transfer transfer = Transfer.builder()
+                    .id(ids.next())
+                    .fromWallet(item.fromWallet())
+                    .toWallet(item.toWallet())
+                    .currency(item.currency())
+                    .transferAmount(item.transferAmount())
+                    .transferDate(transferDate)
+                    .build();
+
+            applied.add(transfer);
+            results.add(new BatchTransferItemResult(i, true, transferResponseMapper(transfer), null));
+        }
+
+        if (!applied.isEmpty()) {
+            transferRepository.saveAllWithIds(applied);
+            List<TransferEvent> legs = applied.stream().flatMap(transfer -> TransferEvent.legsOf(transfer).stream()).toList();
+            walletEventRepository.appendAll(legs);
+            ledgerEntryRepository.appendAll(legs);
+        }
+
+        return new BatchTransferResponse(applied.size(), transfers.size() - applied.size(), results);
+    }
 
     public List<TransferResponse> getTransferHistory(Long cursor,Integer limit) {
-        List<Transfer> getTransfers = transferRepository.findTransfers(cursor, limit);
+        List<Transfer> getTransfers = transferRepository.findTransfers(cursor,
+                LocalDateTime.now().minusDays(HISTORY_DAYS), pageSize(limit));
 
         return getTransfers.stream().map(this::transferResponseMapper).toList();
     }
 
+    // Incoming and outgoing transfers of one wallet the caller owns. A cursor carries its own date range,
+    // so from/to only apply to the first page
+    public CursorPagedResponse<TransferResponse> getWalletTransferHistory(Long walletId, String cursor,
+                                                                          LocalDateTime from, LocalDateTime to,
+                                                                          Integer limit) {
+        // Throws when the wallet doesn't exist or belongs to someone else
+        walletService.getWalletById(walletId);
+
+        TransferCursor position = cursor == null
+                ? new TransferCursor(null, null, from, to)
+                : TransferCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+
+        List<TransferResponse> transfers = transferRepository
+                .findWalletTransfers(walletId, position.beforeDate(), position.beforeId(),
+                        position.from(), position.to(), pageSize)
+                .stream()
+                .map(this::transferResponseMapper)
+                .toList();
+
+        String nextCursor = transfers.size() < pageSize ? null
+                : new TransferCursor(transfers.getLast().transferDate(), transfers.getLast().id(),
+                        position.from(), position.to()).encode();
+
+        return new CursorPagedResponse<>(transfers, nextCursor);
+    }
+
+    private static int pageSize(Integer limit) {
+        if (limit == null || limit < 1) {
+            return 1;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+
+    private static AuthenticatedUser currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser caller)) {
+            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
+        }
+
+        return caller;
+    }
 
     private TransferResponse transferResponseMapper(Transfer transfer) {
         return new TransferResponse(
@@ -88,7 +250,4 @@ public class TransferService {
         );
     }
 
-    public TransferResponse fallbackSaveTransfer(TransferRequest transferRequest, RequestNotPermitted ex) {
-        throw new RateLimitExceededException("Too many requests. Try again later!");
-    }
 }
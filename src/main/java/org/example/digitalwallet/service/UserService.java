@@ -1,14 +1,12 @@
 package org.example.digitalwallet.service;
 
-import io.github.resilience4j.ratelimiter.RequestNotPermitted;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import lombok.AllArgsConstructor;
 import org.example.digitalwallet.dto.LoginRequest;
 import org.example.digitalwallet.dto.UserRequest;
-import org.example.digitalwallet.exception.RateLimitExceededException;
 import org.example.digitalwallet.exception.UserAlreadyExistsException;
 import org.example.digitalwallet.model.User;
 import org.example.digitalwallet.repository.UserRepository;
+import org.example.digitalwallet.service.PasswordHashingService.Operation;
 import org.example.digitalwallet.util.JwtUtil;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -30,6 +28,8 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil  jwtUtil;
     private final AuthenticationManager authenticationManager;
+    private final TokenVersionService tokenVersionService;
+    private final PasswordHashingService passwordHashingService;
 
     @Transactional
     public void register(UserRequest request) {
@@ -38,24 +38,27 @@ public class UserService {
         User user = User.builder().
                 username(request.username()).
                 email(request.email()).
-                password(passwordEncoder.encode(request.password())).
+                password(passwordHashingService.run(Operation.ENCODE, () -> passwordEncoder.encode(request.password()))).
                 membershipStatus(request.status()).
                 build();
 
         userRepository.saveUser(user);
     }
 
-//    @RateLimiter(name = "loginRateLimiter" , fallbackMethod = "loggingFallBack")
     public String login(LoginRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
+        // The bcrypt check, and the rehash when the configured cost went up, run on the hashing pool
+        Authentication authentication = passwordHashingService.run(Operation.LOGIN, () -> authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         request.username(),
                         request.password()
                 )
-        );
+        ));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        return jwtUtil.generateToken(request.username());
+
+        // The only identity lookup in the token's lifetime; every later request is authenticated from its claims
+        User user = getUserByUsername(request.username());
+        return jwtUtil.generateToken(user, tokenVersionService.versionForNewToken(user.getId()));
 
     }
 
@@ -64,10 +67,6 @@ public class UserService {
                 .orElseThrow(() -> new UsernameNotFoundException("User with such name isnt found"));
     }
 
-    private String loggingFallBack(LoginRequest request, RequestNotPermitted t) {
-        throw new RateLimitExceededException("Rate limit for logging in exceeded try again later");
-    }
-
     private void checkForExistingUser(String username) {
         Optional<User> existingUser = userRepository.getUserByUsername(username);
 
@@ -0,0 +1,135 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.digitalwallet.model.WalletChange;
+import org.example.digitalwallet.repository.WalletEventRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Drains the wallet_event outbox into the in-process subscribers.
+// Wallets are split over shards by id, and a node only reads a shard while it holds that shard's row lock,
+// taken with SKIP LOCKED; nodes share the shards between them and one wallet's events are never read by two nodes at once.
+// Every node must run with the same shard count.
+@Slf4j
+@Service
+public class WalletEventDispatcher {
+
+    private final WalletEventRepository walletEventRepository;
+    private final ObjectProvider<WalletEventSubscriber> subscriberProvider;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    private final Duration pollInterval;
+    private final int shardCount;
+    private final int batchSize;
+
+    private final Timer lag;
+    private final Counter failures;
+
+    private List<WalletEventSubscriber> subscribers = List.of();
+    private int nextShard;
+    private ScheduledFuture<?> polling;
+
+    public WalletEventDispatcher(WalletEventRepository walletEventRepository,
+                                 ObjectProvider<WalletEventSubscriber> subscriberProvider,
+                                 PlatformTransactionManager transactionManager,
+                                 TaskScheduler taskScheduler,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${wallet.events.poll-interval-ms:200}") long pollIntervalMillis,
+                                 @Value("${wallet.events.shards:16}") int shardCount,
+                                 @Value("${wallet.events.batch-size:500}") int batchSize) {
+        this.walletEventRepository = walletEventRepository;
+        this.subscriberProvider = subscriberProvider;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.pollInterval = Duration.ofMillis(pollIntervalMillis);
+        this.shardCount = shardCount;
+        this.batchSize = batchSize;
+        // Nodes start at different shards so they don't all queue on the same one
+        this.nextShard = ThreadLocalRandom.current().nextInt(shardCount);
+
+        this.lag = Timer.builder("wallet.events.lag")
+                .description("Time from the transaction that wrote an event to its delivery to subscribers")
+                .register(meterRegistry);
+        this.failures = Counter.builder("wallet.events.failures")
+                .description("Shard batches rolled back because a subscriber threw; they are delivered again")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        subscribers = subscriberProvider.orderedStream().toList();
+        walletEventRepository.createShards(shardCount);
+
+        polling = taskScheduler.scheduleWithFixedDelay(this::poll, Instant.now().plus(pollInterval), pollInterval);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (polling != null) {
+            polling.cancel(false);
+        }
+    }
+
+    void poll() {
+        boolean backlog = true;
+        while (backlog) {
+            backlog = false;
+            for (int i = 0; i < shardCount; i++) {
+                int shard = nextShard;
+                nextShard = (nextShard + 1) % shardCount;
+
+                try {
+                    // A full batch means the shard probably has more waiting
+                    backlog |= drain(shard) == batchSize;
+                } catch (RuntimeException ex) {
+                    // Nothing was deleted, so the same events come back in the same order next time.
+                    // Caught here rather than by the scheduler so one failing shard doesn't hold up the others
+                    failures.increment();
+                    log.error("Delivering wallet events from shard {} failed, retrying next run", shard, ex);
+                }
+            }
+        }
+    }
+
+    // Returns the number of events delivered, or 0 when another node holds the shard
+    int drain(int shard) {
+        Integer delivered = transactionTemplate.execute(status -> {
+            if (!walletEventRepository.tryLockShard(shard)) {
+                return 0;
+            }
+
+            List<WalletChange> events = walletEventRepository.findPending(shard, shardCount, batchSize);
+            if (events.isEmpty()) {
+                return 0;
+            }
+
+            Instant now = Instant.now();
+            for (WalletChange event : events) {
+                for (WalletEventSubscriber subscriber : subscribers) {
+                    subscriber.onEvent(event);
+                }
+                lag.record(Duration.between(event.occurredAt(), now));
+            }
+
+            walletEventRepository.delete(events.stream().map(WalletChange::eventId).toList());
+            return events.size();
+        });
+        return delivered == null ? 0 : delivered;
+    }
+}
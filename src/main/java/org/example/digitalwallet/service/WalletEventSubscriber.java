@@ -0,0 +1,12 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.model.WalletChange;
+
+// Receives wallet and transfer events once they have committed, in order for any one wallet that isn't striped.
+// A striped wallet's events can arrive out of order, see WalletEventRepository, so treat them as independent deltas.
+// Delivery is at least once: when a subscriber throws, the batch is handed to every subscriber again on a later poll.
+// Subscribers run on the dispatcher thread while it holds its shard lock, so they should hand slow work off.
+public interface WalletEventSubscriber {
+
+    void onEvent(WalletChange event);
+}
@@ -0,0 +1,225 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.digitalwallet.exception.ServiceOverloadedException;
+import org.example.digitalwallet.model.Transfer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Serializes the transfers of hot wallets in-process. A transfer touching a hot wallet goes into that wallet's mailbox,
+// which one virtual thread drains a transfer at a time, so Postgres sees them in sequence instead of as a queue of lock waiters.
+// Everything else runs directly, and its lock conflicts and slow lock waits are what make a wallet hot.
+// The mailbox only orders this node's transfers; other nodes still contend on the row as before.
+// A transfer between two hot wallets goes to the mailbox of the lower id whichever way it flows, so transfers
+// between the pair never run on two drainers at once. The higher wallet's own mailbox still runs its transfers
+// with other wallets, so its row can be locked from both drainers at the same time; those transfers wait on
+// each other in Postgres, as they would without mailboxes.
+@Service
+public class WalletMailboxes {
+
+    private final WalletService walletService;
+
+    private final boolean enabled;
+    private final long lockWaitNanos;
+    private final int capacity;
+    private final long idleMillis;
+    private final HotWalletTracker tracker;
+
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Timer queueLatency;
+
+    private volatile boolean running = true;
+
+    public WalletMailboxes(WalletService walletService,
+                           MeterRegistry meterRegistry,
+                           @Value("${wallet.transfer.mailbox.enabled:false}") boolean enabled,
+                           @Value("${wallet.transfer.mailbox.hot-threshold:5}") int hotThreshold,
+                           @Value("${wallet.transfer.mailbox.window-ms:1000}") long windowMillis,
+                           @Value("${wallet.transfer.mailbox.hold-ms:30000}") long holdMillis,
+                           @Value("${wallet.transfer.mailbox.lock-wait-ms:50}") long lockWaitMillis,
+                           @Value("${wallet.transfer.mailbox.capacity:1000}") int capacity,
+                           @Value("${wallet.transfer.mailbox.idle-ms:5000}") long idleMillis) {
+        this(walletService, meterRegistry, enabled, new HotWalletTracker(hotThreshold, windowMillis, holdMillis),
+                lockWaitMillis, capacity, idleMillis);
+    }
+
+    WalletMailboxes(WalletService walletService, MeterRegistry meterRegistry, boolean enabled, HotWalletTracker tracker,
+                    long lockWaitMillis, int capacity, long idleMillis) {
+        this.walletService = walletService;
+        this.enabled = enabled;
+        this.tracker = tracker;
+        this.lockWaitNanos = TimeUnit.MILLISECONDS.toNanos(lockWaitMillis);
+        this.capacity = capacity;
+        this.idleMillis = idleMillis;
+
+        this.queueLatency = Timer.builder("wallet.transfer.mailbox.queue.latency")
+                .description("Time a transfer waits in a hot wallet's mailbox before it runs")
+                .register(meterRegistry);
+        Gauge.builder("wallet.transfer.mailbox.hot", tracker, HotWalletTracker::hotCount)
+                .description("Wallets currently detected as hot")
+                .register(meterRegistry);
+        Gauge.builder("wallet.transfer.mailbox.active", mailboxes, Map::size)
+                .description("Mailboxes with a running drainer")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+
+        for (Mailbox mailbox : mailboxes.values()) {
+            mailbox.drainer.interrupt();
+            mailbox.drainer.join(TimeUnit.SECONDS.toMillis(5));
+            mailbox.rejectQueued();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns the new transfer id or rethrows the same exceptions WalletService.executeAuthorizedTransfer would
+    public Long execute(Transfer transfer, String callerUsername) {
+        Long hotWallet = lowestHot(transfer.getFromWallet(), transfer.getToWallet());
+
+        return hotWallet == null
+                ? settle(transfer, callerUsername)
+                : submit(hotWallet, new PendingTransfer(transfer, callerUsername, System.nanoTime(), new CompletableFuture<>()));
+    }
+
+    boolean isHot(long walletId) {
+        return tracker.isHot(walletId);
+    }
+
+    // The same mailbox for a pair of wallets whichever way the money moves; null when neither is hot
+    private Long lowestHot(Long fromWallet, Long toWallet) {
+        boolean fromHot = tracker.isHot(fromWallet);
+        boolean toHot = tracker.isHot(toWallet);
+        if (fromHot && toHot) {
+            return Math.min(fromWallet, toWallet);
+        }
+        return fromHot ? fromWallet : toHot ? toWallet : null;
+    }
+
+    private Long settle(Transfer transfer, String callerUsername) {
+        long startedAt = System.nanoTime();
+        try {
+            Long transferId = walletService.executeAuthorizedTransfer(transfer, callerUsername);
+            if (System.nanoTime() - startedAt > lockWaitNanos) {
+                recordContention(transfer);
+            }
+            return transferId;
+        } catch (PessimisticLockingFailureException ex) {
+            // Lock timeouts and deadlocks; the caller's retry will find the wallet hot once it crosses the threshold
+            recordContention(transfer);
+            throw ex;
+        }
+    }
+
+    private void recordContention(Transfer transfer) {
+        tracker.record(transfer.getFromWallet());
+        tracker.record(transfer.getToWallet());
+    }
+
+    private Long submit(Long walletId, PendingTransfer pending) {
+        // A mailbox that just closed for being idle turns the transfer away, and the next attempt opens a fresh one
+        boolean queued = false;
+        while (!queued) {
+            if (!running) {
+                throw new IllegalStateException("Transfer service is shutting down");
+            }
+            queued = mailboxes.computeIfAbsent(walletId, Mailbox::new).offer(pending);
+        }
+
+        try {
+            return pending.result().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private final class Mailbox {
+
+        private final long walletId;
+        private final BlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>(capacity);
+        private final Thread drainer;
+        private boolean closed;
+
+        private Mailbox(long walletId) {
+            this.walletId = walletId;
+            this.drainer = Thread.ofVirtual().name("wallet-mailbox-" + walletId).start(this::run);
+        }
+
+        private synchronized boolean offer(PendingTransfer pending) {
+            if (closed) {
+                return false;
+            }
+            if (!queue.offer(pending)) {
+                throw new ServiceOverloadedException("Too many transfers queued for wallet " + walletId + ", try again shortly");
+            }
+            return true;
+        }
+
+        private void run() {
+            while (running) {
+                PendingTransfer next;
+                try {
+                    next = queue.poll(idleMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (next == null) {
+                    if (close()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                queueLatency.record(System.nanoTime() - next.enqueuedAt(), TimeUnit.NANOSECONDS);
+                try {
+                    next.result().complete(settle(next.transfer(), next.callerUsername()));
+                } catch (RuntimeException ex) {
+                    next.result().completeExceptionally(ex);
+                }
+            }
+        }
+
+        // Closes only when nothing slipped in since the last poll
+        private synchronized boolean close() {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+            closed = true;
+            mailboxes.remove(walletId, this);
+            return true;
+        }
+
+        private void rejectQueued() {
+            PendingTransfer pending;
+            while ((pending = queue.poll()) != null) {
+                pending.result().completeExceptionally(new IllegalStateException("Transfer service is shutting down"));
+            }
+        }
+    }
+
+    private record PendingTransfer(Transfer transfer, String callerUsername, long enqueuedAt,
+                                   CompletableFuture<Long> result) {
+    }
+}
@@ -2,49 +2,64 @@ package org.example.digitalwallet.service;
 
 import lombok.AllArgsConstructor;
 import org.example.digitalwallet.dto.DepositRequest;
+import org.example.digitalwallet.dto.TransferRequest;
+import org.example.digitalwallet.dto.WalletBalanceResponse;
 import org.example.digitalwallet.dto.WalletRequest;
 import org.example.digitalwallet.dto.WalletResponse;
 import org.example.digitalwallet.exception.UserNotAuthenticatedException;
 import org.example.digitalwallet.exception.WalletNotFoundException;
-import org.example.digitalwallet.model.User;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
 import org.example.digitalwallet.model.Wallet;
 import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
 import org.example.digitalwallet.repository.WalletRepository;
+import org.example.digitalwallet.repository.WalletStripeRepository;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 @AllArgsConstructor
 @Service
 public class WalletService {
 
+    private static final int MAX_STRIPES = 64;
 
     private final WalletRepository walletRepository;
-    private final UserService userService;
+    private final WalletStripeRepository walletStripeRepository;
     private final EmailService emailService;
+    private final LedgerEngine ledgerEngine;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final DepositCombiner depositCombiner;
+    private final TransactionTemplate transactionTemplate;
 
     @Transactional
     public void createWallet(WalletRequest request) {
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-        if(authentication == null) {
-            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
-        }
+        AuthenticatedUser user = currentUser();
 
         WalletCurrency currency = request.currency() != null
                 ? request.currency()
                 : WalletCurrency.EUR;
 
-
-        User user = userService.getUserByUsername(authentication.getName());
-
         Wallet wallet = Wallet.builder()
-                .userId(user.getId())
+                .userId(user.id())
                 .currency(currency)
                 .balance(request.balance())
                 .createdAt(LocalDateTime.now())
@@ -52,37 +67,56 @@ public class WalletService {
 
         walletRepository.createWallet(wallet);
 
-        if (user.getEmail() != null) {
+        if (user.email() != null) {
             emailService.sendWalletCreationEmail(
-                    user.getEmail(),
-                    authentication.getName(),
+                    user.email(),
+                    user.username(),
                     currency.name(),
                     wallet.getBalance().toString()
             );
         }
     }
 
-    @Transactional
+    // Not @Transactional: a combined deposit waits for its batch, which writes the balance, ledger and email
+    // in a transaction of its own, and holding a pooled connection meanwhile would starve the batch
     public void depositToWallet(DepositRequest request) {
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        AuthenticatedUser user = currentUser();
 
-        if(authentication == null) {
-            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
+        if (!ledgerEngine.isEnabled() && depositCombiner.isEnabled()) {
+            Wallet wallet = walletRepository.getWalletByUserId(user.id());
+            if (wallet == null) {
+                throw new WalletNotFoundException("Wallet wasn't found!");
+            }
+            depositCombiner.deposit(wallet.getId(), user, request.depositAmount());
+            return;
         }
 
-        User user = userService.getUserByUsername(authentication.getName());
-
-        Wallet wallet = walletRepository.getWalletByUserId(user.getId());
-
-        walletRepository.addFunds(request.depositAmount(), wallet.getId(), user.getId());
+        transactionTemplate.executeWithoutResult(status -> deposit(user, request));
+    }
 
-        BigDecimal newBalance = wallet.getBalance().add(request.depositAmount());
+    private void deposit(AuthenticatedUser user, DepositRequest request) {
+        Wallet wallet;
+        BigDecimal newBalance;
+        if (ledgerEngine.isEnabled()) {
+            wallet = walletRepository.getWalletByUserId(user.id());
+            if (wallet == null) {
+                throw new WalletNotFoundException("Wallet wasn't found!");
+            }
+            newBalance = ledgerEngine.deposit(wallet.getId(), request.depositAmount());
+        } else {
+            // The balance comes back from the UPDATE itself, so the email never shows a stale cached figure
+            wallet = walletRepository.depositByUserId(user.id(), request.depositAmount());
+            if (wallet == null) {
+                throw new WalletNotFoundException("Wallet wasn't found!");
+            }
+            newBalance = wallet.getBalance();
+        }
 
-        if(user.getEmail() != null) {
+        if(user.email() != null) {
         emailService.sendEmailOnDeposit(
-                user.getEmail(),
-                user.getUsername(),
+                user.email(),
+                user.username(),
                 wallet.getCurrency().name(),
                 request.depositAmount().toString(),
                 newBalance.toString()
@@ -93,13 +127,72 @@ public class WalletService {
 
 
     public WalletResponse getWalletById(Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Wallet foundWallet = getOwnedWallet(id);
 
-        if (authentication == null) {
-            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
+        // The in-memory ledger can be ahead of what has been written back to Postgres
+        BigDecimal residentBalance = ledgerEngine.residentBalance(foundWallet.getId());
+
+        return new WalletResponse(
+                foundWallet.getId(),
+                foundWallet.getUserId(),
+                foundWallet.getCurrency(),
+                residentBalance != null ? residentBalance : foundWallet.getBalance(),
+                foundWallet.getCreatedAt()
+        );
+    }
+
+    // Replayed from the ledger rather than the transfer table, so deposits and withdrawals are counted too.
+    // With the in-memory engine enabled, the last moments before now may not have been written back yet
+    public WalletBalanceResponse getBalanceAt(Long id, LocalDateTime asOf) {
+        if (asOf.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("asOf must not be in the future");
+        }
+
+        Wallet wallet = getOwnedWallet(id);
+
+        // Timestamps are read in the server's zone, as the transfer history filters are
+        BigDecimal balance = ledgerEntryRepository.findBalanceAt(wallet.getId(), asOf.atZone(ZoneId.systemDefault()).toInstant());
+
+        return new WalletBalanceResponse(wallet.getId(), wallet.getCurrency(), balance, asOf);
+    }
+
+    // Spreads the wallet's future credits over several rows so concurrent payers don't queue on one lock.
+    // The price is event order: a striped wallet's events are no longer delivered in order, see WalletEventRepository
+    @Transactional
+    public void stripeWallet(Long id, int stripes) {
+        requireDatabaseEngine();
+
+        if (stripes < 2 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripe count must be between 2 and " + MAX_STRIPES);
+        }
+
+        Wallet wallet = getOwnedWallet(id);
+
+        if (!walletStripeRepository.promote(wallet.getId(), stripes)) {
+            throw new IllegalStateException("Wallet is already striped");
+        }
+    }
+
+    @Transactional
+    public void unstripeWallet(Long id) {
+        requireDatabaseEngine();
+
+        Wallet wallet = getOwnedWallet(id);
+
+        if (!walletStripeRepository.demote(wallet.getId())) {
+            throw new IllegalStateException("Wallet is not striped");
+        }
+    }
+
+    // These paths write balances straight to Postgres, which would go behind the in-memory ledger's back
+    private void requireDatabaseEngine() {
+        if (ledgerEngine.isEnabled()) {
+            throw new IllegalStateException("Not available while the in-memory ledger engine is enabled");
         }
+    }
 
-        User user = userService.getUserByUsername(authentication.getName());
+    private Wallet getOwnedWallet(Long id) {
+        AuthenticatedUser user = currentUser();
 
         Wallet foundWallet = walletRepository.findById(id);
 
@@ -107,42 +200,126 @@ public class WalletService {
             throw new WalletNotFoundException("Wallet wasn't found!");
         }
 
-        if (!foundWallet.getUserId().equals(user.getId())) {
+        if (!foundWallet.getUserId().equals(user.id())) {
             throw new SecurityException("You don't have access to this wallet");
         }
 
-        return new WalletResponse(
-                foundWallet.getId(),
-                foundWallet.getUserId(),
-                foundWallet.getCurrency(),
-                foundWallet.getBalance(),
-                foundWallet.getCreatedAt()
-        );
+        return foundWallet;
     }
 
-    public boolean executeTransfer(Long fromWalletId, Long toWalletId, BigDecimal amount, WalletCurrency currency, String callerUsername) {
-        User caller = userService.getUserByUsername(callerUsername);
+    // The caller as described by their token, so no request has to load the user row
+    private AuthenticatedUser currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new UserNotAuthenticatedException("User was not authenticated! Try logging in");
+        }
+
+        return user;
+    }
 
-        Wallet fromWallet = walletRepository.findById(fromWalletId);
-        Wallet toWallet = walletRepository.findById(toWalletId);
+    @Transactional
+    public Long executeAuthorizedTransfer(Transfer transfer, String callerUsername) {
+        return completedTransferId(walletRepository.executeAuthorizedTransfer(transfer, callerUsername));
+    }
 
+    public Long completedTransferId(TransferResult result) {
+        return switch (result.outcome()) {
+            case COMPLETED -> result.transferId();
+            case WALLET_NOT_FOUND -> throw new WalletNotFoundException("One of the wallets wasn't found or doesn't exist");
+            case NOT_OWNER -> throw new SecurityException("You don't have permission to transfer from this wallet");
+            case SOURCE_CURRENCY_MISMATCH -> throw new IllegalArgumentException("Currency mismatch: source wallet currency does not match transfer currency");
+            case RECIPIENT_CURRENCY_MISMATCH -> throw new IllegalArgumentException("Currency mismatch: recipient wallet currency does not match transfer currency");
+            case INSUFFICIENT_FUNDS -> throw new IllegalArgumentException("Insufficient funds: wallet balance is less than transfer amount");
+            // Rolls the transaction back; the transfer's @Retryable picks it up again
+            case STRIPING_CHANGED -> throw new CannotAcquireLockException("Recipient wallet changed striping mode mid-transfer");
+        };
+    }
+
+    // Turns away a transfer that can't succeed before it is queued, using the cached wallet rows.
+    // The balance isn't checked here, since it can change before the transfer is applied under the row locks
+    public void validateTransfer(TransferRequest transfer, AuthenticatedUser caller) {
+        requireDatabaseEngine();
+
+        Wallet fromWallet = walletRepository.findById(transfer.fromWallet());
+        Wallet toWallet = walletRepository.findById(transfer.toWallet());
+
+        TransferOutcome outcome;
         if (fromWallet == null || toWallet == null) {
-            throw new WalletNotFoundException("One of the wallets wasn't found or doesn't exist");
+            outcome = TransferOutcome.WALLET_NOT_FOUND;
+        } else if (!fromWallet.getUserId().equals(caller.id())) {
+            outcome = TransferOutcome.NOT_OWNER;
+        } else if (fromWallet.getCurrency() != transfer.currency()) {
+            outcome = TransferOutcome.SOURCE_CURRENCY_MISMATCH;
+        } else if (toWallet.getCurrency() != transfer.currency()) {
+            outcome = TransferOutcome.RECIPIENT_CURRENCY_MISMATCH;
+        } else {
+            return;
         }
 
-        if (!fromWallet.getUserId().equals(caller.getId())) {
-            throw new SecurityException("You don't have permission to transfer from this wallet");
+        completedTransferId(new TransferResult(outcome, null));
+    }
+
+    // Returns one entry per transfer: null when it was applied, otherwise the reason it was rejected
+    public List<String> executeTransferBatch(List<TransferRequest> transfers, AuthenticatedUser caller) {
+        requireDatabaseEngine();
+
+        Set<Long> walletIds = new TreeSet<>();
+        for (TransferRequest transfer : transfers) {
+            walletIds.add(transfer.fromWallet());
+            walletIds.add(transfer.toWallet());
         }
 
-        if (!fromWallet.getCurrency().equals(currency)) {
-            throw new IllegalArgumentException("Currency mismatch: source wallet currency does not match transfer currency");
+        Map<Long, Wallet> wallets = new HashMap<>();
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (Wallet wallet : walletRepository.findAllByIdsForUpdate(walletIds)) {
+            wallets.put(wallet.getId(), wallet);
+            balances.put(wallet.getId(), wallet.getBalance());
         }
-        if (!toWallet.getCurrency().equals(currency)) {
-            throw new IllegalArgumentException("Currency mismatch: recipient wallet currency does not match transfer currency");
+
+        Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>(transfers.size());
+
+        for (TransferRequest transfer : transfers) {
+            String failure = validateBatchTransfer(transfer, wallets, balances, caller);
+            failures.add(failure);
+
+            if (failure == null) {
+                BigDecimal amount = transfer.transferAmount();
+                balances.merge(transfer.fromWallet(), amount.negate(), BigDecimal::add);
+                balances.merge(transfer.toWallet(), amount, BigDecimal::add);
+                deltas.merge(transfer.fromWallet(), amount.negate(), BigDecimal::add);
+                deltas.merge(transfer.toWallet(), amount, BigDecimal::add);
+            }
         }
 
-        return walletRepository.executeTransfer(fromWalletId, toWalletId, amount);
+        deltas.values().removeIf(delta -> delta.signum() == 0);
+        walletRepository.applyBalanceDeltas(deltas);
+
+        return failures;
     }
 
+    private String validateBatchTransfer(TransferRequest transfer, Map<Long, Wallet> wallets,
+                                         Map<Long, BigDecimal> balances, AuthenticatedUser caller) {
+        Wallet fromWallet = wallets.get(transfer.fromWallet());
+        Wallet toWallet = wallets.get(transfer.toWallet());
+
+        if (fromWallet == null || toWallet == null) {
+            return "One of the wallets wasn't found or doesn't exist";
+        }
+        if (!fromWallet.getUserId().equals(caller.id())) {
+            return "You don't have permission to transfer from this wallet";
+        }
+        if (!fromWallet.getCurrency().equals(transfer.currency())) {
+            return "Currency mismatch: source wallet currency does not match transfer currency";
+        }
+        if (!toWallet.getCurrency().equals(transfer.currency())) {
+            return "Currency mismatch: recipient wallet currency does not match transfer currency";
+        }
+        if (balances.get(fromWallet.getId()).compareTo(transfer.transferAmount()) < 0) {
+            return "Insufficient funds: wallet balance is less than transfer amount";
+        }
+        return null;
+    }
 
 }
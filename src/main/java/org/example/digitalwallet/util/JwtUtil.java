@@ -1,75 +1,143 @@
 package org.example.digitalwallet.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.example.digitalwallet.model.Roles;
+import org.example.digitalwallet.model.User;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt_secret}")
-    private String SECRET;
+    static final String USER_ID_CLAIM = "uid";
+    static final String EMAIL_CLAIM = "email";
+    static final String ROLE_CLAIM = "role";
+    static final String TIER_CLAIM = "tier";
+    static final String VERSION_CLAIM = "ver";
 
-    public String generateToken(String userName) {
-        Map<String, Object> claims = new HashMap<>();
-        return createToken(claims , userName);
-    }
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    public static final long TOKEN_LIFETIME_MILLIS = 1000L * 60 * 60 * 10;
+
+    private final SecretKey signKey;
+    private final JwtParser parser;
+
+    // Token hash -> claims that already passed signature verification. Lookups don't contend on a lock,
+    // and each entry goes away when its token expires
+    private final Cache<String, Claims> verifiedClaims;
+
+    public JwtUtil(@Value("${jwt_secret}") String secret,
+                   @Value("${wallet.jwt.claims-cache-size:10000}") int claimsCacheSize) {
+        this.signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parser().verifyWith(signKey).build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(Expiry.creating((String tokenHash, Claims claims) -> timeLeft(claims)))
+                .build();
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    // Carries everything a request needs to know about its caller, so authenticating it needs no user lookup
+    public String generateToken(User user, long tokenVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, user.getId());
+        claims.put(ROLE_CLAIM, user.getRole().name());
+        claims.put(TIER_CLAIM, user.getMembershipStatus().name());
+        claims.put(VERSION_CLAIM, tokenVersion);
+        if (user.getEmail() != null) {
+            claims.put(EMAIL_CLAIM, user.getEmail());
+        }
+        return createToken(claims , user.getUsername());
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+    // Verifies the token once and returns its claims, or null when it is malformed, forged or expired.
+    // Repeat calls with the same token are answered from the cache until the token expires.
+    public Claims verify(String token) {
+        String tokenHash = hash(token);
+
+        Claims claims = verifiedClaims.getIfPresent(tokenHash);
+        if (claims != null) {
+            return claims;
+        }
+
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;
+        }
+        if (isExpired(claims)) {
+            return null;
+        }
+
+        verifiedClaims.put(tokenHash, claims);
+        return claims;
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    // Null for tokens issued before identity claims were added; their holders have to log in again
+    public AuthenticatedUser toPrincipal(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        String tier = claims.get(TIER_CLAIM, String.class);
+
+        if (userId == null || role == null || tier == null || claims.getSubject() == null) {
+            return null;
+        }
+        return new AuthenticatedUser(userId, claims.getSubject(), claims.get(EMAIL_CLAIM, String.class),
+                Roles.valueOf(role), MembershipStatus.valueOf(tier));
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public long tokenVersion(Claims claims) {
+        Long version = claims.get(VERSION_CLAIM, Long.class);
+        return version != null ? version : 0L;
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSignKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration() == null || claims.getExpiration().before(new Date());
     }
 
+    private static Duration timeLeft(Claims claims) {
+        Duration left = Duration.between(Instant.now(), claims.getExpiration().toInstant());
+        return left.isNegative() ? Duration.ZERO : left;
+    }
 
     private String createToken(Map<String, Object> claims , String userName) {
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(userName)
                 .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10))
-                .signWith(getSignKey())
+                .expiration(new Date(System.currentTimeMillis() + TOKEN_LIFETIME_MILLIS))
+                .signWith(signKey)
                 .compact();
     }
 
-    private SecretKey getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // The cache is keyed by digest so it never holds usable bearer tokens
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
     }
 
 }
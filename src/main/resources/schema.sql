@@ -11,14 +11,136 @@ CREATE TABLE IF NOT EXISTS wallet(
     user_id BIGINT REFERENCES users(id) NOT NULL,
     currency VARCHAR(3) NOT NULL,
     balance NUMERIC(18, 2) NOT NULL,
-    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    stripe_count INT NOT NULL DEFAULT 0,
+    -- Bumped by every write to the row, so cached copies can tell which of two states is newer
+    version BIGINT NOT NULL DEFAULT 0
 );
 
+-- Columns added after the first release, for databases whose wallet table already existed
+ALTER TABLE wallet ADD COLUMN IF NOT EXISTS stripe_count INT NOT NULL DEFAULT 0;
+ALTER TABLE wallet ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- One partition per month, created ahead of time by TransferPartitionMaintenance
 CREATE TABLE IF NOT EXISTS transfer(
-    id SERIAL PRIMARY KEY,
+    id SERIAL,
     from_wallet BIGINT REFERENCES wallet(id) NOT NULL,
     to_wallet   BIGINT REFERENCES wallet(id) NOT NULL,
     currency VARCHAR(3) NOT NULL,
     transfer_amount NUMERIC(18, 2) NOT NULL,
-    transfer_date TIMESTAMP WITH TIME ZONE
-);
\ No newline at end of file
+    transfer_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, transfer_date)
+) PARTITION BY RANGE (transfer_date);
+
+CREATE INDEX IF NOT EXISTS idx_transfer_from_wallet_date ON transfer(from_wallet, transfer_date, id);
+CREATE INDEX IF NOT EXISTS idx_transfer_to_wallet_date ON transfer(to_wallet, transfer_date, id);
+
+CREATE TABLE IF NOT EXISTS wallet_stripe(
+    wallet_id BIGINT REFERENCES wallet(id) NOT NULL,
+    stripe INT NOT NULL,
+    balance NUMERIC(18, 2) NOT NULL,
+    PRIMARY KEY (wallet_id, stripe)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_checkpoint(
+    partition_id INT PRIMARY KEY,
+    flushed_seq BIGINT NOT NULL
+);
+
+-- Emails queued in the transaction of the change they report, then sent and deleted by EmailOutboxDispatcher
+CREATE TABLE IF NOT EXISTS email_outbox(
+    id BIGSERIAL PRIMARY KEY,
+    kind VARCHAR(20) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    amount NUMERIC(18, 2),
+    balance NUMERIC(18, 2) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING'
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_email_outbox_recipient ON email_outbox(recipient) WHERE status = 'PENDING';
+
+-- Transfers accepted with 202 and applied later by TransferQueueWorker. A row is applied in the same transaction
+-- that marks it finished, so a worker that dies mid-transfer leaves it pending instead of applying it twice
+CREATE TABLE IF NOT EXISTS transfer_queue(
+    id BIGSERIAL PRIMARY KEY,
+    handle UUID NOT NULL UNIQUE,
+    user_id BIGINT NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    from_wallet BIGINT NOT NULL,
+    to_wallet BIGINT NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    transfer_id BIGINT,
+    failure_reason VARCHAR(255),
+    attempts INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS idx_transfer_queue_due ON transfer_queue(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_transfer_queue_completed ON transfer_queue(completed_at) WHERE status <> 'PENDING';
+
+-- Outbox of committed balance changes, drained in per-wallet order by WalletEventDispatcher.
+-- No foreign keys, so appending stays cheap and delivered rows can be deleted freely
+CREATE TABLE IF NOT EXISTS wallet_event(
+    id BIGSERIAL PRIMARY KEY,
+    wallet_id BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    counterparty_wallet BIGINT,
+    transfer_id BIGINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- One row per dispatcher shard, locked by the node currently reading that shard
+CREATE TABLE IF NOT EXISTS wallet_event_shard(
+    shard INT PRIMARY KEY
+);
+
+-- Append-only double-entry ledger, see LedgerEntryRepository. A NULL wallet_id is the external account.
+-- created_at is the time of the insert rather than of the transaction, which keeps snapshots settled, see LedgerSnapshotService
+CREATE TABLE IF NOT EXISTS ledger_entry(
+    id BIGSERIAL PRIMARY KEY,
+    wallet_id BIGINT,
+    entry_type VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    counterparty_wallet BIGINT,
+    transfer_id BIGINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT clock_timestamp()
+);
+
+CREATE INDEX IF NOT EXISTS idx_ledger_entry_wallet_created ON ledger_entry(wallet_id, created_at) WHERE wallet_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_ledger_entry_created ON ledger_entry(created_at);
+
+-- A wallet's balance over every entry up to as_of
+CREATE TABLE IF NOT EXISTS ledger_snapshot(
+    wallet_id BIGINT NOT NULL,
+    as_of TIMESTAMP WITH TIME ZONE NOT NULL,
+    balance NUMERIC(18, 2) NOT NULL,
+    PRIMARY KEY (wallet_id, as_of)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_snapshot_run(
+    id INT PRIMARY KEY,
+    snapshotted_to TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+INSERT INTO ledger_snapshot_run (id, snapshotted_to) VALUES (1, TIMESTAMP WITH TIME ZONE 'epoch') ON CONFLICT (id) DO NOTHING;
+
+-- Opening entries for wallets created before the ledger existed, each balanced against the external account
+INSERT INTO ledger_entry (wallet_id, entry_type, amount, counterparty_wallet, created_at)
+SELECT CASE WHEN side.sign = 1 THEN w.id END,
+       'OPENING',
+       side.sign * (w.balance + COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.wallet_id = w.id), 0)),
+       CASE WHEN side.sign = -1 THEN w.id END,
+       w.created_at
+FROM wallet w CROSS JOIN (VALUES (1), (-1)) AS side(sign)
+WHERE NOT EXISTS (SELECT 1 FROM ledger_entry e WHERE e.wallet_id = w.id);
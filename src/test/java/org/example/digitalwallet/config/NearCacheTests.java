@@ -0,0 +1,324 @@
+package org.example.digitalwallet.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NearCacheTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private ConcurrentMapCacheManager remote;
+    private SimpleMeterRegistry meterRegistry;
+    private NearCacheManager cacheManager;
+
+    private final Wallet wallet = Wallet.builder().id(1L).userId(7L).build();
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager("wallets");
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new NearCacheManager(remote, redisTemplate, meterRegistry, 100, 60_000, 30_000);
+    }
+
+    // ========== Lookup Tests ==========
+
+    @Test
+    void get_RemoteHit_ServesNextLookupLocally() {
+        remote.getCache("wallets").put(1L, wallet);
+        Cache cache = cacheManager.getCache("wallets");
+
+        assertSame(wallet, cache.get(1L).get());
+        remote.getCache("wallets").evict(1L);
+
+        assertSame(wallet, cache.get(1L).get());
+        assertEquals(1, lookups("l1", "hit"));
+        assertEquals(1, lookups("l1", "miss"));
+        assertEquals(1, lookups("l2", "hit"));
+        assertEquals(0.5, meterRegistry.get("wallet.cache.hit.ratio").tag("level", "l1").gauge().value());
+    }
+
+    @Test
+    void get_MissingEverywhere_ReturnsNull() {
+        Cache cache = cacheManager.getCache("wallets");
+
+        assertNull(cache.get(1L));
+        assertEquals(1, lookups("l2", "miss"));
+    }
+
+    // ========== Invalidation Tests ==========
+
+    @Test
+    void evict_RemovesBothLevelsAndPublishes() {
+        Cache cache = cacheManager.getCache("wallets");
+        cache.put(1L, wallet);
+
+        cache.evict(1L);
+
+        assertNull(remote.getCache("wallets").get(1L));
+        assertNull(cache.get(1L));
+        verify(redisTemplate).convertAndSend(NearCache.INVALIDATION_CHANNEL, "wallets:1");
+    }
+
+    @Test
+    void onMessage_FromOtherNode_DropsOnlyLocalCopy() {
+        Cache cache = cacheManager.getCache("wallets");
+        cache.put(1L, wallet);
+
+        cacheManager.onMessage(new DefaultMessage(
+                NearCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "wallets:1".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertSame(wallet, cache.get(1L).get());
+        assertEquals(0, lookups("l1", "hit"));
+        assertEquals(1, lookups("l2", "hit"));
+        verifyNoInteractions(redisTemplate);
+    }
+
+    // ========== Versioned Write Tests ==========
+
+    @Test
+    void put_Versioned_PublishesVersionAndKeepsNewerLocalCopy() {
+        remote.getCache("wallets").put(1L, versioned(5L));
+        Cache cache = cacheManager.getCache("wallets");
+        cache.get(1L);
+
+        cache.put(1L, versioned(4L));
+
+        assertEquals(5L, ((Wallet) cache.get(1L).get()).getVersion());
+        assertEquals(1, lookups("l1", "hit"));
+        verify(redisTemplate).convertAndSend(NearCache.INVALIDATION_CHANNEL, "wallets:1:4");
+    }
+
+    @Test
+    void onMessage_VersionedWrite_DropsOnlyOlderLocalCopies() {
+        remote.getCache("wallets").put(1L, versioned(3L));
+        Cache cache = cacheManager.getCache("wallets");
+        cache.get(1L);
+
+        cacheManager.onMessage(message("wallets:1:3"), null);
+        cache.get(1L);
+        assertEquals(1, lookups("l1", "hit"));
+
+        cacheManager.onMessage(message("wallets:1:4"), null);
+        cache.get(1L);
+        assertEquals(1, lookups("l1", "hit"));
+        assertEquals(2, lookups("l2", "hit"));
+    }
+
+    @Test
+    void localCache_OlderVersion_DoesNotReplaceNewer() {
+        LocalCache local = new LocalCache(10, 60_000);
+        Wallet newer = versioned(2L);
+        local.put("1", newer, 2L);
+
+        local.put("1", versioned(1L), 1L);
+        local.putIfUnchanged("1", versioned(1L), 1L, local.generation());
+
+        assertSame(newer, local.get("1"));
+    }
+
+    // ========== Loading Tests ==========
+
+    @Test
+    void get_ConcurrentMisses_RunOneLoad() throws Exception {
+        Cache cache = cacheManager.getCache("wallets");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Callable<Wallet> loader = () -> {
+            calls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return wallet;
+        };
+
+        List<Future<Wallet>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> cache.get(1L, loader)));
+            }
+            while (loads("coalesced") < 3) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<Wallet> result : results) {
+                assertSame(wallet, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, calls.get());
+        assertSame(wallet, remote.getCache("wallets").get(1L).get());
+    }
+
+    @Test
+    void get_LoaderFails_NextCallLoadsAgain() {
+        Cache cache = cacheManager.getCache("wallets");
+
+        assertThrows(Cache.ValueRetrievalException.class, () -> cache.get(1L, () -> {
+            throw new IllegalStateException("down");
+        }));
+
+        assertSame(wallet, cache.get(1L, () -> wallet));
+    }
+
+    @Test
+    void get_NearExpiry_RefreshesEarly() {
+        TimedCache timed = new TimedCache(1_000);
+        timed.put(1L, versioned(1L));
+        NearCache cache = new NearCache(timed, new LocalCache(10, 60_000), redisTemplate, meterRegistry, 30_000, () -> 0.5);
+
+        Wallet loaded = cache.get(1L, () -> versioned(2L));
+
+        assertEquals(2L, loaded.getVersion());
+        assertEquals(2L, ((Wallet) timed.get(1L).get()).getVersion());
+        assertEquals(1, loads("early-refresh"));
+    }
+
+    @Test
+    void get_FarFromExpiry_ServesCachedCopy() {
+        TimedCache timed = new TimedCache(600_000);
+        timed.put(1L, versioned(1L));
+        NearCache cache = new NearCache(timed, new LocalCache(10, 60_000), redisTemplate, meterRegistry, 30_000, () -> 0.5);
+
+        Wallet loaded = cache.get(1L, () -> fail("should not load"));
+
+        assertEquals(1L, loaded.getVersion());
+        assertEquals(0, loads("early-refresh"));
+    }
+
+    @Test
+    void get_EarlyRefreshFails_ServesCachedCopy() {
+        TimedCache timed = new TimedCache(1_000);
+        timed.put(1L, versioned(1L));
+        NearCache cache = new NearCache(timed, new LocalCache(10, 60_000), redisTemplate, meterRegistry, 30_000, () -> 0.5);
+
+        Wallet loaded = cache.get(1L, () -> {
+            throw new IllegalStateException("down");
+        });
+
+        assertEquals(1L, loaded.getVersion());
+    }
+
+    // ========== Local Cache Tests ==========
+
+    @Test
+    void localCache_ExpiresEntriesAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        LocalCache local = new LocalCache(10, 1_000, now::get);
+        local.put("1", wallet);
+
+        now.addAndGet(999_000_000L);
+        assertSame(wallet, local.get("1"));
+
+        now.addAndGet(1_000_000L);
+        assertNull(local.get("1"));
+    }
+
+    @Test
+    void localCache_EvictsBeyondBound() {
+        LocalCache local = new LocalCache(2, 60_000);
+        local.put("1", "a");
+        local.put("2", "b");
+
+        local.put("3", "c");
+
+        assertEquals(2, local.size());
+    }
+
+    @Test
+    void localCache_ValueReadBeforeInvalidation_IsNotStored() {
+        LocalCache local = new LocalCache(10, 60_000);
+        long generation = local.generation();
+
+        local.remove("1");
+        local.putIfUnchanged("1", wallet, generation);
+
+        assertNull(local.get("1"));
+    }
+
+    @Test
+    void localCache_InvalidationOfOtherKey_DoesNotBlockStore() {
+        LocalCache local = new LocalCache(10, 60_000);
+        long generation = local.generation();
+
+        local.remove("2");
+        local.removeIfOlder("3", 5);
+        local.putIfUnchanged("1", wallet, generation);
+
+        assertSame(wallet, local.get("1"));
+    }
+
+    @Test
+    void localCache_DroppedTombstone_StillBlocksStore() {
+        LocalCache local = new LocalCache(2, 60_000);
+        long generation = local.generation();
+
+        local.remove("1");
+        local.remove("2");
+        local.remove("3");
+        local.putIfUnchanged("1", wallet, generation);
+
+        assertNull(local.get("1"));
+    }
+
+    private static Wallet versioned(Long version) {
+        return Wallet.builder().id(1L).userId(7L).version(version).build();
+    }
+
+    private static DefaultMessage message(String payload) {
+        return new DefaultMessage(
+                NearCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double loads(String kind) {
+        return meterRegistry.get("wallet.cache.loads").tag("kind", kind).counter().count();
+    }
+
+    private double lookups(String level, String result) {
+        return meterRegistry.get("wallet.cache.lookups").tag("level", level).tag("result", result).counter().count();
+    }
+
+    // Remote cache whose entries all report the same time to live
+    private static final class TimedCache extends ConcurrentMapCache implements ExpiringCache {
+
+        private final long ttlMillis;
+
+        TimedCache(long ttlMillis) {
+            super("wallets");
+            this.ttlMillis = ttlMillis;
+        }
+
+        @Override
+        public TimedValue getTimed(Object key) {
+            ValueWrapper wrapper = get(key);
+            return wrapper != null ? new TimedValue(wrapper.get(), ttlMillis) : null;
+        }
+    }
+}
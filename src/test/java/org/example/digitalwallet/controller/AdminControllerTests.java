@@ -0,0 +1,62 @@
+package org.example.digitalwallet.controller;
+
+import org.example.digitalwallet.service.CustomUserDetailService;
+import org.example.digitalwallet.service.RateLimitService;
+import org.example.digitalwallet.service.TokenRevocationService;
+import org.example.digitalwallet.service.TokenVersionService;
+import org.example.digitalwallet.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AdminController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class AdminControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+
+    @MockitoBean
+    private RateLimitService rateLimitService;
+
+    @MockitoBean
+    private TokenVersionService tokenVersionService;
+
+    @MockitoBean
+    private JwtUtil jwtUtil;
+
+    @MockitoBean
+    private CustomUserDetailService customUserDetailService;
+
+    // ========== Revocation Tests ==========
+
+    @Test
+    void testRevokeToken_RecordsTokenId() throws Exception {
+        mockMvc.perform(post("/api/v1/admin/tokens/3f2a-jti/revoke")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Token revoked"));
+
+        verify(tokenRevocationService).revoke("3f2a-jti");
+    }
+
+    @Test
+    void testRevokeUserTokens_RevokesEverySession() throws Exception {
+        mockMvc.perform(post("/api/v1/admin/users/42/tokens/revoke")
+                .with(csrf()))
+                .andExpect(status().isOk());
+
+        verify(tokenRevocationService).revokeAllFor(42L);
+    }
+}
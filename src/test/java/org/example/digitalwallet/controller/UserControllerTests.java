@@ -4,8 +4,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.example.digitalwallet.dto.LoginRequest;
 import org.example.digitalwallet.dto.UserRequest;
 import org.example.digitalwallet.exception.UserAlreadyExistsException;
+import org.example.digitalwallet.exception.UserNotAuthenticatedException;
 import org.example.digitalwallet.model.MembershipStatus;
 import org.example.digitalwallet.service.CustomUserDetailService;
+import org.example.digitalwallet.service.RateLimitService;
+import org.example.digitalwallet.service.TokenRevocationService;
+import org.example.digitalwallet.service.TokenVersionService;
 import org.example.digitalwallet.service.UserService;
 import org.example.digitalwallet.util.JwtUtil;
 import org.junit.jupiter.api.Test;
@@ -41,6 +45,15 @@ public class UserControllerTests {
     @MockitoBean
     private CustomUserDetailService customUserDetailService;
 
+    @MockitoBean
+    private TokenVersionService tokenVersionService;
+
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+
+    @MockitoBean
+    private RateLimitService rateLimitService;
+
     // ========== Register Tests ==========
 
     @Test
@@ -226,4 +239,27 @@ public class UserControllerTests {
 
         verify(userService, never()).login(any(LoginRequest.class));
     }
+
+    // ========== Logout Tests ==========
+
+    @Test
+    void testLogout_RevokesPresentedToken() throws Exception {
+        mockMvc.perform(post("/api/v1/auth/logout")
+                .with(csrf())
+                .header("Authorization", "Bearer jwt.token.here"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Logged out"));
+
+        verify(tokenRevocationService).logout("Bearer jwt.token.here");
+    }
+
+    @Test
+    void testLogout_InvalidToken_ReturnsUnauthorized() throws Exception {
+        doThrow(new UserNotAuthenticatedException("User was not authenticated! Try logging in"))
+                .when(tokenRevocationService).logout(null);
+
+        mockMvc.perform(post("/api/v1/auth/logout")
+                .with(csrf()))
+                .andExpect(status().isUnauthorized());
+    }
 }
@@ -1,10 +1,17 @@
 package org.example.digitalwallet.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.digitalwallet.dto.CursorPagedResponse;
 import org.example.digitalwallet.dto.DepositRequest;
+import org.example.digitalwallet.dto.WalletBalanceResponse;
 import org.example.digitalwallet.dto.WalletRequest;
 import org.example.digitalwallet.model.WalletCurrency;
 import org.example.digitalwallet.service.CustomUserDetailService;
+import org.example.digitalwallet.service.IdempotencyService;
+import org.example.digitalwallet.service.RateLimitService;
+import org.example.digitalwallet.service.TokenRevocationService;
+import org.example.digitalwallet.service.TokenVersionService;
+import org.example.digitalwallet.service.TransferService;
 import org.example.digitalwallet.service.WalletService;
 import org.example.digitalwallet.util.JwtUtil;
 import org.junit.jupiter.api.Test;
@@ -17,10 +24,14 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,12 +48,27 @@ public class WalletControllerTests {
     @MockitoBean
     private WalletService walletService;
 
+    @MockitoBean
+    private TransferService transferService;
+
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
     @MockitoBean
     private JwtUtil jwtUtil;
 
     @MockitoBean
     private CustomUserDetailService customUserDetailService;
 
+    @MockitoBean
+    private TokenVersionService tokenVersionService;
+
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+
+    @MockitoBean
+    private RateLimitService rateLimitService;
+
     // ========== Create Wallet Tests ==========
 
     @Test
@@ -123,6 +149,27 @@ public class WalletControllerTests {
         verify(walletService, times(1)).depositToWallet(any(DepositRequest.class));
     }
 
+    @Test
+    @WithMockUser
+    void testDepositToWallet_WithIdempotencyKey_ReturnsStoredResponse() throws Exception {
+        // Arrange
+        DepositRequest request = new DepositRequest(BigDecimal.valueOf(50.00));
+
+        when(idempotencyService.execute(eq("deposit"), eq("retry-1"), eq(request), eq(String.class), any()))
+                .thenReturn("Deposit of 50.0 was successful ");
+
+        // Act & Assert
+        mockMvc.perform(put("/api/v1/wallet/deposit")
+                .with(csrf())
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Deposit of 50.0 was successful "));
+
+        verify(walletService, never()).depositToWallet(any(DepositRequest.class));
+    }
+
     @Test
     @WithMockUser
     void testDepositToWallet_LargeAmount() throws Exception {
@@ -173,4 +220,46 @@ public class WalletControllerTests {
 
         verify(walletService, never()).depositToWallet(any(DepositRequest.class));
     }
+
+    // ========== Wallet Transfers Tests ==========
+
+    @Test
+    @WithMockUser
+    void testGetWalletTransfers_PassesDateRangeAndCursor() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        when(transferService.getWalletTransferHistory(5L, "abc", from, null, 20))
+                .thenReturn(new CursorPagedResponse<>(List.of(), "next"));
+
+        mockMvc.perform(get("/api/v1/wallet/5/transfers")
+                .param("cursor", "abc")
+                .param("from", "2025-01-01T00:00:00")
+                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    // ========== Point-in-Time Balance Tests ==========
+
+    @Test
+    @WithMockUser
+    void testGetWalletBalance_PassesAsOf() throws Exception {
+        LocalDateTime asOf = LocalDateTime.of(2025, 6, 1, 9, 30);
+        when(walletService.getBalanceAt(5L, asOf))
+                .thenReturn(new WalletBalanceResponse(5L, WalletCurrency.EUR, new BigDecimal("12.34"), asOf));
+
+        mockMvc.perform(get("/api/v1/wallet/5/balance")
+                .param("asOf", "2025-06-01T09:30:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.walletId").value(5))
+                .andExpect(jsonPath("$.balance").value(12.34));
+    }
+
+    @Test
+    @WithMockUser
+    void testGetWalletBalance_MissingAsOf_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/wallet/5/balance"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(walletService);
+    }
 }
@@ -0,0 +1,114 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.OutboxEmail;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import(EmailOutboxRepository.class)
+@Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+public class EmailOutboxRepositoryTests {
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testLockDue_ReturnsOnlyDueRows() {
+        // Arrange
+        Instant now = Instant.now();
+        enqueueDeposit("due@example.com", now.minusSeconds(1));
+        enqueueDeposit("later@example.com", now.plusSeconds(30));
+
+        // Act
+        List<OutboxEmail> due = emailOutboxRepository.lockDue(now, 10);
+
+        // Assert
+        assertEquals(1, due.size());
+        assertEquals("due@example.com", due.getFirst().recipient());
+        assertEquals(OutboxEmail.Kind.DEPOSIT, due.getFirst().kind());
+        assertEquals(WalletCurrency.EUR, due.getFirst().currency());
+        assertEquals(0, new BigDecimal("10.00").compareTo(due.getFirst().amount()));
+    }
+
+    @Test
+    void testLockPendingDeposits_SkipsRowsThatWereTried() {
+        // Arrange
+        Instant now = Instant.now();
+        enqueueDeposit("user@example.com", now.plusSeconds(30));
+        enqueueDeposit("user@example.com", now.plusSeconds(30));
+        enqueueDeposit("other@example.com", now.plusSeconds(30));
+        Long tried = jdbcTemplate.queryForObject("SELECT MIN(id) FROM email_outbox", Long.class);
+        emailOutboxRepository.lease(List.of(tried), now.plusSeconds(120));
+
+        // Act
+        List<OutboxEmail> pending = emailOutboxRepository.lockPendingDeposits(Set.of("user@example.com"), now);
+
+        // Assert
+        assertEquals(1, pending.size());
+        assertNotEquals(tried, pending.getFirst().id());
+    }
+
+    @Test
+    void testLease_CountsAttemptAndHidesRow() {
+        // Arrange
+        Instant now = Instant.now();
+        enqueueDeposit("user@example.com", now.minusSeconds(1));
+        Long id = emailOutboxRepository.lockDue(now, 10).getFirst().id();
+
+        // Act
+        emailOutboxRepository.lease(List.of(id), now.plusSeconds(120));
+
+        // Assert
+        assertTrue(emailOutboxRepository.lockDue(now, 10).isEmpty());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT attempts FROM email_outbox WHERE id = ?", Integer.class, id));
+    }
+
+    @Test
+    void testMarkDead_RowIsNoLongerClaimed() {
+        // Arrange
+        Instant now = Instant.now();
+        enqueueDeposit("user@example.com", now.minusSeconds(1));
+        Long id = emailOutboxRepository.lockDue(now, 10).getFirst().id();
+
+        // Act
+        emailOutboxRepository.markDead(List.of(id));
+
+        // Assert
+        assertTrue(emailOutboxRepository.lockDue(now, 10).isEmpty());
+        assertEquals("DEAD", jdbcTemplate.queryForObject("SELECT status FROM email_outbox WHERE id = ?", String.class, id));
+    }
+
+    @Test
+    void testDelete_RemovesRows() {
+        // Arrange
+        Instant now = Instant.now();
+        enqueueDeposit("user@example.com", now.minusSeconds(1));
+        Long id = emailOutboxRepository.lockDue(now, 10).getFirst().id();
+
+        // Act
+        emailOutboxRepository.delete(List.of(id));
+
+        // Assert
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM email_outbox", Integer.class));
+    }
+
+    private void enqueueDeposit(String recipient, Instant dueAt) {
+        emailOutboxRepository.enqueue(OutboxEmail.Kind.DEPOSIT, recipient, "user", WalletCurrency.EUR,
+                new BigDecimal("10.00"), new BigDecimal("110.00"), dueAt);
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.WalletEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import(LedgerEntryRepository.class)
+@Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+public class LedgerEntryRepositoryTests {
+
+    private static final Instant EPOCH = Instant.EPOCH;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ========== Entry Tests ==========
+
+    @Test
+    void testAppendAll_EveryPostingNetsToZero() {
+        // Act
+        ledgerEntryRepository.appendAll(List.of(
+                WalletEvent.of(1L, WalletEvent.Kind.OPENING, new BigDecimal("100.00")),
+                WalletEvent.of(1L, WalletEvent.Kind.WITHDRAWAL, new BigDecimal("30.00"))));
+        ledgerEntryRepository.appendAll(TransferEvent.legsOf(9L, 1L, 2L, new BigDecimal("25.00")));
+
+        // Assert
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entry", Integer.class));
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                jdbcTemplate.queryForObject("SELECT SUM(amount) FROM ledger_entry", BigDecimal.class)));
+        assertEquals(0, new BigDecimal("45.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, Instant.now())));
+        assertEquals(0, new BigDecimal("25.00").compareTo(ledgerEntryRepository.findBalanceAt(2L, Instant.now())));
+    }
+
+    // ========== Point-in-Time Balance Tests ==========
+
+    @Test
+    void testFindBalanceAt_NoSnapshot_SumsEntriesUpToThatTime() {
+        // Arrange
+        Instant at = Instant.parse("2026-01-01T12:00:00Z");
+        insertEntry(1L, "100.00", at.minusSeconds(60));
+        insertEntry(1L, "-30.00", at);
+        insertEntry(1L, "50.00", at.plusSeconds(1));
+
+        // Act & Assert
+        assertEquals(0, new BigDecimal("70.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, at)));
+    }
+
+    @Test
+    void testFindBalanceAt_ReplaysFromNearestEarlierSnapshot() {
+        // Arrange
+        Instant first = Instant.parse("2026-01-01T12:00:00Z");
+        Instant second = first.plusSeconds(600);
+        insertEntry(1L, "100.00", first.minusSeconds(60));
+        ledgerEntryRepository.snapshot(EPOCH, first, 1);
+        insertEntry(1L, "20.00", first.plusSeconds(60));
+        insertEntry(1L, "-5.00", first.plusSeconds(400));
+        ledgerEntryRepository.snapshot(first, second, 1);
+        insertEntry(1L, "7.00", second.plusSeconds(60));
+
+        // Act & Assert
+        assertEquals(0, new BigDecimal("100.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, first)));
+        assertEquals(0, new BigDecimal("120.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, first.plusSeconds(300))));
+        assertEquals(0, new BigDecimal("115.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, second)));
+        assertEquals(0, new BigDecimal("122.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, second.plusSeconds(120))));
+    }
+
+    @Test
+    void testFindBalanceAt_BeforeFirstEntry_ReturnsZero() {
+        // Arrange
+        Instant at = Instant.parse("2026-01-01T12:00:00Z");
+        insertEntry(1L, "100.00", at.plusSeconds(60));
+
+        // Act & Assert
+        assertEquals(0, BigDecimal.ZERO.compareTo(ledgerEntryRepository.findBalanceAt(1L, at)));
+    }
+
+    // ========== Snapshot Tests ==========
+
+    @Test
+    void testCurrentTime_ReadsDatabaseClock() {
+        Instant before = Instant.now().minusSeconds(5);
+
+        Instant now = ledgerEntryRepository.currentTime();
+
+        assertTrue(now.isAfter(before) && now.isBefore(Instant.now().plusSeconds(5)));
+    }
+
+    @Test
+    void testSnapshot_FoldsEntriesUpToAsOf() {
+        // Arrange
+        Instant asOf = Instant.parse("2026-01-01T12:00:00Z");
+        insertEntry(1L, "100.00", asOf.minusSeconds(60));
+        insertEntry(1L, "-40.00", asOf.minusSeconds(30));
+        insertEntry(1L, "5.00", asOf.plusSeconds(30));
+
+        // Act
+        int taken = ledgerEntryRepository.snapshot(EPOCH, asOf, 1);
+
+        // Assert
+        assertEquals(1, taken);
+        assertEquals(0, new BigDecimal("60.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM ledger_snapshot WHERE wallet_id = 1", BigDecimal.class)));
+        assertEquals(0, new BigDecimal("65.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, asOf.plusSeconds(30))));
+    }
+
+    @Test
+    void testSnapshot_BuildsOnPreviousSnapshot() {
+        // Arrange
+        Instant first = Instant.parse("2026-01-01T12:00:00Z");
+        Instant second = first.plusSeconds(300);
+        insertEntry(1L, "100.00", first.minusSeconds(60));
+        ledgerEntryRepository.snapshot(EPOCH, first, 1);
+        insertEntry(1L, "20.00", first.plusSeconds(60));
+
+        // Act
+        ledgerEntryRepository.snapshot(first, second, 1);
+
+        // Assert
+        assertEquals(0, new BigDecimal("120.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM ledger_snapshot WHERE wallet_id = 1 AND as_of = ?", BigDecimal.class,
+                Timestamp.from(second))));
+    }
+
+    @Test
+    void testSnapshot_TooFewEntries_SkipsWallet() {
+        // Arrange
+        Instant asOf = Instant.parse("2026-01-01T12:00:00Z");
+        insertEntry(1L, "100.00", asOf.minusSeconds(60));
+
+        // Act
+        int taken = ledgerEntryRepository.snapshot(EPOCH, asOf, 2);
+
+        // Assert
+        assertEquals(0, taken);
+        assertEquals(0, new BigDecimal("100.00").compareTo(ledgerEntryRepository.findBalanceAt(1L, asOf)));
+    }
+
+    @Test
+    void testLockSnapshotRun_ReturnsWhereLastRunStopped() {
+        Instant snapshottedTo = Instant.parse("2026-01-01T12:00:00Z");
+
+        assertEquals(EPOCH, ledgerEntryRepository.lockSnapshotRun());
+        ledgerEntryRepository.saveSnapshotRun(snapshottedTo);
+        assertEquals(snapshottedTo, ledgerEntryRepository.lockSnapshotRun());
+    }
+
+    private void insertEntry(Long walletId, String amount, Instant createdAt) {
+        jdbcTemplate.update(
+                "INSERT INTO ledger_entry (wallet_id, entry_type, amount, created_at) VALUES (?, 'DEPOSIT', ?, ?)",
+                walletId, new BigDecimal(amount), Timestamp.from(createdAt));
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.QueuedTransfer;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import(TransferQueueRepository.class)
+@Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+public class TransferQueueRepositoryTests {
+
+    @Autowired
+    private TransferQueueRepository transferQueueRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ========== Enqueue Tests ==========
+
+    @Test
+    void testEnqueue_IsPendingAndDueAtOnce() {
+        // Arrange
+        UUID handle = UUID.randomUUID();
+
+        // Act
+        transferQueueRepository.enqueue(handle, 1L, "alice", transfer(10L, 20L, "25.00"));
+
+        // Assert
+        QueuedTransfer queued = transferQueueRepository.findByHandle(handle);
+        assertNotNull(queued);
+        assertEquals(QueuedTransfer.Status.PENDING, queued.status());
+        assertEquals("alice", queued.username());
+        assertEquals(10L, queued.fromWallet());
+        assertEquals(20L, queued.toWallet());
+        assertEquals(WalletCurrency.EUR, queued.currency());
+        assertEquals(0, new BigDecimal("25.00").compareTo(queued.amount()));
+        assertNull(queued.transferId());
+        assertEquals(List.of(queued.id()), ids(transferQueueRepository.findDue(Instant.now().plusSeconds(1), 10)));
+    }
+
+    @Test
+    void testFindByHandle_Unknown_ReturnsNull() {
+        assertNull(transferQueueRepository.findByHandle(UUID.randomUUID()));
+    }
+
+    // ========== Outcome Tests ==========
+
+    @Test
+    void testComplete_RecordsTransferAndLeavesQueue() {
+        // Arrange
+        QueuedTransfer queued = enqueue();
+
+        // Act
+        transferQueueRepository.complete(queued.id(), 42L);
+
+        // Assert
+        QueuedTransfer finished = transferQueueRepository.findByHandle(queued.handle());
+        assertEquals(QueuedTransfer.Status.COMPLETED, finished.status());
+        assertEquals(42L, finished.transferId());
+        assertNotNull(finished.completedAt());
+        assertNull(transferQueueRepository.lockPending(queued.id()));
+        assertTrue(transferQueueRepository.findDue(Instant.now().plusSeconds(1), 10).isEmpty());
+    }
+
+    @Test
+    void testFail_DoesNotOverwriteFinishedRow() {
+        // Arrange
+        QueuedTransfer queued = enqueue();
+        transferQueueRepository.complete(queued.id(), 42L);
+
+        // Act
+        transferQueueRepository.fail(queued.id(), "too late");
+
+        // Assert
+        QueuedTransfer finished = transferQueueRepository.findByHandle(queued.handle());
+        assertEquals(QueuedTransfer.Status.COMPLETED, finished.status());
+        assertNull(finished.failureReason());
+    }
+
+    @Test
+    void testRetryAt_CountsAttemptAndDefersRow() {
+        // Arrange
+        QueuedTransfer queued = enqueue();
+        Instant later = Instant.now().plusSeconds(60);
+
+        // Act
+        transferQueueRepository.retryAt(queued.id(), later);
+
+        // Assert
+        assertTrue(transferQueueRepository.findDue(Instant.now().plusSeconds(1), 10).isEmpty());
+        List<QueuedTransfer> due = transferQueueRepository.findDue(later.plusSeconds(1), 10);
+        assertEquals(1, due.size());
+        assertEquals(1, due.getFirst().attempts());
+    }
+
+    @Test
+    void testDeleteFinishedBefore_KeepsPendingRows() {
+        // Arrange
+        QueuedTransfer pending = enqueue();
+        QueuedTransfer finished = enqueue();
+        transferQueueRepository.fail(finished.id(), "Insufficient funds");
+
+        // Act
+        int deleted = transferQueueRepository.deleteFinishedBefore(LocalDateTime.now().plusMinutes(1));
+
+        // Assert
+        assertEquals(1, deleted);
+        assertNotNull(transferQueueRepository.findByHandle(pending.handle()));
+        assertNull(transferQueueRepository.findByHandle(finished.handle()));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transfer_queue", Integer.class));
+    }
+
+    private QueuedTransfer enqueue() {
+        UUID handle = UUID.randomUUID();
+        transferQueueRepository.enqueue(handle, 1L, "alice", transfer(10L, 20L, "25.00"));
+        return transferQueueRepository.findByHandle(handle);
+    }
+
+    private static Transfer transfer(Long from, Long to, String amount) {
+        return Transfer.builder()
+                .fromWallet(from)
+                .toWallet(to)
+                .currency(WalletCurrency.EUR)
+                .transferAmount(new BigDecimal(amount))
+                .transferDate(LocalDateTime.now())
+                .build();
+    }
+
+    private static List<Long> ids(List<QueuedTransfer> queued) {
+        return queued.stream().map(QueuedTransfer::id).toList();
+    }
+}
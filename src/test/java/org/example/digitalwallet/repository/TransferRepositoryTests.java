@@ -0,0 +1,147 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.Transfer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import(TransferRepository.class)
+@Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+public class TransferRepositoryTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long walletA;
+    private Long walletB;
+    private Long walletC;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update(
+                "INSERT INTO users (id, email, username, password, subscription_status) VALUES (?, ?, ?, ?, ?)",
+                1L, "test@example.com", "testuser", "password", "FREE"
+        );
+        walletA = insertWallet();
+        walletB = insertWallet();
+        walletC = insertWallet();
+    }
+
+    // ========== Wallet Transfer History Tests ==========
+
+    @Test
+    void testFindWalletTransfers_MergesBothDirectionsNewestFirst() {
+        Long out1 = insertTransfer(walletA, walletB, 0);
+        Long in1 = insertTransfer(walletB, walletA, 1);
+        insertTransfer(walletB, walletC, 2);
+        Long self = insertTransfer(walletA, walletA, 3);
+        Long in2 = insertTransfer(walletC, walletA, 4);
+
+        List<Transfer> transfers = transferRepository.findWalletTransfers(walletA, null, null, null, null, 10);
+
+        assertEquals(List.of(in2, self, in1, out1), transfers.stream().map(Transfer::getId).toList());
+    }
+
+    @Test
+    void testFindWalletTransfers_KeysetPagesDoNotOverlap() {
+        for (int i = 0; i < 5; i++) {
+            insertTransfer(i % 2 == 0 ? walletA : walletB, i % 2 == 0 ? walletB : walletA, i);
+        }
+
+        List<Transfer> firstPage = transferRepository.findWalletTransfers(walletA, null, null, null, null, 3);
+        List<Transfer> secondPage = transferRepository.findWalletTransfers(walletA, firstPage.getLast().getTransferDate(),
+                firstPage.getLast().getId(), null, null, 3);
+
+        assertEquals(3, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertTrue(secondPage.getFirst().getTransferDate().isBefore(firstPage.getLast().getTransferDate()));
+    }
+
+    @Test
+    void testFindWalletTransfers_OrdersByDateWhenIdsAreOutOfOrder() {
+        Long later = insertTransfer(walletA, walletB, 5);
+        Long earlier = insertTransfer(walletB, walletA, 1);
+
+        List<Transfer> firstPage = transferRepository.findWalletTransfers(walletA, null, null, null, null, 1);
+        List<Transfer> secondPage = transferRepository.findWalletTransfers(walletA, firstPage.getLast().getTransferDate(),
+                firstPage.getLast().getId(), null, null, 1);
+
+        assertEquals(later, firstPage.getFirst().getId());
+        assertEquals(earlier, secondPage.getFirst().getId());
+    }
+
+    @Test
+    void testFindWalletTransfers_AppliesDateRange() {
+        insertTransfer(walletA, walletB, 0);
+        Long inRange = insertTransfer(walletB, walletA, 5);
+        insertTransfer(walletA, walletC, 10);
+
+        List<Transfer> transfers = transferRepository.findWalletTransfers(walletA, null, null,
+                START.plusDays(1), START.plusDays(10), 10);
+
+        assertEquals(List.of(inRange), transfers.stream().map(Transfer::getId).toList());
+    }
+
+    // ========== All-Wallets History Tests ==========
+
+    @Test
+    void testFindTransfers_OnlyReachesBackToSince() {
+        insertTransfer(walletA, walletB, 1);
+        Long recent = insertTransfer(walletB, walletC, 30);
+        Long newest = insertTransfer(walletC, walletA, 40);
+
+        List<Transfer> firstPage = transferRepository.findTransfers(null, START.plusDays(10), 1);
+        List<Transfer> secondPage = transferRepository.findTransfers(firstPage.getLast().getId(), START.plusDays(10), 10);
+
+        assertEquals(List.of(newest), firstPage.stream().map(Transfer::getId).toList());
+        assertEquals(List.of(recent), secondPage.stream().map(Transfer::getId).toList());
+    }
+
+    // ========== Export Tests ==========
+
+    @Test
+    void testForEachTransfer_StreamsMatchingRowsInIdOrder() {
+        Long first = insertTransfer(walletA, walletB, 1);
+        insertTransfer(walletB, walletC, 2);
+        Long second = insertTransfer(walletC, walletA, 3);
+        insertTransfer(walletA, walletB, 20);
+
+        List<Long> ids = new ArrayList<>();
+        transferRepository.forEachTransfer(walletA, START, START.plusDays(10), transfer -> ids.add(transfer.getId()));
+
+        assertEquals(List.of(first, second), ids);
+    }
+
+    private Long insertWallet() {
+        jdbcTemplate.update(
+                "INSERT INTO wallet (user_id, currency, balance, created_at) VALUES (?, ?, ?, ?)",
+                1L, "EUR", BigDecimal.TEN, LocalDateTime.now()
+        );
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallet", Long.class);
+    }
+
+    private Long insertTransfer(Long fromWallet, Long toWallet, int daysAfterStart) {
+        jdbcTemplate.update(
+                "INSERT INTO transfer (from_wallet, to_wallet, currency, transfer_amount, transfer_date) VALUES (?, ?, ?, ?, ?)",
+                fromWallet, toWallet, "EUR", BigDecimal.ONE, START.plusDays(daysAfterStart)
+        );
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM transfer", Long.class);
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.Wallet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletCacheWriterTests {
+
+    private ConcurrentMapCacheManager cacheManager;
+    private WalletCacheWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(WalletRepository.WALLET_CACHE, WalletRepository.WALLET_BY_USER_CACHE);
+        writer = new WalletCacheWriter(cacheManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ========== Put Tests ==========
+
+    @Test
+    void put_OutsideTransaction_WritesAtOnce() {
+        // Act
+        writer.put(wallet(1L, "15.00", 4L));
+
+        // Assert
+        assertEquals(4L, cached(WalletRepository.WALLET_CACHE, 1L).getVersion());
+        assertNull(cache(WalletRepository.WALLET_BY_USER_CACHE).get(7L));
+    }
+
+    @Test
+    void put_ReplacesUserEntryOnlyWhenItHoldsTheSameWallet() {
+        // Arrange
+        cache(WalletRepository.WALLET_BY_USER_CACHE).put(7L, wallet(1L, "10.00", 3L));
+        cache(WalletRepository.WALLET_BY_USER_CACHE).put(8L, wallet(2L, "50.00", 1L));
+
+        // Act
+        writer.put(wallet(1L, "15.00", 4L));
+        writer.put(Wallet.builder().id(3L).userId(8L).balance(BigDecimal.ONE).version(1L).build());
+
+        // Assert
+        assertEquals(0, new BigDecimal("15.00").compareTo(cached(WalletRepository.WALLET_BY_USER_CACHE, 7L).getBalance()));
+        assertEquals(2L, cached(WalletRepository.WALLET_BY_USER_CACHE, 8L).getId());
+    }
+
+    // ========== Transaction Tests ==========
+
+    @Test
+    void put_InsideTransaction_WaitsForCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        writer.put(wallet(1L, "15.00", 4L));
+        assertNull(cache(WalletRepository.WALLET_CACHE).get(1L));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertEquals(4L, cached(WalletRepository.WALLET_CACHE, 1L).getVersion());
+    }
+
+    @Test
+    void writes_RolledBack_NeverReachTheCache() {
+        // Arrange
+        cache(WalletRepository.WALLET_CACHE).put(1L, wallet(1L, "10.00", 3L));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        writer.put(wallet(1L, "15.00", 4L));
+        writer.evict(1L, 7L);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertEquals(3L, cached(WalletRepository.WALLET_CACHE, 1L).getVersion());
+    }
+
+    private void complete(int status) {
+        TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), status);
+    }
+
+    private Cache cache(String name) {
+        return cacheManager.getCache(name);
+    }
+
+    private Wallet cached(String name, Long key) {
+        return cache(name).get(key, Wallet.class);
+    }
+
+    private static Wallet wallet(Long id, String balance, Long version) {
+        return Wallet.builder().id(id).userId(7L).balance(new BigDecimal(balance)).version(version).build();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.WalletChange;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.model.WalletEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import(WalletEventRepository.class)
+@Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+public class WalletEventRepositoryTests {
+
+    @Autowired
+    private WalletEventRepository walletEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testAppendTransfers_WritesBothLegs() {
+        // Arrange
+        Transfer transfer = Transfer.builder().id(7L).fromWallet(1L).toWallet(2L).currency(WalletCurrency.EUR)
+                .transferAmount(new BigDecimal("15.00")).transferDate(LocalDateTime.now()).build();
+
+        // Act
+        walletEventRepository.appendAll(TransferEvent.legsOf(transfer));
+
+        // Assert
+        TransferEvent out = (TransferEvent) walletEventRepository.findPending(1, 2, 10).getFirst();
+        TransferEvent in = (TransferEvent) walletEventRepository.findPending(0, 2, 10).getFirst();
+        assertEquals(TransferEvent.Direction.OUT, out.direction());
+        assertEquals(2L, out.counterpartyWallet());
+        assertEquals(7L, out.transferId());
+        assertEquals(TransferEvent.Direction.IN, in.direction());
+        assertEquals(1L, in.counterpartyWallet());
+        assertNotNull(in.occurredAt());
+    }
+
+    @Test
+    void testFindPending_ReturnsOnlyTheShardsWalletsInIdOrder() {
+        // Arrange
+        walletEventRepository.appendAll(List.of(WalletEvent.of(3L, WalletEvent.Kind.DEPOSIT, new BigDecimal("1.00"))));
+        walletEventRepository.appendAll(List.of(WalletEvent.of(4L, WalletEvent.Kind.DEPOSIT, new BigDecimal("2.00"))));
+        walletEventRepository.appendAll(List.of(WalletEvent.of(3L, WalletEvent.Kind.WITHDRAWAL, new BigDecimal("3.00"))));
+
+        // Act
+        List<WalletChange> events = walletEventRepository.findPending(1, 2, 10);
+
+        // Assert
+        assertEquals(2, events.size());
+        assertEquals(WalletEvent.Kind.DEPOSIT, ((WalletEvent) events.get(0)).kind());
+        assertEquals(WalletEvent.Kind.WITHDRAWAL, ((WalletEvent) events.get(1)).kind());
+        assertTrue(events.get(0).eventId() < events.get(1).eventId());
+    }
+
+    @Test
+    void testDelete_RemovesDeliveredEvents() {
+        // Arrange
+        walletEventRepository.appendAll(List.of(WalletEvent.of(3L, WalletEvent.Kind.DEPOSIT, new BigDecimal("1.00"))));
+        List<WalletChange> events = walletEventRepository.findPending(1, 2, 10);
+
+        // Act
+        walletEventRepository.delete(events.stream().map(WalletChange::eventId).toList());
+
+        // Assert
+        assertTrue(walletEventRepository.findPending(1, 2, 10).isEmpty());
+    }
+
+    @Test
+    void testTryLockShard_MissingShard_ReturnsFalse() {
+        jdbcTemplate.update("INSERT INTO wallet_event_shard (shard) VALUES (0)");
+
+        assertTrue(walletEventRepository.tryLockShard(0));
+        assertFalse(walletEventRepository.tryLockShard(1));
+    }
+}
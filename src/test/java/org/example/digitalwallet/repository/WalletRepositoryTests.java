@@ -6,17 +6,22 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @JdbcTest
-@Import(WalletRepository.class)
+@Import({WalletRepository.class, WalletEventRepository.class, LedgerEntryRepository.class,
+        ConcurrentMapCacheManager.class})
 @Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
 public class WalletRepositoryTests {
 
@@ -185,7 +190,7 @@ public class WalletRepositoryTests {
         BigDecimal depositAmount = BigDecimal.valueOf(50.00);
 
         // Act
-        walletRepository.addFunds(depositAmount, walletId, testUserId);
+        walletRepository.addFunds(depositAmount, walletId);
 
         // Assert
         BigDecimal newBalance = jdbcTemplate.queryForObject(
@@ -206,9 +211,9 @@ public class WalletRepositoryTests {
         Long walletId = jdbcTemplate.queryForObject("SELECT id FROM wallet WHERE user_id = ?", Long.class, testUserId);
 
         // Act
-        walletRepository.addFunds(BigDecimal.valueOf(25.00), walletId, testUserId);
-        walletRepository.addFunds(BigDecimal.valueOf(75.50), walletId, testUserId);
-        walletRepository.addFunds(BigDecimal.valueOf(10.25), walletId, testUserId);
+        walletRepository.addFunds(BigDecimal.valueOf(25.00), walletId);
+        walletRepository.addFunds(BigDecimal.valueOf(75.50), walletId);
+        walletRepository.addFunds(BigDecimal.valueOf(10.25), walletId);
 
         // Assert
         BigDecimal newBalance = jdbcTemplate.queryForObject(
@@ -231,7 +236,7 @@ public class WalletRepositoryTests {
         BigDecimal depositAmount = BigDecimal.valueOf(100.00);
 
         // Act
-        walletRepository.addFunds(depositAmount, walletId, testUserId);
+        walletRepository.addFunds(depositAmount, walletId);
 
         // Assert
         BigDecimal newBalance = jdbcTemplate.queryForObject(
@@ -254,7 +259,7 @@ public class WalletRepositoryTests {
         BigDecimal largeDeposit = BigDecimal.valueOf(50000.99);
 
         // Act
-        walletRepository.addFunds(largeDeposit, walletId, testUserId);
+        walletRepository.addFunds(largeDeposit, walletId);
 
         // Assert
         BigDecimal newBalance = jdbcTemplate.queryForObject(
@@ -277,7 +282,7 @@ public class WalletRepositoryTests {
         BigDecimal depositAmount = new BigDecimal("50.88");
 
         // Act
-        walletRepository.addFunds(depositAmount, walletId, testUserId);
+        walletRepository.addFunds(depositAmount, walletId);
 
         // Assert
         BigDecimal newBalance = jdbcTemplate.queryForObject(
@@ -287,4 +292,139 @@ public class WalletRepositoryTests {
         );
         assertEquals(0, new BigDecimal("151.00").compareTo(newBalance));
     }
+
+    // ========== Event Tests ==========
+
+    @Test
+    void testAddFunds_WritesDepositEvent() {
+        // Arrange
+        Long walletId = insertWallet(BigDecimal.valueOf(100.00));
+
+        // Act
+        walletRepository.addFunds(new BigDecimal("12.50"), walletId);
+
+        // Assert
+        Map<String, Object> event = jdbcTemplate.queryForMap("SELECT * FROM wallet_event WHERE wallet_id = ?", walletId);
+        assertEquals("DEPOSIT", event.get("event_type"));
+        assertEquals(0, new BigDecimal("12.50").compareTo((BigDecimal) event.get("amount")));
+    }
+
+    @Test
+    void testCreateWallet_WritesBalancedOpeningEntries() {
+        // Arrange
+        Wallet wallet = Wallet.builder()
+                .userId(testUserId)
+                .currency(WalletCurrency.EUR)
+                .balance(new BigDecimal("80.00"))
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        // Act
+        walletRepository.createWallet(wallet);
+
+        // Assert
+        Long walletId = jdbcTemplate.queryForObject("SELECT id FROM wallet WHERE user_id = ?", Long.class, testUserId);
+        assertEquals(0, new BigDecimal("80.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT amount FROM ledger_entry WHERE wallet_id = ? AND entry_type = 'OPENING'", BigDecimal.class, walletId)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(jdbcTemplate.queryForObject(
+                "SELECT SUM(amount) FROM ledger_entry", BigDecimal.class)));
+    }
+
+    @Test
+    void testDeductFunds_InsufficientBalance_WritesNothing() {
+        // Arrange
+        Long walletId = insertWallet(BigDecimal.valueOf(10.00));
+
+        // Act
+        boolean deducted = walletRepository.deductFunds(new BigDecimal("20.00"), walletId);
+
+        // Assert
+        assertFalse(deducted);
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_event", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entry", Integer.class));
+    }
+
+    // ========== Version Tests ==========
+
+    @Test
+    void testWrites_BumpVersionOnlyWhenRowChanges() {
+        // Arrange
+        Long walletId = insertWallet(BigDecimal.valueOf(100.00));
+
+        // Act
+        walletRepository.addFunds(new BigDecimal("5.00"), walletId);
+        walletRepository.deductFunds(new BigDecimal("1.00"), walletId);
+        walletRepository.deductFunds(new BigDecimal("500.00"), walletId);
+        walletRepository.applyBalanceDeltas(Map.of(walletId, new BigDecimal("2.00")));
+
+        // Assert
+        Wallet wallet = walletRepository.findById(walletId);
+        assertEquals(3L, wallet.getVersion());
+        assertEquals(0, new BigDecimal("106.00").compareTo(wallet.getBalance()));
+    }
+
+    // ========== Batch Tests ==========
+
+    @Test
+    void testFindAllByIdsForUpdate_ReturnsWalletsOrderedById() {
+        // Arrange
+        Long first = insertWallet(BigDecimal.valueOf(10.00));
+        Long second = insertWallet(BigDecimal.valueOf(20.00));
+
+        // Act
+        List<Wallet> wallets = walletRepository.findAllByIdsForUpdate(List.of(second, first));
+
+        // Assert
+        assertEquals(2, wallets.size());
+        assertEquals(first, wallets.get(0).getId());
+        assertEquals(second, wallets.get(1).getId());
+    }
+
+    @Test
+    void testApplyBalanceDeltas_UpdatesEveryWalletInOneStatement() {
+        // Arrange
+        Long debited = insertWallet(BigDecimal.valueOf(100.00));
+        Long credited = insertWallet(BigDecimal.valueOf(5.00));
+        Long untouched = insertWallet(BigDecimal.valueOf(42.00));
+
+        Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+        deltas.put(debited, new BigDecimal("-30.50"));
+        deltas.put(credited, new BigDecimal("30.50"));
+
+        // Act
+        int updated = walletRepository.applyBalanceDeltas(deltas);
+
+        // Assert
+        assertEquals(2, updated);
+        assertEquals(0, new BigDecimal("69.50").compareTo(balanceOf(debited)));
+        assertEquals(0, new BigDecimal("35.50").compareTo(balanceOf(credited)));
+        assertEquals(0, new BigDecimal("42.00").compareTo(balanceOf(untouched)));
+    }
+
+    @Test
+    void testFindBalances_ReturnsTotalsOfExistingWallets() {
+        // Arrange
+        Long first = insertWallet(BigDecimal.valueOf(10.00));
+        Long second = insertWallet(BigDecimal.valueOf(20.00));
+
+        // Act
+        Map<Long, BigDecimal> balances = walletRepository.findBalances(List.of(first, second, 999L));
+
+        // Assert
+        assertEquals(2, balances.size());
+        assertEquals(0, new BigDecimal("10.00").compareTo(balances.get(first)));
+        assertEquals(0, new BigDecimal("20.00").compareTo(balances.get(second)));
+    }
+
+    private Long insertWallet(BigDecimal balance) {
+        jdbcTemplate.update(
+                "INSERT INTO wallet (user_id, currency, balance, created_at) VALUES (?, ?, ?, ?)",
+                testUserId, "EUR", balance, LocalDateTime.now()
+        );
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallet", Long.class);
+    }
+
+    private BigDecimal balanceOf(Long walletId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, walletId);
+    }
 }
@@ -0,0 +1,104 @@
+package org.example.digitalwallet.repository;
+
+import org.example.digitalwallet.model.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import({WalletStripeRepository.class, WalletRepository.class, WalletEventRepository.class,
+        LedgerEntryRepository.class, ConcurrentMapCacheManager.class})
+@Sql(scripts = "/test-schema.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+public class WalletStripeRepositoryTests {
+
+    @Autowired
+    private WalletStripeRepository walletStripeRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long walletId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update(
+                "INSERT INTO users (id, email, username, password, subscription_status) VALUES (?, ?, ?, ?, ?)",
+                1L, "merchant@example.com", "merchant", "password", "FREE"
+        );
+        jdbcTemplate.update(
+                "INSERT INTO wallet (user_id, currency, balance, created_at) VALUES (?, ?, ?, ?)",
+                1L, "EUR", new BigDecimal("100.00"), LocalDateTime.now()
+        );
+        walletId = jdbcTemplate.queryForObject("SELECT id FROM wallet WHERE user_id = ?", Long.class, 1L);
+    }
+
+    @Test
+    void testPromote_CreatesEmptyStripes() {
+        // Act
+        boolean promoted = walletStripeRepository.promote(walletId, 4);
+
+        // Assert
+        assertTrue(promoted);
+        assertEquals(4, jdbcTemplate.queryForObject(
+                "SELECT stripe_count FROM wallet WHERE id = ?", Integer.class, walletId));
+        assertEquals(4, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_stripe WHERE wallet_id = ? AND balance = 0", Integer.class, walletId));
+    }
+
+    @Test
+    void testPromote_AlreadyStriped_ReturnsFalse() {
+        walletStripeRepository.promote(walletId, 4);
+
+        assertFalse(walletStripeRepository.promote(walletId, 8));
+    }
+
+    @Test
+    void testFindById_SumsStripesIntoBalance() {
+        // Arrange
+        walletStripeRepository.promote(walletId, 2);
+        jdbcTemplate.update("UPDATE wallet_stripe SET balance = 15.25 WHERE wallet_id = ? AND stripe = 1", walletId);
+
+        // Act
+        Wallet wallet = walletRepository.findById(walletId);
+
+        // Assert
+        assertEquals(0, new BigDecimal("115.25").compareTo(wallet.getBalance()));
+    }
+
+    @Test
+    void testDemote_FoldsStripesIntoWallet() {
+        // Arrange
+        walletStripeRepository.promote(walletId, 3);
+        jdbcTemplate.update("UPDATE wallet_stripe SET balance = 10.00 WHERE wallet_id = ?", walletId);
+
+        // Act
+        boolean demoted = walletStripeRepository.demote(walletId);
+
+        // Assert
+        assertTrue(demoted);
+        assertEquals(0, new BigDecimal("130.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, walletId)));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT stripe_count FROM wallet WHERE id = ?", Integer.class, walletId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_stripe WHERE wallet_id = ?", Integer.class, walletId));
+    }
+
+    @Test
+    void testDemote_NotStriped_ReturnsFalse() {
+        assertFalse(walletStripeRepository.demote(walletId));
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.digitalwallet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchingQueueTests {
+
+    @Test
+    void run_ItemsWithinTheWindow_ArriveAsOneBatch() throws InterruptedException {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        BatchingQueue<Integer> queue = new BatchingQueue<>("test-batching", 200, 10, batch -> {
+            batches.add(batch);
+            delivered.countDown();
+        });
+
+        queue.start();
+        try {
+            queue.add(1);
+            queue.add(2);
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(List.of(1, 2)), batches);
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void run_ConsumerThrows_KeepsDrainingLaterBatches() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        BatchingQueue<Integer> queue = new BatchingQueue<>("test-batching", 0, 1, batch -> {
+            if (batch.getFirst() == 1) {
+                throw new IllegalStateException("bad batch");
+            }
+            delivered.countDown();
+        });
+
+        queue.start();
+        try {
+            queue.add(1);
+            queue.add(2);
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void stop_ReturnsItemsNeverPickedUp() throws InterruptedException {
+        BatchingQueue<Integer> queue = new BatchingQueue<>("test-batching", 0, 1, batch -> { });
+
+        queue.add(1);
+
+        assertEquals(List.of(1), queue.stop());
+    }
+}
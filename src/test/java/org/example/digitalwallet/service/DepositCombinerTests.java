@@ -0,0 +1,169 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.exception.WalletNotFoundException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.Wallet;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.model.WalletEvent;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.example.digitalwallet.repository.WalletEventRepository;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DepositCombinerTests {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletEventRepository walletEventRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DepositCombiner combiner;
+
+    @BeforeEach
+    void setUp() {
+        combiner = new DepositCombiner(walletRepository, walletEventRepository, ledgerEntryRepository,
+                emailService, transactionManager, new SimpleMeterRegistry(), true, 5, 64);
+    }
+
+    // ========== Commit Tests ==========
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commit_SumsDepositsPerWalletIntoOneUpdate() {
+        // Arrange
+        DepositCombiner.PendingDeposit first = pending(1L, 100L, "10.00");
+        DepositCombiner.PendingDeposit second = pending(1L, 100L, "5.00");
+        DepositCombiner.PendingDeposit other = pending(2L, 200L, "7.00");
+        when(walletRepository.findAllByIdsForUpdate(anyCollection())).thenReturn(List.of(wallet(1L), wallet(2L)));
+        when(walletRepository.findBalances(anyCollection())).thenReturn(Map.of(
+                1L, new BigDecimal("115.00"),
+                2L, new BigDecimal("57.00")));
+
+        // Act
+        combiner.commit(List.of(first, second, other));
+
+        // Assert
+        verify(walletRepository).applyBalanceDeltas(Map.of(1L, new BigDecimal("15.00"), 2L, new BigDecimal("7.00")));
+        ArgumentCaptor<List<WalletEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(walletEventRepository).appendAll(events.capture());
+        verify(ledgerEntryRepository).appendAll(events.getValue());
+        assertEquals(3, events.getValue().size());
+        assertTrue(events.getValue().stream().allMatch(event -> event.kind() == WalletEvent.Kind.DEPOSIT));
+
+        assertEquals(new BigDecimal("110.00"), first.result().join());
+        assertEquals(new BigDecimal("115.00"), second.result().join());
+        assertEquals(new BigDecimal("57.00"), other.result().join());
+        verify(emailService).sendEmailOnDeposit("user100@example.com", "user100", "EUR", "10.00", "110.00");
+        verify(emailService).sendEmailOnDeposit("user100@example.com", "user100", "EUR", "5.00", "115.00");
+        verify(emailService).sendEmailOnDeposit("user200@example.com", "user200", "EUR", "7.00", "57.00");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commit_MissingWallet_FailsOnlyItsDeposits() {
+        // Arrange
+        DepositCombiner.PendingDeposit kept = pending(1L, 100L, "10.00");
+        DepositCombiner.PendingDeposit missing = pending(2L, 200L, "7.00");
+        when(walletRepository.findAllByIdsForUpdate(anyCollection())).thenReturn(List.of(wallet(1L)));
+        when(walletRepository.findBalances(anyCollection())).thenReturn(Map.of(1L, new BigDecimal("110.00")));
+
+        // Act
+        combiner.commit(List.of(kept, missing));
+
+        // Assert
+        ArgumentCaptor<Map<Long, BigDecimal>> deltas = ArgumentCaptor.forClass(Map.class);
+        verify(walletRepository).applyBalanceDeltas(deltas.capture());
+        assertEquals(Set.of(1L), deltas.getValue().keySet());
+        assertEquals(new BigDecimal("110.00"), kept.result().join());
+        CompletionException failure = assertThrows(CompletionException.class, () -> missing.result().join());
+        assertInstanceOf(WalletNotFoundException.class, failure.getCause());
+        verify(emailService, times(1)).sendEmailOnDeposit(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void commit_TransactionFails_FailsEveryDeposit() {
+        // Arrange
+        DepositCombiner.PendingDeposit first = pending(1L, 100L, "10.00");
+        DepositCombiner.PendingDeposit second = pending(1L, 100L, "5.00");
+        when(walletRepository.findAllByIdsForUpdate(anyCollection())).thenReturn(List.of(wallet(1L)));
+        when(walletRepository.applyBalanceDeltas(anyMap())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // Act
+        combiner.commit(List.of(first, second));
+
+        // Assert
+        assertThrows(CompletionException.class, () -> first.result().join());
+        assertThrows(CompletionException.class, () -> second.result().join());
+        verify(walletEventRepository, never()).appendAll(anyList());
+        verifyNoInteractions(emailService);
+    }
+
+    // ========== Deposit Tests ==========
+
+    @Test
+    void deposit_ReturnsBalanceOnceBatchCommits() throws InterruptedException {
+        // Arrange
+        when(walletRepository.findAllByIdsForUpdate(anyCollection())).thenReturn(List.of(wallet(1L)));
+        when(walletRepository.findBalances(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            assertEquals(Set.of(1L), Set.copyOf(ids));
+            return Map.of(1L, new BigDecimal("60.00"));
+        });
+
+        combiner.start();
+        try {
+            // Act
+            BigDecimal balance = combiner.deposit(1L, user(100L), new BigDecimal("10.00"));
+
+            // Assert
+            assertEquals(new BigDecimal("60.00"), balance);
+        } finally {
+            combiner.stop();
+        }
+    }
+
+    private static DepositCombiner.PendingDeposit pending(Long walletId, Long userId, String amount) {
+        return new DepositCombiner.PendingDeposit(walletId, user(userId), new BigDecimal(amount), new CompletableFuture<>());
+    }
+
+    private static AuthenticatedUser user(Long userId) {
+        return new AuthenticatedUser(userId, "user" + userId, "user" + userId + "@example.com", null, null);
+    }
+
+    private static Wallet wallet(Long id) {
+        return Wallet.builder().id(id).currency(WalletCurrency.EUR).build();
+    }
+}
@@ -0,0 +1,166 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.OutboxEmail;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmailOutboxDispatcherTests {
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Mock
+    private JavaMailSender emailSender;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new EmailOutboxDispatcher(emailOutboxRepository, emailSender, transactionManager, taskScheduler,
+                meterRegistry, 1000, 10, 3, 120, 10, 60);
+    }
+
+    // ========== Dispatch Tests ==========
+
+    @Test
+    void dispatch_CoalescesDepositsToSameRecipientIntoOneDigest() {
+        // Arrange
+        OutboxEmail due = deposit(1L, "user@example.com", "10.00", "110.00", 0);
+        OutboxEmail waiting = deposit(2L, "user@example.com", "5.00", "115.00", 0);
+        when(emailOutboxRepository.lockDue(any(Instant.class), eq(10))).thenReturn(List.of(due));
+        when(emailOutboxRepository.lockPendingDeposits(eq(Set.of("user@example.com")), any(Instant.class)))
+                .thenReturn(List.of(waiting));
+
+        // Act
+        int claimed = dispatcher.dispatch();
+
+        // Assert
+        assertEquals(1, claimed);
+        ArgumentCaptor<SimpleMailMessage[]> sent = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(emailSender).send(sent.capture());
+        assertEquals(1, sent.getValue().length);
+        assertEquals("Successful deposits", sent.getValue()[0].getSubject());
+        assertTrue(sent.getValue()[0].getText().contains("deposits totalling 15.00"));
+        assertTrue(sent.getValue()[0].getText().endsWith("New balance is 115.00"));
+        verify(emailOutboxRepository).lease(eq(List.of(1L, 2L)), any(Instant.class));
+        verify(emailOutboxRepository).delete(List.of(1L, 2L));
+    }
+
+    @Test
+    void dispatch_SendsWholeBatchInOneCall() {
+        // Arrange
+        OutboxEmail created = walletCreated(1L, "a@example.com");
+        OutboxEmail deposit = deposit(2L, "b@example.com", "10.00", "110.00", 0);
+        when(emailOutboxRepository.lockDue(any(Instant.class), eq(10))).thenReturn(List.of(created, deposit));
+        when(emailOutboxRepository.lockPendingDeposits(anyCollection(), any(Instant.class))).thenReturn(List.of());
+
+        // Act
+        dispatcher.dispatch();
+
+        // Assert
+        ArgumentCaptor<SimpleMailMessage[]> sent = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(emailSender, times(1)).send(sent.capture());
+        assertEquals(2, sent.getValue().length);
+        assertEquals(2, meterRegistry.get("wallet.email.outbox").tag("outcome", "sent").counter().count());
+    }
+
+    @Test
+    void dispatch_PartialFailure_RetriesOnlyFailedMessages() {
+        // Arrange
+        OutboxEmail first = walletCreated(1L, "a@example.com");
+        OutboxEmail second = walletCreated(2L, "b@example.com");
+        when(emailOutboxRepository.lockDue(any(Instant.class), eq(10))).thenReturn(List.of(first, second));
+        doAnswer(invocation -> {
+            SimpleMailMessage failed = invocation.getArgument(1);
+            throw new MailSendException(Map.of(failed, new RuntimeException("mailbox full")));
+        }).when(emailSender).send(any(SimpleMailMessage[].class));
+
+        // Act
+        dispatcher.dispatch();
+
+        // Assert
+        verify(emailOutboxRepository).delete(List.of(1L));
+        verify(emailOutboxRepository).retryAt(eq(List.of(2L)), any(Instant.class));
+        verify(emailOutboxRepository, never()).markDead(anyCollection());
+    }
+
+    @Test
+    void dispatch_ConnectionFailure_MarksExhaustedRowsDead() {
+        // Arrange
+        OutboxEmail exhausted = deposit(1L, "a@example.com", "10.00", "110.00", 2);
+        when(emailOutboxRepository.lockDue(any(Instant.class), eq(10))).thenReturn(List.of(exhausted));
+        when(emailOutboxRepository.lockPendingDeposits(anyCollection(), any(Instant.class))).thenReturn(List.of());
+        doThrow(new MailSendException("connection refused")).when(emailSender).send(any(SimpleMailMessage[].class));
+
+        // Act
+        dispatcher.dispatch();
+
+        // Assert
+        verify(emailOutboxRepository).markDead(List.of(1L));
+        verify(emailOutboxRepository, never()).delete(anyCollection());
+        assertEquals(1, meterRegistry.get("wallet.email.outbox").tag("outcome", "dead").counter().count());
+    }
+
+    @Test
+    void dispatch_NothingDue_SendsNothing() {
+        when(emailOutboxRepository.lockDue(any(Instant.class), anyInt())).thenReturn(List.of());
+
+        assertEquals(0, dispatcher.dispatch());
+
+        verifyNoInteractions(emailSender);
+    }
+
+    // ========== Backoff Tests ==========
+
+    @Test
+    void backoff_DoublesUpToMaximum() {
+        assertEquals(Duration.ofSeconds(10), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(20), dispatcher.backoff(2));
+        assertEquals(Duration.ofSeconds(60), dispatcher.backoff(5));
+    }
+
+    private static OutboxEmail deposit(Long id, String recipient, String amount, String balance, int attempts) {
+        return new OutboxEmail(id, OutboxEmail.Kind.DEPOSIT, recipient, "user", WalletCurrency.EUR,
+                new BigDecimal(amount), new BigDecimal(balance), attempts);
+    }
+
+    private static OutboxEmail walletCreated(Long id, String recipient) {
+        return new OutboxEmail(id, OutboxEmail.Kind.WALLET_CREATED, recipient, "user", WalletCurrency.EUR,
+                null, new BigDecimal("100.00"), 0);
+    }
+}
@@ -0,0 +1,190 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.dto.DepositRequest;
+import org.example.digitalwallet.exception.IdempotencyConflictException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.example.digitalwallet.model.Roles;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceTests {
+
+    private static final String KEY = "idempotency:deposit:testuser:retry-1";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private ScheduledFuture<?> renewal;
+
+    @Mock
+    private RateLimitService rateLimitService;
+
+    @Mock
+    private Authentication authentication;
+
+    @Mock
+    private SecurityContext securityContext;
+
+    private IdempotencyService idempotencyService;
+
+    private final DepositRequest request = new DepositRequest(BigDecimal.valueOf(50.00));
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(securityContext.getAuthentication()).thenReturn(authentication);
+        lenient().when(authentication.getName()).thenReturn("testuser");
+        lenient().doReturn(renewal).when(taskScheduler)
+                .scheduleAtFixedRate(any(Runnable.class), any(Instant.class), any(Duration.class));
+        SecurityContextHolder.setContext(securityContext);
+
+        idempotencyService = new IdempotencyService(redisTemplate, JsonMapper.builder().build(), taskScheduler,
+                rateLimitService, 3600, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testExecute_FirstCall_RunsActionAndStoresResponse() {
+        when(valueOperations.setIfAbsent(eq(KEY), startsWith("P:"), eq(Duration.ofSeconds(30)))).thenReturn(true);
+
+        String response = idempotencyService.execute("deposit", "retry-1", request, String.class, () -> "done");
+
+        assertEquals("done", response);
+        verify(redisTemplate).execute(anyScript(), eq(List.of(KEY)),
+                startsWith(pendingValueFor(request) + ":"), endsWith(":\"done\""), eq("3600000"));
+        verify(renewal).cancel(false);
+    }
+
+    @Test
+    void testExecute_WhileRunning_RenewsItsOwnMarker() {
+        ArgumentCaptor<String> marker = ArgumentCaptor.forClass(String.class);
+        when(valueOperations.setIfAbsent(eq(KEY), marker.capture(), eq(Duration.ofSeconds(30)))).thenReturn(true);
+        ArgumentCaptor<Runnable> renew = ArgumentCaptor.forClass(Runnable.class);
+
+        idempotencyService.execute("deposit", "retry-1", request, String.class, () -> "done");
+
+        verify(taskScheduler).scheduleAtFixedRate(renew.capture(), any(Instant.class), eq(Duration.ofSeconds(10)));
+        renew.getValue().run();
+        verify(redisTemplate).execute(anyScript(), eq(List.of(KEY)), eq(marker.getValue()), eq("30000"));
+    }
+
+    @Test
+    void testExecute_TwoClaims_UseDifferentMarkers() {
+        ArgumentCaptor<String> markers = ArgumentCaptor.forClass(String.class);
+        when(valueOperations.setIfAbsent(eq(KEY), markers.capture(), any(Duration.class))).thenReturn(true);
+
+        idempotencyService.execute("deposit", "retry-1", request, String.class, () -> "done");
+        idempotencyService.execute("deposit", "retry-1", request, String.class, () -> "done");
+
+        assertNotEquals(markers.getAllValues().get(0), markers.getAllValues().get(1));
+    }
+
+    @Test
+    void testExecute_Retry_ReturnsStoredResponseWithoutRunning() {
+        String stored = storedValueFor(request, "done");
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn(stored);
+        when(authentication.getPrincipal()).thenReturn(
+                new AuthenticatedUser(7L, "testuser", null, Roles.USER, MembershipStatus.PREMIUM));
+        AtomicInteger runs = new AtomicInteger();
+
+        String response = idempotencyService.execute("deposit", "retry-1", request, String.class,
+                () -> "ran " + runs.incrementAndGet());
+
+        assertEquals("done", response);
+        assertEquals(0, runs.get());
+        verify(rateLimitService).refundUser(7L, MembershipStatus.PREMIUM);
+    }
+
+    @Test
+    void testExecute_DuplicateWhileRunning_ThrowsConflictWithoutWaiting() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn(markerFor(request));
+
+        assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("deposit", "retry-1", request, String.class, () -> "ran again"));
+        verify(valueOperations, times(1)).get(KEY);
+        verifyNoInteractions(rateLimitService);
+    }
+
+    @Test
+    void testExecute_SameKeyDifferentRequest_ThrowsConflict() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn(storedValueFor(new DepositRequest(BigDecimal.ONE), "done"));
+
+        assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("deposit", "retry-1", request, String.class, () -> "ran again"));
+    }
+
+    @Test
+    void testExecute_ActionFails_ForgetsKey() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.execute("deposit", "retry-1", request,
+                String.class, () -> { throw new IllegalArgumentException("Insufficient funds"); }));
+
+        // Released only if the marker is still this call's, and nothing is stored
+        verify(redisTemplate).execute(anyScript(), eq(List.of(KEY)), startsWith(pendingValueFor(request) + ":"));
+        verify(redisTemplate, never()).execute(anyScript(), anyList(), anyString(), anyString(), anyString());
+        verify(renewal).cancel(false);
+    }
+
+    private static RedisScript<Long> anyScript() {
+        return any();
+    }
+
+    private static String pendingValueFor(DepositRequest request) {
+        return "P:" + IdempotencyService.fingerprint(request);
+    }
+
+    private static String markerFor(DepositRequest request) {
+        return pendingValueFor(request) + ":other-claim";
+    }
+
+    private static String storedValueFor(DepositRequest request, String response) {
+        return "D:" + IdempotencyService.fingerprint(request) + ":\"" + response + "\"";
+    }
+
+}
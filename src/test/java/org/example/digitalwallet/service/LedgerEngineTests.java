@@ -0,0 +1,214 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.model.WalletOwner;
+import org.example.digitalwallet.repository.LedgerCheckpointRepository;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.example.digitalwallet.repository.TransferRepository;
+import org.example.digitalwallet.repository.WalletEventRepository;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LedgerEngineTests {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private LedgerCheckpointRepository checkpointRepository;
+
+    @Mock
+    private WalletEventRepository walletEventRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @TempDir
+    private Path journalDir;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+    private LedgerEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        lenient().when(checkpointRepository.findAll()).thenReturn(Map.of());
+        lenient().when(transferRepository.reserveIds(anyInt()))
+                .thenReturn(LongStream.range(500, 1000).boxed().toList());
+
+        // Wallets 1 and 2 land in different partitions
+        lenient().when(walletRepository.findOwner(1L)).thenReturn(new WalletOwner(1L, 10L, "alice", WalletCurrency.EUR));
+        lenient().when(walletRepository.findOwner(2L)).thenReturn(new WalletOwner(2L, 20L, "bob", WalletCurrency.EUR));
+        lenient().when(walletRepository.findBalance(1L)).thenReturn(new BigDecimal("100"));
+        lenient().when(walletRepository.findBalance(2L)).thenReturn(BigDecimal.ZERO);
+
+        // A real scheduler, so records reach Postgres in the background as they would in production
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.initialize();
+
+        engine = newEngine();
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.stop();
+        taskScheduler.shutdown();
+    }
+
+    private LedgerEngine newEngine() {
+        return new LedgerEngine(walletRepository, transferRepository, checkpointRepository, walletEventRepository,
+                ledgerEntryRepository, transactionManager, taskScheduler,
+                new SimpleMeterRegistry(), "memory", 2, journalDir.toString(), 16, 20, 1 << 20);
+    }
+
+    private static Transfer transfer(long fromWallet, long toWallet, String amount) {
+        return Transfer.builder().fromWallet(fromWallet).toWallet(toWallet).currency(WalletCurrency.EUR)
+                .transferAmount(new BigDecimal(amount)).transferDate(LocalDateTime.now()).build();
+    }
+
+    private void awaitBalance(long walletId, String expected) throws InterruptedException {
+        for (int i = 0; i < 200 && !new BigDecimal(expected).equals(engine.residentBalance(walletId)); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(new BigDecimal(expected), engine.residentBalance(walletId));
+    }
+
+    // ========== Transfer Tests ==========
+
+    @Test
+    void testTransfer_CrossPartition_CreditsRecipientAndFlushesBothLegs() throws Exception {
+        TransferResult result = engine.executeAuthorizedTransfer(transfer(1L, 2L, "30"), "alice");
+
+        assertEquals(new TransferResult(TransferOutcome.COMPLETED, 500L), result);
+        assertEquals(new BigDecimal("70"), engine.residentBalance(1L));
+        awaitBalance(2L, "30");
+
+        verify(checkpointRepository, timeout(2000)).save(1, 1L);
+        verify(walletRepository).applyBalanceDeltas(Map.of(1L, new BigDecimal("-30"), 2L, new BigDecimal("30")));
+        verify(transferRepository).saveAllWithIds(argThat(transfers -> transfers.size() == 1
+                && transfers.getFirst().getId() == 500L && transfers.getFirst().getToWallet() == 2L));
+        List<TransferEvent> legs = List.of(
+                new TransferEvent(null, 1L, TransferEvent.Direction.OUT, 2L, 500L, new BigDecimal("30"), null),
+                new TransferEvent(null, 2L, TransferEvent.Direction.IN, 1L, 500L, new BigDecimal("30"), null));
+        verify(walletEventRepository).appendAll(legs);
+        verify(ledgerEntryRepository).appendAll(legs);
+        verify(transactionManager, atLeastOnce()).commit(transactionStatus);
+    }
+
+    @Test
+    void testTransfer_InsufficientFunds_ChangesNothing() {
+        TransferResult result = engine.executeAuthorizedTransfer(transfer(1L, 2L, "150"), "alice");
+
+        assertEquals(TransferOutcome.INSUFFICIENT_FUNDS, result.outcome());
+        assertEquals(new BigDecimal("100"), engine.residentBalance(1L));
+        assertNull(engine.residentBalance(2L));
+    }
+
+    @Test
+    void testTransfer_CallerDoesNotOwnSource_ReturnsNotOwner() {
+        TransferResult result = engine.executeAuthorizedTransfer(transfer(1L, 2L, "10"), "bob");
+
+        assertEquals(TransferOutcome.NOT_OWNER, result.outcome());
+        verify(walletRepository, never()).findBalance(any());
+    }
+
+    @Test
+    void testTransfer_UnknownWallet_ReturnsWalletNotFound() {
+        TransferResult result = engine.executeAuthorizedTransfer(transfer(1L, 3L, "10"), "alice");
+
+        assertEquals(TransferOutcome.WALLET_NOT_FOUND, result.outcome());
+    }
+
+    // ========== Deposit Tests ==========
+
+    @Test
+    void testDeposit_ReturnsNewBalanceAndFlushes() {
+        BigDecimal newBalance = engine.deposit(1L, new BigDecimal("5"));
+
+        assertEquals(new BigDecimal("105"), newBalance);
+        verify(checkpointRepository, timeout(2000)).save(1, 1L);
+        verify(walletRepository).applyBalanceDeltas(Map.of(1L, new BigDecimal("5")));
+        verify(transferRepository, never()).saveAllWithIds(any());
+    }
+
+    // ========== Recovery Tests ==========
+
+    @Test
+    void testRestart_UnflushedRecords_AreReplayedFromJournal() throws Exception {
+        // Postgres is down, so nothing leaves the journal
+        when(transactionManager.getTransaction(any())).thenThrow(new IllegalStateException("database down"));
+
+        engine.executeAuthorizedTransfer(transfer(1L, 2L, "30"), "alice");
+        awaitBalance(2L, "30");
+        engine.stop();
+
+        reset(transactionManager);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+
+        engine = newEngine();
+        engine.start();
+
+        assertEquals(new BigDecimal("70"), engine.residentBalance(1L));
+        assertEquals(new BigDecimal("30"), engine.residentBalance(2L));
+        verify(checkpointRepository, timeout(2000)).save(1, 1L);
+        verify(walletRepository).applyBalanceDeltas(Map.of(1L, new BigDecimal("-30"), 2L, new BigDecimal("30")));
+    }
+
+    @Test
+    void testRestart_FlushedRecords_AreNotReplayed() throws Exception {
+        engine.executeAuthorizedTransfer(transfer(1L, 2L, "30"), "alice");
+        verify(checkpointRepository, timeout(2000)).save(1, 1L);
+        engine.stop();
+
+        when(checkpointRepository.findAll()).thenReturn(Map.of(1, 1L));
+        when(walletRepository.findBalance(1L)).thenReturn(new BigDecimal("70"));
+
+        engine = newEngine();
+        engine.start();
+
+        assertNull(engine.residentBalance(1L));
+        assertEquals(new TransferResult(TransferOutcome.COMPLETED, 500L),
+                engine.executeAuthorizedTransfer(transfer(1L, 2L, "70"), "alice"));
+        assertEquals(new BigDecimal("0"), engine.residentBalance(1L));
+        verify(checkpointRepository, timeout(2000)).save(1, 2L);
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.model.WalletCurrency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LedgerJournalTests {
+
+    @TempDir
+    private Path journalDir;
+
+    private static LedgerRecord transfer(long seq) {
+        return new LedgerRecord(seq, LedgerRecord.Kind.TRANSFER, 100 + seq, 1L, 2L,
+                new BigDecimal("12.50"), WalletCurrency.EUR, 1_700_000_000_000L);
+    }
+
+    @Test
+    void testReopen_ReturnsRecordsInOrder() throws IOException {
+        Path path = journalDir.resolve("partition-0.journal");
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            journal.append(transfer(1));
+            journal.append(new LedgerRecord(2, LedgerRecord.Kind.DEPOSIT, 0, 0, 2L, BigDecimal.TEN, null, 1_700_000_000_001L));
+            journal.force();
+        }
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            List<LedgerRecord> records = journal.takeRecovered();
+
+            assertEquals(List.of(transfer(1),
+                    new LedgerRecord(2, LedgerRecord.Kind.DEPOSIT, 0, 0, 2L, BigDecimal.TEN, null, 1_700_000_000_001L)), records);
+            assertTrue(journal.takeRecovered().isEmpty());
+        }
+    }
+
+    @Test
+    void testReopen_TornTail_IsCutOffAndAppendsContinue() throws IOException {
+        Path path = journalDir.resolve("partition-0.journal");
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            journal.append(transfer(1));
+            journal.append(transfer(2));
+            journal.force();
+        }
+
+        // Simulate a crash halfway through the second record
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            assertEquals(List.of(transfer(1)), journal.takeRecovered());
+            journal.append(transfer(2));
+            journal.force();
+        }
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            assertEquals(List.of(transfer(1), transfer(2)), journal.takeRecovered());
+        }
+    }
+
+    @Test
+    void testTruncate_EmptiesJournal() throws IOException {
+        Path path = journalDir.resolve("partition-0.journal");
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            journal.append(transfer(1));
+            journal.force();
+            journal.truncate();
+
+            assertEquals(0, journal.size());
+        }
+
+        try (LedgerJournal journal = new LedgerJournal(path)) {
+            assertTrue(journal.takeRecovered().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LedgerSnapshotServiceTests {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LedgerSnapshotService snapshotService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        snapshotService = new LedgerSnapshotService(ledgerEntryRepository, transactionManager, taskScheduler, meterRegistry,
+                false, 300_000, 60, 20);
+    }
+
+    @Test
+    void snapshot_CoversEntriesUpToSettleDelay() {
+        // Arrange
+        Instant since = NOW.minusSeconds(600);
+        when(ledgerEntryRepository.lockSnapshotRun()).thenReturn(since);
+        when(ledgerEntryRepository.currentTime()).thenReturn(NOW);
+        when(ledgerEntryRepository.snapshot(since, NOW.minusSeconds(60), 20)).thenReturn(3);
+
+        // Act
+        int taken = snapshotService.snapshot();
+
+        // Assert
+        assertEquals(3, taken);
+        verify(ledgerEntryRepository).saveSnapshotRun(NOW.minusSeconds(60));
+        assertEquals(3, meterRegistry.get("wallet.ledger.snapshots").counter().count());
+    }
+
+    @Test
+    void snapshot_AnotherNodeRunning_DoesNothing() {
+        when(ledgerEntryRepository.lockSnapshotRun()).thenReturn(null);
+
+        assertEquals(0, snapshotService.snapshot());
+
+        verify(ledgerEntryRepository, never()).snapshot(any(), any(), anyInt());
+        verify(ledgerEntryRepository, never()).saveSnapshotRun(any());
+    }
+
+    @Test
+    void snapshot_AlreadyCoveredUpToAsOf_DoesNothing() {
+        when(ledgerEntryRepository.lockSnapshotRun()).thenReturn(NOW);
+        when(ledgerEntryRepository.currentTime()).thenReturn(NOW);
+
+        assertEquals(0, snapshotService.snapshot());
+
+        verify(ledgerEntryRepository, never()).snapshot(any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.exception.ServiceOverloadedException;
+import org.example.digitalwallet.service.PasswordHashingService.Operation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHashingServiceTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PasswordHashingService hashingService = new PasswordHashingService(meterRegistry, 1, 1, 5000);
+
+    @AfterEach
+    void tearDown() {
+        hashingService.stop();
+    }
+
+    @Test
+    void run_ReturnsResultAndRecordsDuration() {
+        assertEquals("hash", hashingService.run(Operation.ENCODE, () -> "hash"));
+
+        assertEquals(1, meterRegistry.get("wallet.auth.hashing.duration").tag("operation", "encode").timer().count());
+    }
+
+    @Test
+    void run_TaskFails_RethrowsOriginalException() {
+        assertThrows(BadCredentialsException.class, () -> hashingService.run(Operation.LOGIN, () -> {
+            throw new BadCredentialsException("Bad credentials");
+        }));
+    }
+
+    @Test
+    void run_PoolAndQueueFull_RejectsImmediately() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hashingService.run(Operation.LOGIN, () -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hashingService.run(Operation.LOGIN, () -> "second"));
+        while (meterRegistry.get("wallet.auth.hashing.queue.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(ServiceOverloadedException.class, () -> hashingService.run(Operation.LOGIN, () -> "third"));
+        assertEquals(1, meterRegistry.get("wallet.auth.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
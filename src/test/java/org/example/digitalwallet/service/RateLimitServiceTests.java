@@ -0,0 +1,94 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RateLimitServiceTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitService rateLimitService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitService = new RateLimitService(redisTemplate, meterRegistry, 20, 1, 60, 5, 200, 20, 30, 1);
+    }
+
+    @Test
+    void tryAcquireForUser_UsesQuotaOfMembershipTier() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("ratelimit:user:7")), eq("60"), eq("5.0"), eq("1")))
+                .thenReturn(List.of(1L, 0L));
+
+        assertTrue(rateLimitService.tryAcquireForUser(7L, MembershipStatus.PREMIUM).allowed());
+    }
+
+    @Test
+    void tryAcquire_RejectedByRedis_NextCallRejectedLocally() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("ratelimit:ip:10.0.0.1")), anyString(), anyString(), anyString()))
+                .thenReturn(List.of(0L, 60_000L));
+
+        RateLimitService.Decision first = rateLimitService.tryAcquireForAddress("10.0.0.1");
+        RateLimitService.Decision second = rateLimitService.tryAcquireForAddress("10.0.0.1");
+
+        assertFalse(first.allowed());
+        assertEquals(60_000L, first.retryAfterMillis());
+        assertFalse(second.allowed());
+        assertTrue(second.retryAfterMillis() > 0);
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString());
+        assertEquals(1, meterRegistry.get("wallet.rate-limit.rejected").tag("decided-by", "local").counter().count());
+    }
+
+    @Test
+    void tryAcquire_RedisDown_AllowsRequest() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertTrue(rateLimitService.tryAcquireForUser(7L, MembershipStatus.FREE).allowed());
+        assertEquals(1, meterRegistry.get("wallet.rate-limit.unavailable").counter().count());
+    }
+
+    @Test
+    void refundUser_PutsTokenBackAndLiftsLocalBlock() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("ratelimit:user:7")), anyString(), anyString(), anyString()))
+                .thenReturn(List.of(0L, 60_000L), List.of(1L, 0L));
+        assertFalse(rateLimitService.tryAcquireForUser(7L, MembershipStatus.FREE).allowed());
+
+        rateLimitService.refundUser(7L, MembershipStatus.FREE);
+
+        verify(redisTemplate).execute(anyScript(), eq(List.of("ratelimit:user:7")), eq("20"), eq("1"));
+        assertTrue(rateLimitService.tryAcquireForUser(7L, MembershipStatus.FREE).allowed());
+    }
+
+    @Test
+    void refundUser_RedisDown_IsSwallowed() {
+        when(redisTemplate.execute(anyScript(), anyList(), anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertDoesNotThrow(() -> rateLimitService.refundUser(7L, MembershipStatus.FREE));
+        assertEquals(1, meterRegistry.get("wallet.rate-limit.unavailable").counter().count());
+    }
+
+    private static RedisScript<Long> anyScript() {
+        return any();
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.digitalwallet.service;
+
+import io.jsonwebtoken.Claims;
+import org.example.digitalwallet.exception.UserNotAuthenticatedException;
+import org.example.digitalwallet.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRevocationServiceTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @Mock
+    private TokenVersionService tokenVersionService;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private Claims claims;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        tokenRevocationService = new TokenRevocationService(redisTemplate, jwtUtil, tokenVersionService, taskScheduler,
+                1000, 0.001, 1000, 3_600_000);
+    }
+
+    // ========== Lookup Tests ==========
+
+    @Test
+    void isRevoked_UnknownToken_NoRedisCall() {
+        assertFalse(tokenRevocationService.isRevoked("never-revoked"));
+        assertFalse(tokenRevocationService.isRevoked(null));
+
+        verifyNoInteractions(zSetOperations);
+    }
+
+    @Test
+    void isRevoked_RevokedOnThisNode_ConfirmedByRedis() {
+        tokenRevocationService.revoke("jti-1");
+        when(zSetOperations.score(TokenRevocationService.REVOKED_KEY, "jti-1")).thenReturn(1.0);
+
+        assertTrue(tokenRevocationService.isRevoked("jti-1"));
+        verify(zSetOperations).add(eq(TokenRevocationService.REVOKED_KEY), eq("jti-1"), anyDouble());
+    }
+
+    @Test
+    void isRevoked_FilterHitAndRedisDown_TreatedAsRevoked() {
+        tokenRevocationService.revoke("jti-1");
+        when(zSetOperations.score(anyString(), anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertTrue(tokenRevocationService.isRevoked("jti-1"));
+    }
+
+    // ========== Sync Tests ==========
+
+    @Test
+    void sync_PicksUpRevocationsFromOtherNodes() {
+        when(zSetOperations.rangeByScoreWithScores(eq(TokenRevocationService.REVOKED_KEY), anyDouble(), anyDouble()))
+                .thenReturn(Set.of(new DefaultTypedTuple<>("jti-remote", (double) System.currentTimeMillis())));
+        when(zSetOperations.score(TokenRevocationService.REVOKED_KEY, "jti-remote")).thenReturn(1.0);
+
+        tokenRevocationService.sync();
+
+        assertTrue(tokenRevocationService.isRevoked("jti-remote"));
+        verify(zSetOperations).removeRangeByScore(eq(TokenRevocationService.REVOKED_KEY), eq(Double.NEGATIVE_INFINITY), anyDouble());
+    }
+
+    // ========== Logout Tests ==========
+
+    @Test
+    void logout_ValidToken_RevokesItsId() {
+        when(jwtUtil.verify("token")).thenReturn(claims);
+        when(claims.getId()).thenReturn("jti-1");
+
+        tokenRevocationService.logout("Bearer token");
+
+        verify(zSetOperations).add(eq(TokenRevocationService.REVOKED_KEY), eq("jti-1"), anyDouble());
+    }
+
+    @Test
+    void logout_MissingOrInvalidToken_ThrowsException() {
+        assertThrows(UserNotAuthenticatedException.class, () -> tokenRevocationService.logout(null));
+        assertThrows(UserNotAuthenticatedException.class, () -> tokenRevocationService.logout("Bearer bad"));
+    }
+
+    @Test
+    void revokeAllFor_BumpsTokenVersion() {
+        tokenRevocationService.revokeAllFor(42L);
+
+        verify(tokenVersionService).bump(42L);
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.digitalwallet.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenVersionServiceTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private TokenVersionService tokenVersionService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        tokenVersionService = new TokenVersionService(redisTemplate, taskScheduler, 5000);
+    }
+
+    @Test
+    void isCurrent_UserNeverBumped_AcceptsVersionZero() {
+        assertTrue(tokenVersionService.isCurrent(1L, 0));
+    }
+
+    @Test
+    void bump_RetiresOlderTokensImmediately() {
+        when(hashOperations.increment(TokenVersionService.VERSIONS_KEY, "1", 1)).thenReturn(1L);
+
+        tokenVersionService.bump(1L);
+
+        assertFalse(tokenVersionService.isCurrent(1L, 0));
+        assertTrue(tokenVersionService.isCurrent(1L, 1));
+        assertTrue(tokenVersionService.isCurrent(2L, 0));
+    }
+
+    @Test
+    void refresh_PicksUpBumpsFromOtherNodes() {
+        when(hashOperations.entries(TokenVersionService.VERSIONS_KEY)).thenReturn(Map.of("7", "2"));
+
+        tokenVersionService.refresh();
+
+        assertEquals(2L, tokenVersionService.currentVersion(7L));
+    }
+
+    @Test
+    void versionForNewToken_ReadsBumpFromOtherNodeBeforeRefresh() {
+        when(hashOperations.get(TokenVersionService.VERSIONS_KEY, "7")).thenReturn("4");
+
+        assertEquals(4L, tokenVersionService.versionForNewToken(7L));
+        assertFalse(tokenVersionService.isCurrent(7L, 3));
+    }
+
+    @Test
+    void versionForNewToken_RedisDown_UsesKnownVersion() {
+        when(hashOperations.increment(TokenVersionService.VERSIONS_KEY, "1", 1)).thenReturn(2L);
+        tokenVersionService.bump(1L);
+        when(hashOperations.get(TokenVersionService.VERSIONS_KEY, "1")).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals(2L, tokenVersionService.versionForNewToken(1L));
+    }
+
+    @Test
+    void refresh_StaleSnapshotOrRedisDown_KeepsKnownVersions() {
+        when(hashOperations.increment(TokenVersionService.VERSIONS_KEY, "1", 1)).thenReturn(3L);
+        tokenVersionService.bump(1L);
+
+        when(hashOperations.entries(TokenVersionService.VERSIONS_KEY)).thenReturn(Map.of("1", "2"));
+        tokenVersionService.refresh();
+        assertEquals(3L, tokenVersionService.currentVersion(1L));
+
+        when(hashOperations.entries(TokenVersionService.VERSIONS_KEY)).thenThrow(new RedisConnectionFailureException("down"));
+        tokenVersionService.refresh();
+        assertEquals(3L, tokenVersionService.currentVersion(1L));
+    }
+}
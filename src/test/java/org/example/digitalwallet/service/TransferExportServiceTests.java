@@ -0,0 +1,108 @@
+package org.example.digitalwallet.service;
+
+import org.example.digitalwallet.dto.ExportFormat;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.TransferRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferExportServiceTests {
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private WalletService walletService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private TransferExportService transferExportService;
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 1, 10, 30);
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        transferExportService = new TransferExportService(transferRepository, walletService, transactionManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamTransfers(Transfer... transfers) {
+        doAnswer(invocation -> {
+            Consumer<Transfer> action = invocation.getArgument(3);
+            for (Transfer transfer : transfers) {
+                action.accept(transfer);
+            }
+            return null;
+        }).when(transferRepository).forEachTransfer(any(), any(), any(), any(Consumer.class));
+    }
+
+    private static Transfer transfer(long id) {
+        return Transfer.builder().id(id).fromWallet(1L).toWallet(2L).currency(WalletCurrency.EUR)
+                .transferAmount(new BigDecimal("12.50")).transferDate(DATE).build();
+    }
+
+    private static String run(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testExport_Csv_WritesHeaderAndOneLinePerTransfer() throws Exception {
+        streamTransfers(transfer(1L), transfer(2L));
+
+        String csv = run(transferExportService.exportTransfers(1L, DATE, DATE.plusDays(1), ExportFormat.CSV));
+
+        assertEquals("""
+                id,from_wallet,to_wallet,currency,transfer_amount,transfer_date
+                1,1,2,EUR,12.50,2025-03-01T10:30
+                2,1,2,EUR,12.50,2025-03-01T10:30
+                """, csv);
+        verify(walletService).getWalletById(1L);
+        verify(transferRepository).forEachTransfer(eq(1L), eq(DATE), eq(DATE.plusDays(1)), any());
+        verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void testExport_Ndjson_WritesOneObjectPerLine() throws Exception {
+        streamTransfers(transfer(1L));
+
+        String ndjson = run(transferExportService.exportTransfers(1L, DATE, DATE.plusDays(1), ExportFormat.NDJSON));
+
+        assertEquals("{\"id\":1,\"fromWallet\":1,\"toWallet\":2,\"currency\":\"EUR\",\"transferAmount\":12.50,"
+                + "\"transferDate\":\"2025-03-01T10:30\"}\n", ndjson);
+    }
+
+    @Test
+    void testExport_WalletFilter_ChecksOwnershipBeforeStreaming() {
+        when(walletService.getWalletById(5L)).thenThrow(new SecurityException("You don't have access to this wallet"));
+
+        assertThrows(SecurityException.class,
+                () -> transferExportService.exportTransfers(5L, DATE, DATE.plusDays(1), ExportFormat.CSV));
+        verify(transferRepository, never()).forEachTransfer(eq(5L), any(), any(), any());
+    }
+}
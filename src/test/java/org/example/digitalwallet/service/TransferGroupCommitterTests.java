@@ -0,0 +1,134 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.exception.ServiceOverloadedException;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferGroupCommitterTests {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TransferGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        lenient().when(transactionStatus.createSavepoint()).thenReturn(new Object());
+
+        // WalletService is only used for its outcome mapping here
+        WalletService walletService = new WalletService(null, null, null, null, null, null, null);
+        committer = new TransferGroupCommitter(walletRepository, walletService, transactionManager,
+                meterRegistry, true, 200, 3, 5000);
+        committer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        committer.stop();
+    }
+
+    private static Transfer transfer(long toWallet) {
+        return Transfer.builder().fromWallet(1L).toWallet(toWallet).currency(WalletCurrency.EUR)
+                .transferAmount(BigDecimal.TEN).transferDate(LocalDateTime.now()).build();
+    }
+
+    @Test
+    void testSubmit_ConcurrentCallers_ShareOneCommitAndGetOwnOutcome() throws Exception {
+        when(walletRepository.executeAuthorizedTransfer(argThat(t -> t != null && t.getToWallet() == 2L), eq("alice")))
+                .thenReturn(new TransferResult(TransferOutcome.COMPLETED, 100L));
+        when(walletRepository.executeAuthorizedTransfer(argThat(t -> t != null && t.getToWallet() == 3L), eq("alice")))
+                .thenReturn(new TransferResult(TransferOutcome.INSUFFICIENT_FUNDS, null));
+        when(walletRepository.executeAuthorizedTransfer(argThat(t -> t != null && t.getToWallet() == 4L), eq("alice")))
+                .thenReturn(new TransferResult(TransferOutcome.COMPLETED, 101L));
+
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> committer.submit(transfer(2L), "alice"));
+        CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> committer.submit(transfer(3L), "alice"));
+        CompletableFuture<Long> third = CompletableFuture.supplyAsync(() -> committer.submit(transfer(4L), "alice"));
+
+        assertEquals(100L, first.get(5, TimeUnit.SECONDS));
+        assertEquals(101L, third.get(5, TimeUnit.SECONDS));
+        Exception failure = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(transactionManager, times(1)).commit(transactionStatus);
+        verify(transactionStatus, times(1)).rollbackToSavepoint(any());
+        assertEquals(1, meterRegistry.get("wallet.transfer.group_commit.batch.fill").summary().count());
+        assertEquals(3, meterRegistry.get("wallet.transfer.group_commit.queue.latency").timer().count());
+    }
+
+    @Test
+    void testSubmit_CommitFails_EveryCallerSeesTheFailure() {
+        when(walletRepository.executeAuthorizedTransfer(any(), any()))
+                .thenReturn(new TransferResult(TransferOutcome.COMPLETED, 100L));
+        doThrow(new IllegalStateException("commit failed")).when(transactionManager).commit(transactionStatus);
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> committer.submit(transfer(2L), "alice"));
+
+        assertEquals("commit failed", ex.getMessage());
+    }
+
+    @Test
+    void testSubmit_NoConnectionForTheGroup_EveryCallerSeesTheFailure() throws Exception {
+        when(transactionManager.getTransaction(any())).thenThrow(new CannotCreateTransactionException("pool exhausted"));
+
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> committer.submit(transfer(2L), "alice"));
+        CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> committer.submit(transfer(3L), "alice"));
+
+        ExecutionException firstFailure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        ExecutionException secondFailure = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CannotCreateTransactionException.class, firstFailure.getCause());
+        assertInstanceOf(CannotCreateTransactionException.class, secondFailure.getCause());
+        verify(walletRepository, never()).executeAuthorizedTransfer(any(), any());
+    }
+
+    @Test
+    void testSubmit_TimesOutBeforeItsGroupStarts_IsDroppedFromTheGroup() throws InterruptedException {
+        TransferGroupCommitter impatient = new TransferGroupCommitter(walletRepository,
+                new WalletService(null, null, null, null, null, null, null), transactionManager,
+                new SimpleMeterRegistry(), true, 200, 3, 20);
+        impatient.start();
+        try {
+            assertThrows(ServiceOverloadedException.class, () -> impatient.submit(transfer(2L), "alice"));
+
+            verify(walletRepository, after(400).never()).executeAuthorizedTransfer(any(), any());
+        } finally {
+            impatient.stop();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.repository.TransferPartitionRepository;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferPartitionMaintenanceTests {
+
+    @Mock
+    private TransferPartitionRepository partitionRepository;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testMaintain_CreatesCurrentAndUpcomingMonths() {
+        TransferPartitionMaintenance maintenance = new TransferPartitionMaintenance(partitionRepository, taskScheduler,
+                meterRegistry, true, 2, 0, 6);
+
+        maintenance.maintain(YearMonth.of(2025, 11));
+
+        verify(partitionRepository).createPartition(YearMonth.of(2025, 11));
+        verify(partitionRepository).createPartition(YearMonth.of(2025, 12));
+        verify(partitionRepository).createPartition(YearMonth.of(2026, 1));
+        verify(partitionRepository, never()).findAttachedMonths();
+        verify(partitionRepository, never()).detachAndArchive(any());
+    }
+
+    @Test
+    void testMaintain_ArchivesOnlyMonthsPastRetention() {
+        TransferPartitionMaintenance maintenance = new TransferPartitionMaintenance(partitionRepository, taskScheduler,
+                meterRegistry, true, 0, 12, 6);
+        when(partitionRepository.findAttachedMonths()).thenReturn(List.of(
+                YearMonth.of(2024, 5), YearMonth.of(2024, 6), YearMonth.of(2024, 7), YearMonth.of(2025, 6)));
+
+        maintenance.maintain(YearMonth.of(2025, 6));
+
+        verify(partitionRepository).detachAndArchive(YearMonth.of(2024, 5));
+        verify(partitionRepository, never()).detachAndArchive(YearMonth.of(2024, 6));
+        verify(partitionRepository, never()).detachAndArchive(YearMonth.of(2024, 7));
+        verify(partitionRepository, never()).detachAndArchive(YearMonth.of(2025, 6));
+    }
+
+    @Test
+    void testStart_Disabled_DoesNothing() {
+        TransferPartitionMaintenance maintenance = new TransferPartitionMaintenance(partitionRepository, taskScheduler,
+                meterRegistry, false, 3, 24, 6);
+
+        maintenance.start();
+
+        verifyNoInteractions(partitionRepository);
+    }
+
+    @Test
+    void testMaintainQuietly_Failure_IsCounted() {
+        TransferPartitionMaintenance maintenance = new TransferPartitionMaintenance(partitionRepository, taskScheduler,
+                meterRegistry, true, 0, 0, 6);
+        doThrow(new DataAccessResourceFailureException("down")).when(partitionRepository).createPartition(any());
+
+        maintenance.maintainQuietly();
+
+        assertEquals(1, meterRegistry.get("wallet.transfer.partitions.failures").counter().count());
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.QueuedTransfer;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.TransferQueueRepository;
+import org.example.digitalwallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferQueueWorkerTests {
+
+    @Mock
+    private TransferQueueRepository transferQueueRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferQueueWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // WalletService is only used for its outcome mapping here
+        WalletService walletService = new WalletService(null, null, null, null, null, null, null);
+        worker = new TransferQueueWorker(transferQueueRepository, walletRepository, walletService, transactionManager,
+                taskScheduler, meterRegistry, 60_000, 10, 2, 3, 100, 1000, 168);
+    }
+
+    // ========== Process Tests ==========
+
+    @Test
+    void process_Completed_RecordsTransferId() throws InterruptedException {
+        // Arrange
+        QueuedTransfer queued = queued(1L, 0);
+        when(transferQueueRepository.lockPending(1L)).thenReturn(queued);
+        when(walletRepository.executeAuthorizedTransfer(any(Transfer.class), eq("alice")))
+                .thenReturn(new TransferResult(TransferOutcome.COMPLETED, 99L));
+
+        // Act
+        worker.process(queued);
+
+        // Assert
+        ArgumentCaptor<Transfer> transfer = ArgumentCaptor.forClass(Transfer.class);
+        verify(walletRepository).executeAuthorizedTransfer(transfer.capture(), eq("alice"));
+        assertEquals(10L, transfer.getValue().getFromWallet());
+        assertEquals(20L, transfer.getValue().getToWallet());
+        assertEquals(new BigDecimal("25.00"), transfer.getValue().getTransferAmount());
+        verify(transferQueueRepository).complete(1L, 99L);
+        verify(transferQueueRepository, never()).retryAt(anyLong(), any(Instant.class));
+        assertEquals(1, meterRegistry.counter("wallet.transfer.async", "outcome", "completed").count());
+    }
+
+    @Test
+    void process_Rejected_RecordsReason() throws InterruptedException {
+        // Arrange
+        QueuedTransfer queued = queued(1L, 0);
+        when(transferQueueRepository.lockPending(1L)).thenReturn(queued);
+        when(walletRepository.executeAuthorizedTransfer(any(Transfer.class), eq("alice")))
+                .thenReturn(new TransferResult(TransferOutcome.INSUFFICIENT_FUNDS, null));
+
+        // Act
+        worker.process(queued);
+
+        // Assert
+        verify(transferQueueRepository).fail(eq(1L), startsWith("Insufficient funds"));
+        verify(transferQueueRepository, never()).complete(anyLong(), anyLong());
+        assertEquals(1, meterRegistry.counter("wallet.transfer.async", "outcome", "failed").count());
+    }
+
+    @Test
+    void process_AlreadyFinishedOrTaken_DoesNothing() throws InterruptedException {
+        // Arrange
+        when(transferQueueRepository.lockPending(1L)).thenReturn(null);
+
+        // Act
+        worker.process(queued(1L, 0));
+
+        // Assert
+        verifyNoInteractions(walletRepository);
+        verify(transferQueueRepository, never()).retryAt(anyLong(), any(Instant.class));
+    }
+
+    @Test
+    void process_LockConflict_ReschedulesInsteadOfWaiting() throws InterruptedException {
+        // Arrange
+        QueuedTransfer queued = queued(1L, 0);
+        when(transferQueueRepository.lockPending(1L)).thenReturn(queued);
+        when(walletRepository.executeAuthorizedTransfer(any(Transfer.class), eq("alice")))
+                .thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        // Act
+        Instant before = Instant.now();
+        worker.process(queued);
+
+        // Assert
+        ArgumentCaptor<Instant> retryAt = ArgumentCaptor.forClass(Instant.class);
+        verify(transferQueueRepository).retryAt(eq(1L), retryAt.capture());
+        assertFalse(retryAt.getValue().isBefore(before.plusMillis(100)));
+        verify(transferQueueRepository, never()).fail(anyLong(), anyString());
+        assertEquals(1, meterRegistry.counter("wallet.transfer.async", "outcome", "retried").count());
+    }
+
+    @Test
+    void process_OutOfAttempts_FailsTheTransfer() throws InterruptedException {
+        // Arrange
+        QueuedTransfer queued = queued(1L, 2);
+        when(transferQueueRepository.lockPending(1L)).thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        // Act
+        worker.process(queued);
+
+        // Assert
+        verify(transferQueueRepository).fail(eq(1L), anyString());
+        verify(transferQueueRepository, never()).retryAt(anyLong(), any(Instant.class));
+    }
+
+    // ========== Drain Tests ==========
+
+    @Test
+    void drain_AppliesEveryDueRow() throws InterruptedException {
+        // Arrange
+        when(transferQueueRepository.findDue(any(Instant.class), eq(10))).thenReturn(List.of(queued(1L, 0), queued(2L, 0)));
+        when(transferQueueRepository.lockPending(anyLong())).thenAnswer(invocation -> queued(invocation.getArgument(0), 0));
+        when(walletRepository.executeAuthorizedTransfer(any(Transfer.class), eq("alice")))
+                .thenReturn(new TransferResult(TransferOutcome.COMPLETED, 7L));
+
+        worker.start();
+        try {
+            // Act
+            int read = worker.drain();
+
+            // Assert
+            assertEquals(2, read);
+            verify(transferQueueRepository).complete(1L, 7L);
+            verify(transferQueueRepository).complete(2L, 7L);
+        } finally {
+            worker.stop();
+        }
+    }
+
+    @Test
+    void backoff_DoublesUpToTheCap() {
+        assertEquals(Duration.ofMillis(100), worker.backoff(1));
+        assertEquals(Duration.ofMillis(400), worker.backoff(3));
+        assertEquals(Duration.ofMillis(1000), worker.backoff(10));
+    }
+
+    private static QueuedTransfer queued(Long id, int attempts) {
+        return new QueuedTransfer(id, UUID.randomUUID(), 1L, "alice", 10L, 20L, WalletCurrency.EUR,
+                new BigDecimal("25.00"), QueuedTransfer.Status.PENDING, null, null, attempts,
+                LocalDateTime.now(), null);
+    }
+}
@@ -1,13 +1,28 @@
 package org.example.digitalwallet.service;
 
+import org.example.digitalwallet.dto.BatchTransferRequest;
+import org.example.digitalwallet.dto.BatchTransferResponse;
+import org.example.digitalwallet.dto.CursorPagedResponse;
+import org.example.digitalwallet.dto.QueuedTransferResponse;
+import org.example.digitalwallet.dto.TransferCursor;
 import org.example.digitalwallet.dto.TransferRequest;
 import org.example.digitalwallet.dto.TransferResponse;
-import org.example.digitalwallet.exception.RateLimitExceededException;
+import org.example.digitalwallet.exception.TransferNotFoundException;
 import org.example.digitalwallet.exception.UserNotAuthenticatedException;
 import org.example.digitalwallet.exception.WalletNotFoundException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.example.digitalwallet.model.QueuedTransfer;
+import org.example.digitalwallet.model.Roles;
 import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferEvent;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
 import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
+import org.example.digitalwallet.repository.TransferQueueRepository;
 import org.example.digitalwallet.repository.TransferRepository;
+import org.example.digitalwallet.repository.WalletEventRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,11 +35,17 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +57,24 @@ public class TransferServiceTests {
     @Mock
     private WalletService walletService;
 
+    @Mock
+    private TransferGroupCommitter transferGroupCommitter;
+
+    @Mock
+    private LedgerEngine ledgerEngine;
+
+    @Mock
+    private WalletEventRepository walletEventRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private TransferQueueRepository transferQueueRepository;
+
+    @Mock
+    private WalletMailboxes walletMailboxes;
+
     @Mock
     private Authentication authentication;
 
@@ -46,6 +85,8 @@ public class TransferServiceTests {
     private TransferService transferService;
 
     private static final String USERNAME = "testuser";
+    private static final AuthenticatedUser CALLER =
+            new AuthenticatedUser(1L, USERNAME, null, Roles.USER, MembershipStatus.FREE);
 
     private static TransferRequest createRequest(Long from, Long to, BigDecimal amount) {
         return new TransferRequest(from, to, WalletCurrency.EUR, amount);
@@ -56,6 +97,7 @@ public class TransferServiceTests {
         SecurityContextHolder.setContext(securityContext);
         lenient().when(securityContext.getAuthentication()).thenReturn(authentication);
         lenient().when(authentication.getName()).thenReturn(USERNAME);
+        lenient().when(authentication.getPrincipal()).thenReturn(CALLER);
     }
 
     // ========== saveTransfer Tests ==========
@@ -63,8 +105,7 @@ public class TransferServiceTests {
     @Test
     void testSaveTransfer_Success() {
         TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
-        when(walletService.executeTransfer(1L, 2L, BigDecimal.valueOf(50.00), WalletCurrency.EUR, USERNAME))
-                .thenReturn(true);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(7L);
 
         TransferResponse response = transferService.saveTransfer(request);
 
@@ -72,7 +113,16 @@ public class TransferServiceTests {
         assertEquals(2L, response.toWallet());
         assertEquals(BigDecimal.valueOf(50.00), response.transferAmount());
         assertNotNull(response.transferDate());
-        verify(transferRepository).save(any(Transfer.class));
+    }
+
+    @Test
+    void testSaveTransfer_ReturnsGeneratedId() {
+        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(42L);
+
+        TransferResponse response = transferService.saveTransfer(request);
+
+        assertEquals(42L, response.id());
     }
 
     @Test
@@ -82,48 +132,44 @@ public class TransferServiceTests {
 
         assertThrows(UserNotAuthenticatedException.class, () -> transferService.saveTransfer(request));
 
-        verify(walletService, never()).executeTransfer(any(), any(), any(), any(), any());
-        verify(transferRepository, never()).save(any());
+        verify(walletService, never()).executeAuthorizedTransfer(any(), any());
     }
 
     @Test
     void testSaveTransfer_InsufficientFunds_ThrowsException() {
         TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(1000.00));
-        when(walletService.executeTransfer(1L, 2L, BigDecimal.valueOf(1000.00), WalletCurrency.EUR, USERNAME))
-                .thenReturn(false);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME)))
+                .thenThrow(new IllegalArgumentException("Insufficient funds: wallet balance is less than transfer amount"));
 
         IllegalArgumentException exception = assertThrows(
                 IllegalArgumentException.class,
                 () -> transferService.saveTransfer(request));
 
         assertEquals("Insufficient funds: wallet balance is less than transfer amount", exception.getMessage());
-        verify(transferRepository, never()).save(any());
     }
 
     @Test
     void testSaveTransfer_WalletNotFound_PropagatesException() {
         TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
-        when(walletService.executeTransfer(any(), any(), any(), any(), any()))
+        when(walletService.executeAuthorizedTransfer(any(), any()))
                 .thenThrow(new WalletNotFoundException("One of the wallets wasn't found or doesn't exist"));
 
         assertThrows(WalletNotFoundException.class, () -> transferService.saveTransfer(request));
-        verify(transferRepository, never()).save(any());
     }
 
     @Test
     void testSaveTransfer_UnauthorizedWallet_PropagatesException() {
         TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
-        when(walletService.executeTransfer(any(), any(), any(), any(), any()))
+        when(walletService.executeAuthorizedTransfer(any(), any()))
                 .thenThrow(new SecurityException("You don't have permission to transfer from this wallet"));
 
         assertThrows(SecurityException.class, () -> transferService.saveTransfer(request));
-        verify(transferRepository, never()).save(any());
     }
 
     @Test
     void testSaveTransfer_CurrencyMismatch_PropagatesException() {
         TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
-        when(walletService.executeTransfer(any(), any(), any(), any(), any()))
+        when(walletService.executeAuthorizedTransfer(any(), any()))
                 .thenThrow(new IllegalArgumentException("Currency mismatch: source wallet currency does not match transfer currency"));
 
         IllegalArgumentException ex = assertThrows(
@@ -131,19 +177,18 @@ public class TransferServiceTests {
                 () -> transferService.saveTransfer(request));
 
         assertTrue(ex.getMessage().contains("Currency mismatch"));
-        verify(transferRepository, never()).save(any());
     }
 
     @Test
     void testSaveTransfer_RecordsCorrectData() {
         BigDecimal amount = BigDecimal.valueOf(75.50);
         TransferRequest request = createRequest(1L, 2L, amount);
-        when(walletService.executeTransfer(1L, 2L, amount, WalletCurrency.EUR, USERNAME)).thenReturn(true);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(1L);
 
         transferService.saveTransfer(request);
 
         ArgumentCaptor<Transfer> captor = ArgumentCaptor.forClass(Transfer.class);
-        verify(transferRepository).save(captor.capture());
+        verify(walletService).executeAuthorizedTransfer(captor.capture(), eq(USERNAME));
 
         Transfer saved = captor.getValue();
         assertEquals(1L, saved.getFromWallet());
@@ -154,31 +199,60 @@ public class TransferServiceTests {
     }
 
     @Test
-    void testSaveTransfer_TransferNotSavedOnFailure() {
-        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(100.00));
-        when(walletService.executeTransfer(any(), any(), any(), any(), any())).thenReturn(false);
+    void testSaveTransfer_SingleStatement_NoSeparateInsert() {
+        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
+        when(walletService.executeAuthorizedTransfer(any(), any())).thenReturn(1L);
+
+        transferService.saveTransfer(request);
 
-        assertThrows(IllegalArgumentException.class, () -> transferService.saveTransfer(request));
         verify(transferRepository, never()).save(any());
     }
 
     @Test
-    void testSaveTransfer_ExecuteCalledBeforeSave() {
+    void testSaveTransfer_GroupCommitEnabled_SubmitsToCommitter() {
         TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
-        when(walletService.executeTransfer(any(), any(), any(), any(), any())).thenReturn(true);
+        when(transferGroupCommitter.isEnabled()).thenReturn(true);
+        when(transferGroupCommitter.submit(any(Transfer.class), eq(USERNAME))).thenReturn(11L);
 
-        transferService.saveTransfer(request);
+        TransferResponse response = transferService.saveTransfer(request);
 
-        var inOrder = inOrder(walletService, transferRepository);
-        inOrder.verify(walletService).executeTransfer(any(), any(), any(), any(), any());
-        inOrder.verify(transferRepository).save(any());
+        assertEquals(11L, response.id());
+        verify(walletService, never()).executeAuthorizedTransfer(any(), any());
+    }
+
+    @Test
+    void testSaveTransfer_MailboxesEnabled_RoutesThroughMailboxes() {
+        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
+        when(walletMailboxes.isEnabled()).thenReturn(true);
+        when(walletMailboxes.execute(any(Transfer.class), eq(USERNAME))).thenReturn(13L);
+
+        TransferResponse response = transferService.saveTransfer(request);
+
+        assertEquals(13L, response.id());
+        verify(transferGroupCommitter, never()).submit(any(), any());
+        verify(walletService, never()).executeAuthorizedTransfer(any(), any());
+    }
+
+    @Test
+    void testSaveTransfer_LedgerEngineEnabled_SettlesInMemory() {
+        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
+        TransferResult result = new TransferResult(TransferOutcome.COMPLETED, 12L);
+        when(ledgerEngine.isEnabled()).thenReturn(true);
+        when(ledgerEngine.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(result);
+        when(walletService.completedTransferId(result)).thenReturn(12L);
+
+        TransferResponse response = transferService.saveTransfer(request);
+
+        assertEquals(12L, response.id());
+        verify(transferGroupCommitter, never()).submit(any(), any());
+        verify(walletService, never()).executeAuthorizedTransfer(any(), any());
     }
 
     @Test
     void testSaveTransfer_OneCent() {
         BigDecimal oneCent = new BigDecimal("0.01");
         TransferRequest request = createRequest(1L, 2L, oneCent);
-        when(walletService.executeTransfer(1L, 2L, oneCent, WalletCurrency.EUR, USERNAME)).thenReturn(true);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(1L);
 
         TransferResponse response = transferService.saveTransfer(request);
 
@@ -189,7 +263,7 @@ public class TransferServiceTests {
     void testSaveTransfer_LargeAmount() {
         BigDecimal largeAmount = new BigDecimal("9999999999.99");
         TransferRequest request = createRequest(1L, 2L, largeAmount);
-        when(walletService.executeTransfer(1L, 2L, largeAmount, WalletCurrency.EUR, USERNAME)).thenReturn(true);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(1L);
 
         TransferResponse response = transferService.saveTransfer(request);
 
@@ -199,8 +273,7 @@ public class TransferServiceTests {
     @Test
     void testSaveTransfer_SameWallet() {
         TransferRequest request = createRequest(1L, 1L, BigDecimal.valueOf(50.00));
-        when(walletService.executeTransfer(1L, 1L, BigDecimal.valueOf(50.00), WalletCurrency.EUR, USERNAME))
-                .thenReturn(true);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq(USERNAME))).thenReturn(1L);
 
         TransferResponse response = transferService.saveTransfer(request);
 
@@ -208,6 +281,121 @@ public class TransferServiceTests {
         assertEquals(1L, response.toWallet());
     }
 
+    // ========== saveTransferBatch Tests ==========
+
+    @Test
+    void testSaveTransferBatch_ReportsEachItem() {
+        List<TransferRequest> transfers = List.of(
+                createRequest(1L, 2L, BigDecimal.valueOf(10.00)),
+                createRequest(1L, 3L, BigDecimal.valueOf(5000.00)),
+                createRequest(1L, 4L, BigDecimal.valueOf(20.00)));
+        when(walletService.executeTransferBatch(transfers, CALLER))
+                .thenReturn(Arrays.asList(null, "Insufficient funds: wallet balance is less than transfer amount", null));
+        when(transferRepository.reserveIds(2)).thenReturn(List.of(41L, 42L));
+
+        BatchTransferResponse response = transferService.saveTransferBatch(new BatchTransferRequest(transfers));
+
+        assertEquals(2, response.succeeded());
+        assertEquals(1, response.failed());
+        assertTrue(response.results().get(0).success());
+        assertFalse(response.results().get(1).success());
+        assertEquals("Insufficient funds: wallet balance is less than transfer amount", response.results().get(1).error());
+        assertEquals(4L, response.results().get(2).transfer().toWallet());
+        assertEquals(42L, response.results().get(2).transfer().id());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transfer>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transferRepository).saveAllWithIds(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        List<TransferEvent> legs = List.of(
+                new TransferEvent(null, 1L, TransferEvent.Direction.OUT, 2L, 41L, BigDecimal.valueOf(10.00), null),
+                new TransferEvent(null, 2L, TransferEvent.Direction.IN, 1L, 41L, BigDecimal.valueOf(10.00), null),
+                new TransferEvent(null, 1L, TransferEvent.Direction.OUT, 4L, 42L, BigDecimal.valueOf(20.00), null),
+                new TransferEvent(null, 4L, TransferEvent.Direction.IN, 1L, 42L, BigDecimal.valueOf(20.00), null));
+        verify(walletEventRepository).appendAll(legs);
+        verify(ledgerEntryRepository).appendAll(legs);
+    }
+
+    @Test
+    void testSaveTransferBatch_AllRejected_NothingSaved() {
+        List<TransferRequest> transfers = List.of(createRequest(1L, 2L, BigDecimal.valueOf(10.00)));
+        when(walletService.executeTransferBatch(transfers, CALLER))
+                .thenReturn(List.of("You don't have permission to transfer from this wallet"));
+
+        BatchTransferResponse response = transferService.saveTransferBatch(new BatchTransferRequest(transfers));
+
+        assertEquals(0, response.succeeded());
+        assertEquals(1, response.failed());
+        verify(transferRepository, never()).saveAllWithIds(any());
+        verify(transferRepository, never()).reserveIds(anyInt());
+        verifyNoInteractions(walletEventRepository, ledgerEntryRepository);
+    }
+
+    @Test
+    void testSaveTransferBatch_UserNotAuthenticated_ThrowsException() {
+        when(securityContext.getAuthentication()).thenReturn(null);
+        BatchTransferRequest request = new BatchTransferRequest(List.of(createRequest(1L, 2L, BigDecimal.ONE)));
+
+        assertThrows(UserNotAuthenticatedException.class, () -> transferService.saveTransferBatch(request));
+        verify(walletService, never()).executeTransferBatch(any(), any());
+    }
+
+    // ========== Async Transfer Tests ==========
+
+    @Test
+    void testSubmitTransfer_ValidatesThenQueues() {
+        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
+
+        QueuedTransferResponse response = transferService.submitTransfer(request);
+
+        assertNotNull(response.handle());
+        assertEquals(QueuedTransfer.Status.PENDING, response.status());
+        assertNull(response.transferId());
+        verify(walletService).validateTransfer(request, CALLER);
+        ArgumentCaptor<Transfer> queued = ArgumentCaptor.forClass(Transfer.class);
+        verify(transferQueueRepository).enqueue(eq(response.handle()), eq(1L), eq(USERNAME), queued.capture());
+        assertEquals(1L, queued.getValue().getFromWallet());
+        assertEquals(2L, queued.getValue().getToWallet());
+        assertEquals(BigDecimal.valueOf(50.00), queued.getValue().getTransferAmount());
+        verifyNoInteractions(transferGroupCommitter);
+    }
+
+    @Test
+    void testSubmitTransfer_Invalid_NothingQueued() {
+        TransferRequest request = createRequest(1L, 2L, BigDecimal.valueOf(50.00));
+        doThrow(new SecurityException("You don't have permission to transfer from this wallet"))
+                .when(walletService).validateTransfer(request, CALLER);
+
+        assertThrows(SecurityException.class, () -> transferService.submitTransfer(request));
+        verifyNoInteractions(transferQueueRepository);
+    }
+
+    @Test
+    void testGetQueuedTransfer_ReportsOutcome() {
+        UUID handle = UUID.randomUUID();
+        when(transferQueueRepository.findByHandle(handle)).thenReturn(queuedTransfer(handle, 1L));
+
+        QueuedTransferResponse response = transferService.getQueuedTransfer(handle);
+
+        assertEquals(handle, response.handle());
+        assertEquals(QueuedTransfer.Status.COMPLETED, response.status());
+        assertEquals(42L, response.transferId());
+        assertNotNull(response.completedAt());
+    }
+
+    @Test
+    void testGetQueuedTransfer_SomeoneElses_ThrowsException() {
+        UUID handle = UUID.randomUUID();
+        when(transferQueueRepository.findByHandle(handle)).thenReturn(queuedTransfer(handle, 2L));
+
+        assertThrows(SecurityException.class, () -> transferService.getQueuedTransfer(handle));
+    }
+
+    @Test
+    void testGetQueuedTransfer_Unknown_ThrowsException() {
+        assertThrows(TransferNotFoundException.class, () -> transferService.getQueuedTransfer(UUID.randomUUID()));
+    }
+
     // ========== getTransferHistory Tests ==========
 
     @Test
@@ -218,7 +406,7 @@ public class TransferServiceTests {
                 .transferAmount(BigDecimal.valueOf(50.00))
                 .transferDate(java.time.LocalDateTime.now())
                 .build();
-        when(transferRepository.findTransfers(null, 10)).thenReturn(List.of(t));
+        when(transferRepository.findTransfers(isNull(), any(), eq(10))).thenReturn(List.of(t));
 
         List<TransferResponse> results = transferService.getTransferHistory(null, 10);
 
@@ -228,7 +416,7 @@ public class TransferServiceTests {
 
     @Test
     void testGetTransferHistory_EmptyList_ReturnsEmpty() {
-        when(transferRepository.findTransfers(null, 10)).thenReturn(List.of());
+        when(transferRepository.findTransfers(isNull(), any(), eq(10))).thenReturn(List.of());
 
         List<TransferResponse> results = transferService.getTransferHistory(null, 10);
 
@@ -237,10 +425,89 @@ public class TransferServiceTests {
 
     @Test
     void testGetTransferHistory_WithCursor() {
-        when(transferRepository.findTransfers(5L, 10)).thenReturn(List.of());
+        when(transferRepository.findTransfers(eq(5L), any(), eq(10))).thenReturn(List.of());
 
         transferService.getTransferHistory(5L, 10);
 
-        verify(transferRepository).findTransfers(5L, 10);
+        verify(transferRepository).findTransfers(eq(5L), any(), eq(10));
+    }
+
+    @Test
+    void testGetTransferHistory_ReachesBackNinetyDays() {
+        when(transferRepository.findTransfers(isNull(), any(), eq(10))).thenReturn(List.of());
+
+        transferService.getTransferHistory(null, 10);
+
+        verify(transferRepository).findTransfers(isNull(), argThat(since ->
+                since.isAfter(java.time.LocalDateTime.now().minusDays(91))
+                        && since.isBefore(java.time.LocalDateTime.now().minusDays(89))), eq(10));
+    }
+
+    @Test
+    void testGetTransferHistory_LimitAboveMaximum_IsCapped() {
+        when(transferRepository.findTransfers(isNull(), any(), eq(100))).thenReturn(List.of());
+
+        transferService.getTransferHistory(null, 10_000);
+
+        verify(transferRepository).findTransfers(isNull(), any(), eq(100));
+    }
+
+    // ========== getWalletTransferHistory Tests ==========
+
+    private static final java.time.LocalDateTime DATE_7 = java.time.LocalDateTime.of(2025, 2, 7, 0, 0);
+
+    private static Transfer transferWithId(long id) {
+        return Transfer.builder()
+                .id(id).fromWallet(1L).toWallet(2L)
+                .currency(WalletCurrency.EUR)
+                .transferAmount(BigDecimal.ONE)
+                .transferDate(java.time.LocalDateTime.of(2025, 2, (int) id, 0, 0))
+                .build();
+    }
+
+    @Test
+    void testGetWalletTransferHistory_FullPage_ReturnsCursorCarryingDateRange() {
+        java.time.LocalDateTime from = java.time.LocalDateTime.of(2025, 1, 1, 0, 0);
+        when(transferRepository.findWalletTransfers(1L, null, null, from, null, 2))
+                .thenReturn(List.of(transferWithId(9L), transferWithId(7L)));
+
+        CursorPagedResponse<TransferResponse> page = transferService.getWalletTransferHistory(1L, null, from, null, 2);
+
+        assertEquals(2, page.data().size());
+        assertEquals(new TransferCursor(DATE_7, 7L, from, null), TransferCursor.decode(page.nextCursor()));
+        verify(walletService).getWalletById(1L);
+    }
+
+    @Test
+    void testGetWalletTransferHistory_WithCursor_UsesCursorRangeAndEndsOnShortPage() {
+        java.time.LocalDateTime from = java.time.LocalDateTime.of(2025, 1, 1, 0, 0);
+        String cursor = new TransferCursor(DATE_7, 7L, from, null).encode();
+        when(transferRepository.findWalletTransfers(1L, DATE_7, 7L, from, null, 2)).thenReturn(List.of(transferWithId(3L)));
+
+        CursorPagedResponse<TransferResponse> page = transferService.getWalletTransferHistory(1L, cursor, null, null, 2);
+
+        assertEquals(1, page.data().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void testGetWalletTransferHistory_NotOwner_ThrowsException() {
+        when(walletService.getWalletById(1L)).thenThrow(new SecurityException("You don't have access to this wallet"));
+
+        assertThrows(SecurityException.class, () -> transferService.getWalletTransferHistory(1L, null, null, null, 10));
+        verify(transferRepository, never()).findWalletTransfers(any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetWalletTransferHistory_InvalidCursor_ThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.getWalletTransferHistory(1L, "not-a-cursor", null, null, 10));
+    }
+
+    private static QueuedTransfer queuedTransfer(UUID handle, Long userId) {
+        LocalDateTime submittedAt = LocalDateTime.now().minusSeconds(5);
+        return new QueuedTransfer(1L, handle, userId, USERNAME, 1L, 2L, WalletCurrency.EUR,
+                BigDecimal.valueOf(50.00), QueuedTransfer.Status.COMPLETED, 42L, null, 0,
+                submittedAt, submittedAt.plusSeconds(1));
     }
 }
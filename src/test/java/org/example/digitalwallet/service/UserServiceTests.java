@@ -7,6 +7,7 @@ import org.example.digitalwallet.model.MembershipStatus;
 import org.example.digitalwallet.model.User;
 import org.example.digitalwallet.repository.UserRepository;
 import org.example.digitalwallet.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -21,6 +22,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -40,6 +42,12 @@ public class UserServiceTests {
     @Mock
     private AuthenticationManager authenticationManager;
 
+    @Mock
+    private TokenVersionService tokenVersionService;
+
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
     @Mock
     private Authentication authentication;
 
@@ -49,6 +57,12 @@ public class UserServiceTests {
     @InjectMocks
     private UserService userService;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(passwordHashingService.run(any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
     // ========== Register Tests ==========
 
     @Test
@@ -193,7 +207,9 @@ public class UserServiceTests {
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(jwtUtil.generateToken("testuser")).thenReturn(expectedToken);
+        when(userRepository.getUserByUsername("testuser")).thenReturn(Optional.of(registeredUser("testuser")));
+        when(tokenVersionService.versionForNewToken(1L)).thenReturn(2L);
+        when(jwtUtil.generateToken(any(User.class), eq(2L))).thenReturn(expectedToken);
 
         SecurityContextHolder.setContext(securityContext);
 
@@ -203,7 +219,7 @@ public class UserServiceTests {
         // Assert
         assertEquals(expectedToken, token);
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
-        verify(jwtUtil).generateToken("testuser");
+        verify(jwtUtil).generateToken(argThat(user -> user.getId().equals(1L)), eq(2L));
         verify(securityContext).setAuthentication(authentication);
     }
 
@@ -214,7 +230,8 @@ public class UserServiceTests {
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(jwtUtil.generateToken("user123")).thenReturn("token");
+        when(userRepository.getUserByUsername("user123")).thenReturn(Optional.of(registeredUser("user123")));
+        when(jwtUtil.generateToken(any(User.class), eq(0L))).thenReturn("token");
 
         SecurityContextHolder.setContext(securityContext);
 
@@ -238,7 +255,8 @@ public class UserServiceTests {
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(jwtUtil.generateToken("testuser")).thenReturn("token");
+        when(userRepository.getUserByUsername("testuser")).thenReturn(Optional.of(registeredUser("testuser")));
+        when(jwtUtil.generateToken(any(User.class), eq(0L))).thenReturn("token");
 
         SecurityContextHolder.setContext(securityContext);
 
@@ -258,7 +276,8 @@ public class UserServiceTests {
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(jwtUtil.generateToken("user")).thenReturn(expectedToken);
+        when(userRepository.getUserByUsername("user")).thenReturn(Optional.of(registeredUser("user")));
+        when(jwtUtil.generateToken(any(User.class), eq(0L))).thenReturn(expectedToken);
 
         SecurityContextHolder.setContext(securityContext);
 
@@ -269,4 +288,13 @@ public class UserServiceTests {
         assertNotNull(actualToken);
         assertEquals(expectedToken, actualToken);
     }
+
+    private static User registeredUser(String username) {
+        return User.builder()
+                .id(1L)
+                .username(username)
+                .email(username + "@example.com")
+                .membershipStatus(MembershipStatus.FREE)
+                .build();
+    }
 }
@@ -0,0 +1,126 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.WalletChange;
+import org.example.digitalwallet.model.WalletEvent;
+import org.example.digitalwallet.repository.WalletEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WalletEventDispatcherTests {
+
+    @Mock
+    private WalletEventRepository walletEventRepository;
+
+    @Mock
+    private ObjectProvider<WalletEventSubscriber> subscriberProvider;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @Mock
+    private WalletEventSubscriber first;
+
+    @Mock
+    private WalletEventSubscriber second;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WalletEventDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(subscriberProvider.orderedStream()).thenReturn(Stream.of(first, second));
+
+        // The scheduler is a mock, so polls only happen when a test calls them
+        dispatcher = new WalletEventDispatcher(walletEventRepository, subscriberProvider, transactionManager, taskScheduler,
+                meterRegistry, 60_000, 4, 2);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    void start_CreatesShardRows() {
+        verify(walletEventRepository).createShards(4);
+    }
+
+    @Test
+    void drain_DeliversInOrderToEverySubscriberThenDeletes() {
+        // Arrange
+        WalletChange deposit = event(10L, WalletEvent.Kind.DEPOSIT);
+        WalletChange withdrawal = event(11L, WalletEvent.Kind.WITHDRAWAL);
+        when(walletEventRepository.tryLockShard(1)).thenReturn(true);
+        when(walletEventRepository.findPending(1, 4, 2)).thenReturn(List.of(deposit, withdrawal));
+
+        // Act
+        int delivered = dispatcher.drain(1);
+
+        // Assert
+        assertEquals(2, delivered);
+        InOrder inOrder = inOrder(first, second, walletEventRepository);
+        inOrder.verify(first).onEvent(deposit);
+        inOrder.verify(second).onEvent(deposit);
+        inOrder.verify(first).onEvent(withdrawal);
+        inOrder.verify(second).onEvent(withdrawal);
+        inOrder.verify(walletEventRepository).delete(List.of(10L, 11L));
+        assertEquals(2, meterRegistry.get("wallet.events.lag").timer().count());
+    }
+
+    @Test
+    void drain_ShardHeldElsewhere_ReadsNothing() {
+        when(walletEventRepository.tryLockShard(2)).thenReturn(false);
+
+        assertEquals(0, dispatcher.drain(2));
+
+        verify(walletEventRepository, never()).findPending(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void poll_SubscriberThrows_KeepsEventsAndCountsFailure() {
+        // Arrange
+        when(walletEventRepository.tryLockShard(anyInt())).thenReturn(true);
+        when(walletEventRepository.findPending(anyInt(), anyInt(), anyInt())).thenReturn(List.of());
+        when(walletEventRepository.findPending(3, 4, 2)).thenReturn(List.of(event(12L, WalletEvent.Kind.DEPOSIT)));
+        doThrow(new IllegalStateException("subscriber down")).when(first).onEvent(any());
+
+        // Act
+        dispatcher.poll();
+
+        // Assert
+        verify(walletEventRepository, never()).delete(anyCollection());
+        verify(second, never()).onEvent(any());
+        verify(transactionManager).rollback(any());
+        assertEquals(1, meterRegistry.get("wallet.events.failures").counter().count());
+    }
+
+    private static WalletChange event(Long id, WalletEvent.Kind kind) {
+        return new WalletEvent(id, 5L, kind, new BigDecimal("10.00"), Instant.now());
+    }
+}
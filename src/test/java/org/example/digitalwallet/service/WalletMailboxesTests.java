@@ -0,0 +1,249 @@
+package org.example.digitalwallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.WalletCurrency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WalletMailboxesTests {
+
+    @Mock
+    private WalletService walletService;
+
+    private WalletMailboxes mailboxes;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (mailboxes != null) {
+            mailboxes.stop();
+        }
+    }
+
+    // ========== Hot Wallet Detection Tests ==========
+
+    @Test
+    void tracker_HotOnceThresholdReachedWithinWindow() {
+        AtomicLong now = new AtomicLong();
+        HotWalletTracker tracker = new HotWalletTracker(3, 1000, 5000, now::get);
+
+        tracker.record(1L);
+        tracker.record(1L);
+        assertFalse(tracker.isHot(1L));
+
+        tracker.record(1L);
+        assertTrue(tracker.isHot(1L));
+        assertEquals(1, tracker.hotCount());
+    }
+
+    @Test
+    void tracker_CountsStartOverEachWindow() {
+        AtomicLong now = new AtomicLong();
+        HotWalletTracker tracker = new HotWalletTracker(2, 1000, 5000, now::get);
+
+        tracker.record(1L);
+        now.addAndGet(millis(1500));
+        tracker.record(1L);
+
+        assertFalse(tracker.isHot(1L));
+    }
+
+    @Test
+    void tracker_CoolsAfterHoldTime() {
+        AtomicLong now = new AtomicLong();
+        HotWalletTracker tracker = new HotWalletTracker(1, 1000, 5000, now::get);
+
+        tracker.record(1L);
+        now.addAndGet(millis(4000));
+        assertTrue(tracker.isHot(1L));
+
+        now.addAndGet(millis(1000));
+        assertFalse(tracker.isHot(1L));
+    }
+
+    // ========== Routing Tests ==========
+
+    @Test
+    void execute_ColdWallet_RunsOnCallerThread() {
+        // Arrange
+        mailboxes = mailboxes(5, 60_000);
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq("alice"))).thenAnswer(invocation -> {
+            ranOn.set(Thread.currentThread());
+            return 7L;
+        });
+
+        // Act
+        Long transferId = mailboxes.execute(transfer(1L, 2L), "alice");
+
+        // Assert
+        assertEquals(7L, transferId);
+        assertSame(caller, ranOn.get());
+        assertFalse(mailboxes.isHot(1L));
+    }
+
+    @Test
+    void execute_LockConflicts_MakeBothWalletsHot() {
+        // Arrange
+        mailboxes = mailboxes(2, 60_000);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq("alice")))
+                .thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        // Act
+        assertThrows(CannotAcquireLockException.class, () -> mailboxes.execute(transfer(1L, 2L), "alice"));
+        assertFalse(mailboxes.isHot(1L));
+        assertThrows(CannotAcquireLockException.class, () -> mailboxes.execute(transfer(1L, 2L), "alice"));
+
+        // Assert
+        assertTrue(mailboxes.isHot(1L));
+        assertTrue(mailboxes.isHot(2L));
+    }
+
+    @Test
+    void execute_SlowCalls_CountAsLockWaits() {
+        // Arrange
+        mailboxes = mailboxes(1, 0);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq("alice"))).thenReturn(7L);
+
+        // Act
+        mailboxes.execute(transfer(1L, 2L), "alice");
+
+        // Assert
+        assertTrue(mailboxes.isHot(1L));
+    }
+
+    // ========== Mailbox Tests ==========
+
+    @Test
+    void execute_HotWallet_RunsTransfersOneAtATimeOnTheMailbox() throws Exception {
+        // Arrange
+        mailboxes = mailboxes(1, 0);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq("alice"))).thenReturn(1L);
+        mailboxes.execute(transfer(1L, 2L), "alice");
+        assertTrue(mailboxes.isHot(1L));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> threads = new ArrayList<>();
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq("alice"))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            synchronized (threads) {
+                threads.add(Thread.currentThread().getName());
+            }
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return 7L;
+        });
+
+        // Act
+        List<Future<Long>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> mailboxes.execute(transfer(1L, 2L), "alice")));
+            }
+            for (Future<Long> result : results) {
+                assertEquals(7L, result.get());
+            }
+        }
+
+        // Assert
+        assertEquals(1, maxRunning.get());
+        assertEquals(8, threads.size());
+        assertTrue(threads.stream().allMatch(name -> name.equals("wallet-mailbox-1")));
+    }
+
+    @Test
+    void execute_TwoHotWallets_BothDirectionsShareTheLowerWalletsMailbox() throws Exception {
+        // Arrange
+        mailboxes = mailboxes(1, 0);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), any())).thenReturn(1L);
+        mailboxes.execute(transfer(1L, 2L), "alice");
+        assertTrue(mailboxes.isHot(1L));
+        assertTrue(mailboxes.isHot(2L));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> threads = new ArrayList<>();
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            synchronized (threads) {
+                threads.add(Thread.currentThread().getName());
+            }
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return 7L;
+        });
+
+        // Act
+        List<Future<Long>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                Transfer transfer = i % 2 == 0 ? transfer(1L, 2L) : transfer(2L, 1L);
+                String caller = i % 2 == 0 ? "alice" : "bob";
+                results.add(callers.submit(() -> mailboxes.execute(transfer, caller)));
+            }
+            for (Future<Long> result : results) {
+                assertEquals(7L, result.get());
+            }
+        }
+
+        // Assert
+        assertEquals(1, maxRunning.get());
+        assertEquals(8, threads.size());
+        assertTrue(threads.stream().allMatch(name -> name.equals("wallet-mailbox-1")));
+    }
+
+    @Test
+    void execute_HotWallet_RethrowsRejection() {
+        // Arrange
+        mailboxes = mailboxes(1, 0);
+        when(walletService.executeAuthorizedTransfer(any(Transfer.class), eq("alice")))
+                .thenReturn(1L)
+                .thenThrow(new IllegalArgumentException("Insufficient funds: wallet balance is less than transfer amount"));
+        mailboxes.execute(transfer(1L, 2L), "alice");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> mailboxes.execute(transfer(1L, 2L), "alice"));
+    }
+
+    private WalletMailboxes mailboxes(int hotThreshold, long lockWaitMillis) {
+        return new WalletMailboxes(walletService, new SimpleMeterRegistry(), true,
+                new HotWalletTracker(hotThreshold, 60_000, 60_000), lockWaitMillis, 100, 60_000);
+    }
+
+    private static Transfer transfer(Long from, Long to) {
+        return Transfer.builder()
+                .fromWallet(from)
+                .toWallet(to)
+                .currency(WalletCurrency.EUR)
+                .transferAmount(BigDecimal.TEN)
+                .transferDate(LocalDateTime.now())
+                .build();
+    }
+
+    private static long millis(long millis) {
+        return millis * 1_000_000;
+    }
+}
@@ -1,11 +1,21 @@
 package org.example.digitalwallet.service;
 
 import org.example.digitalwallet.dto.DepositRequest;
+import org.example.digitalwallet.dto.TransferRequest;
+import org.example.digitalwallet.dto.WalletBalanceResponse;
 import org.example.digitalwallet.dto.WalletRequest;
 import org.example.digitalwallet.exception.UserNotAuthenticatedException;
+import org.example.digitalwallet.exception.WalletNotFoundException;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.example.digitalwallet.model.Roles;
+import org.example.digitalwallet.model.Transfer;
+import org.example.digitalwallet.model.TransferOutcome;
+import org.example.digitalwallet.model.TransferResult;
 import org.example.digitalwallet.model.User;
 import org.example.digitalwallet.model.Wallet;
 import org.example.digitalwallet.model.WalletCurrency;
+import org.example.digitalwallet.repository.LedgerEntryRepository;
 import org.example.digitalwallet.repository.WalletRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,12 +23,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,10 +48,19 @@ public class WalletServiceTests {
     private WalletRepository walletRepository;
 
     @Mock
-    private UserService userService;
+    private EmailService emailService;
 
     @Mock
-    private EmailService emailService;
+    private LedgerEngine ledgerEngine;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private DepositCombiner depositCombiner;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
 
     @Mock
     private Authentication authentication;
@@ -66,8 +93,7 @@ public class WalletServiceTests {
                 .build();
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(mockUser);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
 
         walletService.createWallet(request);
 
@@ -102,8 +128,7 @@ public class WalletServiceTests {
                 .build();
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(mockUser);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
 
         walletService.createWallet(request);
 
@@ -142,8 +167,7 @@ public class WalletServiceTests {
                 .build();
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(mockUser);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
 
         walletService.createWallet(request);
 
@@ -158,7 +182,6 @@ public class WalletServiceTests {
         String username = "testuser";
         Long userId = 1L;
         Long walletId = 10L;
-        BigDecimal initialBalance = BigDecimal.valueOf(100.00);
         BigDecimal depositAmount = BigDecimal.valueOf(50.00);
         BigDecimal expectedNewBalance = BigDecimal.valueOf(150.00);
 
@@ -172,19 +195,18 @@ public class WalletServiceTests {
                 .id(walletId)
                 .userId(userId)
                 .currency(WalletCurrency.EUR)
-                .balance(initialBalance)
+                .balance(expectedNewBalance)
                 .build();
 
         DepositRequest request = new DepositRequest(depositAmount);
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(mockUser);
-        when(walletRepository.getWalletByUserId(userId)).thenReturn(mockWallet);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.depositByUserId(userId, depositAmount)).thenReturn(mockWallet);
 
         walletService.depositToWallet(request);
 
-        verify(walletRepository, times(1)).addFunds(depositAmount, walletId, userId);
+        verify(walletRepository, never()).getWalletByUserId(any());
         verify(emailService).sendEmailOnDeposit(
                 "test@example.com",
                 username,
@@ -193,6 +215,76 @@ public class WalletServiceTests {
                 expectedNewBalance.toString());
     }
 
+    @Test
+    void testDepositToWallet_LedgerEngineEnabled_DepositsInMemory() {
+        User mockUser = User.builder().id(1L).username("testuser").email("test@example.com").build();
+        Wallet mockWallet = Wallet.builder().id(10L).userId(1L).currency(WalletCurrency.EUR)
+                .balance(BigDecimal.valueOf(100.00)).build();
+        BigDecimal depositAmount = BigDecimal.valueOf(50.00);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.getWalletByUserId(1L)).thenReturn(mockWallet);
+        when(ledgerEngine.isEnabled()).thenReturn(true);
+        when(ledgerEngine.deposit(10L, depositAmount)).thenReturn(new BigDecimal("175.00"));
+
+        walletService.depositToWallet(new DepositRequest(depositAmount));
+
+        verify(walletRepository, never()).depositByUserId(any(), any());
+        verify(emailService).sendEmailOnDeposit("test@example.com", "testuser", "EUR", "50.0", "175.00");
+    }
+
+    @Test
+    void testDepositToWallet_LedgerEngineEnabledNoWallet_ThrowsWalletNotFound() {
+        User mockUser = User.builder().id(1L).username("testuser").email("test@example.com").build();
+        BigDecimal depositAmount = BigDecimal.valueOf(50.00);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.getWalletByUserId(1L)).thenReturn(null);
+        when(ledgerEngine.isEnabled()).thenReturn(true);
+
+        assertThrows(WalletNotFoundException.class,
+                () -> walletService.depositToWallet(new DepositRequest(depositAmount)));
+        verify(ledgerEngine, never()).deposit(any(), any());
+    }
+
+    @Test
+    void testDepositToWallet_CombinerEnabled_LeavesTheEmailToTheBatch() {
+        User mockUser = User.builder().id(1L).username("testuser").email("test@example.com").build();
+        Wallet mockWallet = Wallet.builder().id(10L).userId(1L).currency(WalletCurrency.EUR)
+                .balance(BigDecimal.valueOf(100.00)).build();
+        BigDecimal depositAmount = BigDecimal.valueOf(50.00);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.getWalletByUserId(1L)).thenReturn(mockWallet);
+        when(depositCombiner.isEnabled()).thenReturn(true);
+        when(depositCombiner.deposit(eq(10L), argThat(user -> user.id().equals(1L)), eq(depositAmount)))
+                .thenReturn(new BigDecimal("230.00"));
+
+        walletService.depositToWallet(new DepositRequest(depositAmount));
+
+        verify(walletRepository, never()).depositByUserId(any(), any());
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+        verify(emailService, never()).sendEmailOnDeposit(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testDepositToWallet_CombinerEnabledNoWallet_ThrowsWalletNotFound() {
+        User mockUser = User.builder().id(1L).username("testuser").email("test@example.com").build();
+        BigDecimal depositAmount = BigDecimal.valueOf(50.00);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.getWalletByUserId(1L)).thenReturn(null);
+        when(depositCombiner.isEnabled()).thenReturn(true);
+
+        assertThrows(WalletNotFoundException.class,
+                () -> walletService.depositToWallet(new DepositRequest(depositAmount)));
+        verify(depositCombiner, never()).deposit(any(), any(), any());
+    }
+
     @Test
     void testDepositToWallet_UserNotAuthenticated_ThrowsException() {
         DepositRequest request = new DepositRequest(BigDecimal.valueOf(50.00));
@@ -204,7 +296,7 @@ public class WalletServiceTests {
                 () -> walletService.depositToWallet(request));
 
         assertEquals("User was not authenticated! Try logging in", exception.getMessage());
-        verify(walletRepository, never()).addFunds(any(), any(), any());
+        verify(walletRepository, never()).depositByUserId(any(), any());
         verify(emailService, never()).sendEmailOnDeposit(anyString(), anyString(), anyString(), anyString(), anyString());
     }
 
@@ -225,19 +317,17 @@ public class WalletServiceTests {
                 .id(walletId)
                 .userId(userId)
                 .currency(WalletCurrency.EUR)
-                .balance(BigDecimal.valueOf(200.00))
+                .balance(BigDecimal.valueOf(275.00))
                 .build();
 
         DepositRequest request = new DepositRequest(depositAmount);
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(mockUser);
-        when(walletRepository.getWalletByUserId(userId)).thenReturn(mockWallet);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.depositByUserId(userId, depositAmount)).thenReturn(mockWallet);
 
         walletService.depositToWallet(request);
 
-        verify(walletRepository, times(1)).addFunds(depositAmount, walletId, userId);
         verify(emailService, never()).sendEmailOnDeposit(anyString(), anyString(), anyString(), anyString(), anyString());
     }
 
@@ -246,7 +336,6 @@ public class WalletServiceTests {
         String username = "testuser";
         Long userId = 1L;
         Long walletId = 10L;
-        BigDecimal initialBalance = BigDecimal.valueOf(1000.00);
         BigDecimal depositAmount = BigDecimal.valueOf(10000.50);
 
         User mockUser = User.builder()
@@ -259,24 +348,211 @@ public class WalletServiceTests {
                 .id(walletId)
                 .userId(userId)
                 .currency(WalletCurrency.EUR)
-                .balance(initialBalance)
+                .balance(BigDecimal.valueOf(11000.50))
                 .build();
 
         DepositRequest request = new DepositRequest(depositAmount);
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(mockUser);
-        when(walletRepository.getWalletByUserId(userId)).thenReturn(mockWallet);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.depositByUserId(userId, depositAmount)).thenReturn(mockWallet);
 
         walletService.depositToWallet(request);
 
-        verify(walletRepository, times(1)).addFunds(depositAmount, walletId, userId);
         verify(emailService).sendEmailOnDeposit(
                 eq("test@example.com"),
                 eq(username),
                 eq("EUR"),
                 eq("10000.5"),
-                anyString());
+                eq("11000.5"));
+    }
+
+    @Test
+    void testDepositToWallet_NoWallet_ThrowsWalletNotFound() {
+        User mockUser = User.builder().id(1L).username("testuser").email("test@example.com").build();
+        BigDecimal depositAmount = BigDecimal.valueOf(50.00);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.depositByUserId(1L, depositAmount)).thenReturn(null);
+
+        assertThrows(WalletNotFoundException.class,
+                () -> walletService.depositToWallet(new DepositRequest(depositAmount)));
+        verify(emailService, never()).sendEmailOnDeposit(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    // ========== Authorized Transfer Tests ==========
+
+    @Test
+    void testExecuteAuthorizedTransfer_Completed_ReturnsTransferId() {
+        Transfer transfer = Transfer.builder().fromWallet(1L).toWallet(2L).currency(WalletCurrency.EUR)
+                .transferAmount(BigDecimal.TEN).build();
+        when(walletRepository.executeAuthorizedTransfer(transfer, "testuser"))
+                .thenReturn(new TransferResult(TransferOutcome.COMPLETED, 99L));
+
+        assertEquals(99L, walletService.executeAuthorizedTransfer(transfer, "testuser"));
+    }
+
+    @Test
+    void testExecuteAuthorizedTransfer_MapsEachFailure() {
+        Transfer transfer = Transfer.builder().fromWallet(1L).toWallet(2L).currency(WalletCurrency.EUR)
+                .transferAmount(BigDecimal.TEN).build();
+
+        when(walletRepository.executeAuthorizedTransfer(transfer, "testuser"))
+                .thenReturn(new TransferResult(TransferOutcome.WALLET_NOT_FOUND, null))
+                .thenReturn(new TransferResult(TransferOutcome.NOT_OWNER, null))
+                .thenReturn(new TransferResult(TransferOutcome.SOURCE_CURRENCY_MISMATCH, null))
+                .thenReturn(new TransferResult(TransferOutcome.RECIPIENT_CURRENCY_MISMATCH, null))
+                .thenReturn(new TransferResult(TransferOutcome.INSUFFICIENT_FUNDS, null));
+
+        assertThrows(WalletNotFoundException.class, () -> walletService.executeAuthorizedTransfer(transfer, "testuser"));
+        assertThrows(SecurityException.class, () -> walletService.executeAuthorizedTransfer(transfer, "testuser"));
+        assertTrue(assertThrows(IllegalArgumentException.class,
+                () -> walletService.executeAuthorizedTransfer(transfer, "testuser")).getMessage().contains("source"));
+        assertTrue(assertThrows(IllegalArgumentException.class,
+                () -> walletService.executeAuthorizedTransfer(transfer, "testuser")).getMessage().contains("recipient"));
+        assertTrue(assertThrows(IllegalArgumentException.class,
+                () -> walletService.executeAuthorizedTransfer(transfer, "testuser")).getMessage().startsWith("Insufficient funds"));
+    }
+
+    // ========== Point-in-Time Balance Tests ==========
+
+    @Test
+    void testGetBalanceAt_Success() {
+        // Arrange
+        User mockUser = User.builder().id(1L).username("testuser").build();
+        Wallet wallet = Wallet.builder().id(10L).userId(1L).currency(WalletCurrency.EUR).build();
+        LocalDateTime asOf = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.findById(10L)).thenReturn(wallet);
+        when(ledgerEntryRepository.findBalanceAt(10L, asOf.atZone(ZoneId.systemDefault()).toInstant()))
+                .thenReturn(new BigDecimal("42.50"));
+
+        // Act
+        WalletBalanceResponse response = walletService.getBalanceAt(10L, asOf);
+
+        // Assert
+        assertEquals(10L, response.walletId());
+        assertEquals(WalletCurrency.EUR, response.currency());
+        assertEquals(new BigDecimal("42.50"), response.balance());
+        assertEquals(asOf, response.asOf());
+    }
+
+    @Test
+    void testGetBalanceAt_NotOwner_ThrowsException() {
+        // Arrange
+        User mockUser = User.builder().id(1L).username("testuser").build();
+        Wallet wallet = Wallet.builder().id(10L).userId(2L).currency(WalletCurrency.EUR).build();
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(principalOf(mockUser));
+        when(walletRepository.findById(10L)).thenReturn(wallet);
+
+        // Act & Assert
+        assertThrows(SecurityException.class, () -> walletService.getBalanceAt(10L, LocalDateTime.of(2026, 1, 1, 12, 0)));
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    @Test
+    void testGetBalanceAt_FutureTime_ThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> walletService.getBalanceAt(10L, LocalDateTime.now().plusDays(1)));
+        verifyNoInteractions(walletRepository, ledgerEntryRepository);
+    }
+
+    // ========== Striping Tests ==========
+
+    @Test
+    void testStripeWallet_InvalidStripeCount_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> walletService.stripeWallet(10L, 1));
+        assertThrows(IllegalArgumentException.class, () -> walletService.stripeWallet(10L, 65));
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    void testStripeWallet_LedgerEngineEnabled_ThrowsException() {
+        when(ledgerEngine.isEnabled()).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> walletService.stripeWallet(10L, 4));
+        assertThrows(IllegalStateException.class, () -> walletService.unstripeWallet(10L));
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    void testExecuteAuthorizedTransfer_StripingChanged_ThrowsRetryableException() {
+        Transfer transfer = Transfer.builder().fromWallet(1L).toWallet(2L).currency(WalletCurrency.EUR)
+                .transferAmount(BigDecimal.TEN).build();
+        when(walletRepository.executeAuthorizedTransfer(transfer, "testuser"))
+                .thenReturn(new TransferResult(TransferOutcome.STRIPING_CHANGED, null));
+
+        assertThrows(CannotAcquireLockException.class, () -> walletService.executeAuthorizedTransfer(transfer, "testuser"));
+    }
+
+    // ========== Transfer Validation Tests ==========
+
+    @Test
+    void testValidateTransfer_NotOwner_ThrowsException() {
+        AuthenticatedUser caller = new AuthenticatedUser(1L, "testuser", null, Roles.USER, MembershipStatus.FREE);
+        when(walletRepository.findById(10L)).thenReturn(Wallet.builder().id(10L).userId(2L).currency(WalletCurrency.EUR).build());
+        when(walletRepository.findById(20L)).thenReturn(Wallet.builder().id(20L).userId(3L).currency(WalletCurrency.EUR).build());
+
+        assertThrows(SecurityException.class, () -> walletService.validateTransfer(
+                new TransferRequest(10L, 20L, WalletCurrency.EUR, BigDecimal.TEN), caller));
+    }
+
+    @Test
+    void testValidateTransfer_RecipientCurrencyMismatch_ThrowsException() {
+        AuthenticatedUser caller = new AuthenticatedUser(1L, "testuser", null, Roles.USER, MembershipStatus.FREE);
+        when(walletRepository.findById(10L)).thenReturn(Wallet.builder().id(10L).userId(1L).currency(WalletCurrency.EUR).build());
+        when(walletRepository.findById(20L)).thenReturn(Wallet.builder().id(20L).userId(3L).currency(WalletCurrency.USD).build());
+
+        assertTrue(assertThrows(IllegalArgumentException.class, () -> walletService.validateTransfer(
+                new TransferRequest(10L, 20L, WalletCurrency.EUR, BigDecimal.TEN), caller)).getMessage().contains("recipient"));
+    }
+
+    @Test
+    void testValidateTransfer_LedgerEngineEnabled_ThrowsException() {
+        AuthenticatedUser caller = new AuthenticatedUser(1L, "testuser", null, Roles.USER, MembershipStatus.FREE);
+        when(ledgerEngine.isEnabled()).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> walletService.validateTransfer(
+                new TransferRequest(10L, 20L, WalletCurrency.EUR, BigDecimal.TEN), caller));
+        verifyNoInteractions(walletRepository);
+    }
+
+    // ========== Transfer Batch Tests ==========
+
+    @Test
+    void testExecuteTransferBatch_AppliesNetDeltasAndReportsFailures() {
+        AuthenticatedUser caller = new AuthenticatedUser(1L, "testuser", null, Roles.USER, MembershipStatus.FREE);
+        Wallet source = Wallet.builder().id(10L).userId(1L).currency(WalletCurrency.EUR).balance(BigDecimal.valueOf(100)).build();
+        Wallet target = Wallet.builder().id(20L).userId(2L).currency(WalletCurrency.EUR).balance(BigDecimal.ZERO).build();
+        Wallet foreign = Wallet.builder().id(30L).userId(3L).currency(WalletCurrency.USD).balance(BigDecimal.TEN).build();
+
+        when(walletRepository.findAllByIdsForUpdate(any())).thenReturn(List.of(source, target, foreign));
+
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(10L, 20L, WalletCurrency.EUR, BigDecimal.valueOf(60)),
+                new TransferRequest(10L, 20L, WalletCurrency.EUR, BigDecimal.valueOf(60)),
+                new TransferRequest(30L, 20L, WalletCurrency.USD, BigDecimal.ONE),
+                new TransferRequest(10L, 30L, WalletCurrency.EUR, BigDecimal.ONE),
+                new TransferRequest(10L, 99L, WalletCurrency.EUR, BigDecimal.ONE));
+
+        List<String> failures = walletService.executeTransferBatch(transfers, caller);
+
+        assertNull(failures.get(0));
+        assertEquals("Insufficient funds: wallet balance is less than transfer amount", failures.get(1));
+        assertEquals("You don't have permission to transfer from this wallet", failures.get(2));
+        assertEquals("Currency mismatch: recipient wallet currency does not match transfer currency", failures.get(3));
+        assertEquals("One of the wallets wasn't found or doesn't exist", failures.get(4));
+
+        verify(walletRepository).applyBalanceDeltas(Map.of(10L, BigDecimal.valueOf(-60), 20L, BigDecimal.valueOf(60)));
+    }
+
+    private static AuthenticatedUser principalOf(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getEmail(), user.getRole(),
+                user.getMembershipStatus());
     }
-}
\ No newline at end of file
+}
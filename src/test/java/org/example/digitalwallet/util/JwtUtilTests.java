@@ -0,0 +1,90 @@
+package org.example.digitalwallet.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.example.digitalwallet.model.AuthenticatedUser;
+import org.example.digitalwallet.model.MembershipStatus;
+import org.example.digitalwallet.model.Roles;
+import org.example.digitalwallet.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilTests {
+
+    private static final String SECRET = "c2VjcmV0LWtleS1mb3ItdGVzdHMtdGhhdC1pcy1sb25nLWVub3VnaA==";
+
+    private static final User USER = User.builder()
+            .id(42L)
+            .username("testuser")
+            .email("test@example.com")
+            .membershipStatus(MembershipStatus.PREMIUM)
+            .build();
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 2);
+
+    // ========== Verification Tests ==========
+
+    @Test
+    void verify_IssuedToken_ReturnsClaims() {
+        String token = jwtUtil.generateToken(USER, 0);
+
+        Claims claims = jwtUtil.verify(token);
+
+        assertNotNull(claims);
+        assertEquals("testuser", claims.getSubject());
+    }
+
+    @Test
+    void verify_RepeatedToken_ServedFromCache() {
+        String token = jwtUtil.generateToken(USER, 0);
+
+        assertSame(jwtUtil.verify(token), jwtUtil.verify(token));
+    }
+
+    @Test
+    void verify_ForeignSignature_ReturnsNull() {
+        JwtUtil other = new JwtUtil("b3RoZXItc2VjcmV0LWtleS1mb3ItdGVzdHMtdGhhdC1pcy1sb25n", 2);
+
+        assertNull(jwtUtil.verify(other.generateToken(USER, 0)));
+        assertNull(jwtUtil.verify("not-a-token"));
+    }
+
+    @Test
+    void verify_ExpiredToken_ReturnsNull() {
+        String token = Jwts.builder()
+                .subject("testuser")
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+
+        assertNull(jwtUtil.verify(token));
+    }
+
+    // ========== Principal Tests ==========
+
+    @Test
+    void toPrincipal_IssuedToken_CarriesIdentityClaims() {
+        Claims claims = jwtUtil.verify(jwtUtil.generateToken(USER, 3));
+
+        AuthenticatedUser principal = jwtUtil.toPrincipal(claims);
+
+        assertEquals(new AuthenticatedUser(42L, "testuser", "test@example.com", Roles.USER, MembershipStatus.PREMIUM), principal);
+        assertEquals(3L, jwtUtil.tokenVersion(claims));
+    }
+
+    @Test
+    void toPrincipal_TokenWithoutIdentityClaims_ReturnsNull() {
+        String token = Jwts.builder()
+                .subject("testuser")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+
+        assertNull(jwtUtil.toPrincipal(jwtUtil.verify(token)));
+    }
+}
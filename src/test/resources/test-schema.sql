@@ -13,9 +13,13 @@ CREATE TABLE IF NOT EXISTS wallet (
     user_id BIGINT NOT NULL REFERENCES users(id),
     currency VARCHAR(3) NOT NULL,
     balance NUMERIC(18, 2) NOT NULL,
-    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    stripe_count INT NOT NULL DEFAULT 0,
+    -- Bumped by every write to the row, so cached copies can tell which of two states is newer
+    version BIGINT NOT NULL DEFAULT 0
 );
 
+-- Range-partitioned by month in schema.sql; H2 has no declarative partitioning
 CREATE TABLE IF NOT EXISTS transfer (
     id BIGSERIAL PRIMARY KEY,
     from_wallet BIGINT NOT NULL REFERENCES wallet(id),
@@ -23,4 +27,95 @@ CREATE TABLE IF NOT EXISTS transfer (
     currency VARCHAR(3) NOT NULL,
     transfer_amount NUMERIC(18, 2) NOT NULL,
     transfer_date TIMESTAMP WITH TIME ZONE
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_transfer_from_wallet_date ON transfer (from_wallet, transfer_date, id);
+CREATE INDEX IF NOT EXISTS idx_transfer_to_wallet_date ON transfer (to_wallet, transfer_date, id);
+
+CREATE TABLE IF NOT EXISTS wallet_stripe (
+    wallet_id BIGINT NOT NULL REFERENCES wallet(id),
+    stripe INT NOT NULL,
+    balance NUMERIC(18, 2) NOT NULL,
+    PRIMARY KEY (wallet_id, stripe)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_checkpoint (
+    partition_id INT PRIMARY KEY,
+    flushed_seq BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    kind VARCHAR(20) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    amount NUMERIC(18, 2),
+    balance NUMERIC(18, 2) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING'
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox (next_attempt_at);
+
+CREATE TABLE IF NOT EXISTS transfer_queue (
+    id BIGSERIAL PRIMARY KEY,
+    handle UUID NOT NULL UNIQUE,
+    user_id BIGINT NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    from_wallet BIGINT NOT NULL,
+    to_wallet BIGINT NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    transfer_id BIGINT,
+    failure_reason VARCHAR(255),
+    attempts INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS idx_transfer_queue_due ON transfer_queue (next_attempt_at);
+
+CREATE TABLE IF NOT EXISTS wallet_event (
+    id BIGSERIAL PRIMARY KEY,
+    wallet_id BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    counterparty_wallet BIGINT,
+    transfer_id BIGINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS wallet_event_shard (
+    shard INT PRIMARY KEY
+);
+
+CREATE TABLE IF NOT EXISTS ledger_entry (
+    id BIGSERIAL PRIMARY KEY,
+    wallet_id BIGINT,
+    entry_type VARCHAR(20) NOT NULL,
+    amount NUMERIC(18, 2) NOT NULL,
+    counterparty_wallet BIGINT,
+    transfer_id BIGINT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_ledger_entry_wallet_created ON ledger_entry (wallet_id, created_at);
+
+CREATE TABLE IF NOT EXISTS ledger_snapshot (
+    wallet_id BIGINT NOT NULL,
+    as_of TIMESTAMP WITH TIME ZONE NOT NULL,
+    balance NUMERIC(18, 2) NOT NULL,
+    PRIMARY KEY (wallet_id, as_of)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_snapshot_run (
+    id INT PRIMARY KEY,
+    snapshotted_to TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+MERGE INTO ledger_snapshot_run KEY (id) VALUES (1, TIMESTAMP WITH TIME ZONE '1970-01-01 00:00:00+00');